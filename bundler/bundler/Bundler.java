@@ -48,6 +48,8 @@ public final class Bundler {
     private static final String WINDOWS           = "windows";
     private static final Path   DIST_DIR          = Paths.get("out", "dist");
     private static final Path   BUILD_DIR         = DIST_DIR.resolve("build");
+    private static final Path   TEST_DIR          = DIST_DIR.resolve("test");
+    private static final Path   TEST_SRC_DIR      = Paths.get("com.trollworks.gcs", "test");
     private static final Path   MODULE_DIR        = DIST_DIR.resolve("modules");
     private static final Path   EXTRA_DIR         = DIST_DIR.resolve("extra");
     private static final Path   I18N_DIR          = EXTRA_DIR.resolve("i18n");
@@ -74,6 +76,7 @@ public final class Bundler {
         boolean sign        = false;
         boolean notarize    = false;
         boolean noInstaller = false;
+        boolean test        = false;
         for (String arg : args) {
             if (MACOS.equals(OS)) {
                 if ("-s".equals(arg) || "--sign".equals(arg)) {
@@ -98,10 +101,18 @@ public final class Bundler {
                 }
                 continue;
             }
+            if ("-t".equals(arg) || "--test".equals(arg)) {
+                if (!test) {
+                    test = true;
+                    System.out.println("Tests enabled");
+                }
+                continue;
+            }
             if ("-h".equals(arg) || "--help".equals(arg)) {
                 System.out.println("-h, --help        This help");
                 System.out.println("-n, --notarize    Enable notarization of the application (macOS only)");
                 System.out.println("-s, --sign        Enable signing of the application (macOS only)");
+                System.out.println("-t, --test        Run the tests in com.trollworks.gcs/test before packaging");
                 System.out.println("-u, --unpackaged  Don't package the app into a platform-specific installer");
                 System.exit(0);
             }
@@ -116,6 +127,9 @@ public final class Bundler {
         prepareDirs();
         compile();
         copyResources();
+        if (test) {
+            runTests();
+        }
         createModules();
         extractLocalizationTemplate();
         packageApp(noInstaller, sign);
@@ -231,7 +245,7 @@ public final class Bundler {
             out.println("--module-source-path");
             out.printf(".%1$s*%1$ssrc%2$sthird_party%1$s*%1$ssrc\n", File.separator, File.pathSeparator);
             FileScanner.walk(Paths.get("."), (path) -> {
-                if (path.getFileName().toString().endsWith(".java") && !path.startsWith(Paths.get(".", "bundler"))) {
+                if (path.getFileName().toString().endsWith(".java") && !path.startsWith(Paths.get(".", "bundler")) && !isTestSource(path)) {
                     out.println(path);
                 }
             });
@@ -244,6 +258,46 @@ public final class Bundler {
         showTiming(timing);
     }
 
+    /** @return {@code true} if the path is within a module's test tree, e.g. ./com.trollworks.gcs/test. */
+    private static boolean isTestSource(Path path) {
+        return path.getNameCount() > 2 && "test".equals(path.getName(2).toString());
+    }
+
+    private static void runTests() {
+        System.out.print("Running tests... ");
+        System.out.flush();
+        long         timing  = System.nanoTime();
+        List<String> args    = new ArrayList<>();
+        List<String> classes = new ArrayList<>();
+        args.add("javac");
+        args.add("-d");
+        args.add(TEST_DIR.toString());
+        args.add("--release");
+        args.add(JDK_MAJOR_VERSION);
+        args.add("-encoding");
+        args.add("UTF8");
+        args.add("--module-path");
+        args.add(BUILD_DIR.toString());
+        args.add("--patch-module");
+        args.add("com.trollworks.gcs=" + TEST_SRC_DIR);
+        FileScanner.walk(TEST_SRC_DIR, (path) -> {
+            String name = path.getFileName().toString();
+            if (name.endsWith(".java")) {
+                args.add(path.toString());
+                if (name.endsWith("Test.java")) {
+                    String className = TEST_SRC_DIR.relativize(path).toString();
+                    classes.add(className.substring(0, className.length() - 5).replace(File.separatorChar, '.'));
+                }
+            }
+        });
+        runNoOutputCmd(args);
+        // Each test is a main class that prints nothing and exits with a zero status when it passes.
+        for (String className : classes) {
+            runNoOutputCmd("java", "-Djava.awt.headless=true", "--module-path", BUILD_DIR.toString(), "--patch-module", "com.trollworks.gcs=" + TEST_DIR, "-m", "com.trollworks.gcs/" + className);
+        }
+        showTiming(timing);
+    }
+
     private static void copyResources() {
         System.out.print("Copying resources... ");
         System.out.flush();
@@ -13,6 +13,7 @@ package com.trollworks.gcs;
 
 import com.trollworks.gcs.cmdline.Export;
 import com.trollworks.gcs.cmdline.LoadSave;
+import com.trollworks.gcs.datafile.DataFileJournal;
 import com.trollworks.gcs.menu.edit.PreferencesCommand;
 import com.trollworks.gcs.menu.file.OpenCommand;
 import com.trollworks.gcs.menu.file.OpenDataFileCommand;
@@ -27,6 +28,7 @@ import com.trollworks.gcs.utility.Platform;
 import com.trollworks.gcs.utility.UpdateChecker;
 import com.trollworks.gcs.utility.Version;
 import com.trollworks.gcs.utility.launchproxy.LaunchProxy;
+import com.trollworks.gcs.utility.text.Numbers;
 import com.trollworks.gcs.utility.text.Text;
 
 import java.awt.Desktop;
@@ -121,6 +123,7 @@ public final class GCS {
         Path         template     = null;
         String       margins      = null;
         String       paper        = null;
+        int          threads      = 0;
         List<Path>   files        = new ArrayList<>();
         List<String> msgs         = new ArrayList<>();
         int          length       = args.length;
@@ -178,6 +181,25 @@ public final class GCS {
                     }
                 }
                 case "--pdf" -> generatePDF = true;
+                case "--threads" -> {
+                    String threadsArg = null;
+                    if (parts.length > 1) {
+                        threadsArg = parts[1];
+                    } else {
+                        i++;
+                        if (i < length && !args[i].startsWith("-")) {
+                            threadsArg = args[i];
+                        }
+                    }
+                    if (threadsArg == null || threadsArg.isBlank()) {
+                        msgs.add(I18n.Text("missing argument for --threads"));
+                    } else {
+                        threads = Numbers.extractInteger(threadsArg, -1, false);
+                        if (threads < 1) {
+                            msgs.add(I18n.Text("invalid thread count specification: ") + threadsArg);
+                        }
+                    }
+                }
                 case "--png" -> generatePNG = true;
                 case "--text" -> {
                     generateText = true;
@@ -227,7 +249,7 @@ public final class GCS {
         }
 
         if (generatePDF || generatePNG || generateText) {
-            Export.process(files, generatePDF, generatePNG, generateText, template, margins, paper);
+            Export.process(files, generatePDF, generatePNG, generateText, template, margins, paper, threads);
             System.exit(0);
         }
 
@@ -269,6 +291,7 @@ public final class GCS {
 
         EventQueue.invokeLater(() -> {
             Workspace.get();
+            DataFileJournal.recover();
             OpenDataFileCommand.enablePassThrough();
             for (Path file : files) {
                 OpenDataFileCommand.open(file);
@@ -298,6 +321,8 @@ public final class GCS {
         options.add(I18n.Text("Create PDF versions of sheets specified on the command line."));
         options.add(I18n.Text("--png"));
         options.add(I18n.Text("Create PNG versions of sheets specified on the command line."));
+        options.add(I18n.Text("--threads <count>"));
+        options.add(I18n.Text("When generating PDF, PNG or text from the command line, allows you to specify the number of threads used to load sheets concurrently. The loaded sheets are then laid out and exported one at a time. Defaults to the number of available processors."));
         options.add(I18n.Text("--text <file>"));
         options.add(I18n.Text("Create text versions of sheets specified on the command line using the specified template file."));
         options.add(I18n.Text("-v, --version"));
@@ -815,16 +815,14 @@ public class Advantage extends ListRow implements HasSourceReference, Switchable
     }
 
     @Override
-    public String getDataAsText(Column column) {
+    protected String computeDataAsText(Column column) {
         return AdvantageColumn.values()[column.getID()].getDataAsText(this);
     }
 
     @Override
-    public boolean contains(String text, boolean lowerCaseOnly) {
-        if (getName().toLowerCase().contains(text)) {
-            return true;
-        }
-        return super.contains(text, lowerCaseOnly);
+    protected void fillWithSearchableText(List<String> text) {
+        text.add(getName());
+        super.fillWithSearchableText(text);
     }
 
     /** @return The type as a text string. */
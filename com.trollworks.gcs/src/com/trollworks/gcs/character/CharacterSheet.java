@@ -93,6 +93,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 import javax.imageio.ImageIO;
 import javax.swing.RepaintManager;
@@ -603,20 +606,31 @@ public class CharacterSheet extends CollectedOutlines implements ChangeListener,
         // as we are called twice for each page, the first of which doesn't
         // seem to be used.
         if (mLastPage == pageIndex) {
-            Component      comp  = getComponent(pageIndex);
-            RepaintManager mgr   = RepaintManager.currentManager(comp);
-            boolean        saved = mgr.isDoubleBufferingEnabled();
-            mgr.setDoubleBufferingEnabled(false);
-            mOkToPaint = true;
-            comp.print(graphics);
-            mOkToPaint = false;
-            mgr.setDoubleBufferingEnabled(saved);
+            printPage(graphics, pageIndex);
         } else {
             mLastPage = pageIndex;
         }
         return PAGE_EXISTS;
     }
 
+    /**
+     * Draws a single page. Unlike {@link #print(Graphics, PageFormat, int)}, this always draws, so
+     * exporters that already know the page count only need to render each page once.
+     *
+     * @param graphics  The graphics context to draw into.
+     * @param pageIndex The page to draw.
+     */
+    private void printPage(Graphics graphics, int pageIndex) {
+        Component      comp  = getComponent(pageIndex);
+        RepaintManager mgr   = RepaintManager.currentManager(comp);
+        boolean        saved = mgr.isDoubleBufferingEnabled();
+        mgr.setDoubleBufferingEnabled(false);
+        mOkToPaint = true;
+        comp.print(graphics);
+        mOkToPaint = false;
+        mgr.setDoubleBufferingEnabled(saved);
+    }
+
     private static Set<String> MARK_FOR_REBUILD_NOTIFICATIONS        = new HashSet<>();
     private static Set<String> MARK_FOR_WEAPON_REBUILD_NOTIFICATIONS = new HashSet<>();
     private static Set<String> FEATURES_AND_PREREQS_NOTIFICATIONS    = new HashSet<>();
@@ -671,6 +685,13 @@ public class CharacterSheet extends CollectedOutlines implements ChangeListener,
         FEATURES_AND_PREREQS_NOTIFICATIONS.add(Spell.ID_POINTS);
     }
 
+    @Override
+    public boolean isCoalescingNotifications() {
+        // Bulk edits can send thousands of notifications in a single batch, yet each type only
+        // needs to be reacted to once.
+        return true;
+    }
+
     @Override
     public void handleNotification(Object producer, String type, Object data) {
         if (Settings.ID_SHOW_COLLEGE_IN_SPELLS.equals(type)) {
@@ -956,25 +977,20 @@ public class CharacterSheet extends CollectedOutlines implements ChangeListener,
 
             Document pdfDoc = new Document(new com.lowagie.text.Rectangle(width, height));
             try (OutputStream out = Files.newOutputStream(path)) {
-                PdfWriter      writer  = PdfWriter.getInstance(pdfDoc, out);
-                int            pageNum = 0;
+                PdfWriter      writer    = PdfWriter.getInstance(pdfDoc, out);
+                int            pageCount = getPageCount();
                 PdfContentByte cb;
 
                 pdfDoc.open();
                 cb = writer.getDirectContent();
-                while (true) {
-                    PdfTemplate template = cb.createTemplate(width, height);
-                    Graphics2D  g2d      = template.createGraphics(width, height, new DefaultFontMapper());
-
-                    if (print(g2d, format, pageNum) == NO_SUCH_PAGE) {
-                        g2d.dispose();
-                        break;
-                    }
+                for (int pageNum = 0; pageNum < pageCount; pageNum++) {
                     if (pageNum != 0) {
                         pdfDoc.newPage();
                     }
+                    PdfTemplate template = cb.createTemplate(width, height);
+                    Graphics2D  g2d      = template.createGraphics(width, height, new DefaultFontMapper());
                     g2d.setClip(0, 0, (int) width, (int) height);
-                    print(g2d, format, pageNum++);
+                    printPage(g2d, pageNum);
                     g2d.dispose();
                     cb.addTemplate(template, 0, 0);
                 }
@@ -996,43 +1012,59 @@ public class CharacterSheet extends CollectedOutlines implements ChangeListener,
      * @return {@code true} on success.
      */
     public boolean saveAsPNG(Path path, List<Path> createdPaths) {
-        Set<Row> changed = expandAllContainers();
+        Set<Row>        changed = expandAllContainers();
+        ExecutorService encoder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PNG Encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
             int          dpi      = Preferences.getInstance().getPNGResolution();
             PrintManager settings = mCharacter.getPageSettings();
             PageFormat   format   = settings != null ? settings.createPageFormat() : createDefaultPageFormat();
             int          width    = (int) (format.getWidth() / 72.0 * dpi);
             int          height   = (int) (format.getHeight() / 72.0 * dpi);
-            Img          buffer   = Img.create(width, height, Transparency.OPAQUE);
-            int          pageNum  = 0;
             String       name     = PathUtils.getLeafName(path, false);
+            // Two buffers, so that one page can be drawn while the previous one is being encoded.
+            Img[]        buffers  = new Img[2];
+            Future<?>[]  pending  = new Future<?>[buffers.length];
 
             path = path.getParent();
 
             adjustToPageSetupChanges(true);
             setPrinting(true);
 
-            while (true) {
-                Graphics2D gc = buffer.getGraphics();
-                if (print(gc, format, pageNum) == NO_SUCH_PAGE) {
-                    gc.dispose();
-                    break;
+            int pageCount = getPageCount();
+            for (int pageNum = 0; pageNum < pageCount; pageNum++) {
+                int slot = pageNum % buffers.length;
+                if (pending[slot] != null) {
+                    pending[slot].get();
+                } else {
+                    buffers[slot] = Img.create(width, height, Transparency.OPAQUE);
                 }
+                Img        buffer = buffers[slot];
+                Graphics2D gc     = buffer.getGraphics();
                 gc.setClip(0, 0, width, height);
                 gc.setBackground(Color.WHITE);
                 gc.clearRect(0, 0, width, height);
                 gc.scale(dpi / 72.0, dpi / 72.0);
-                print(gc, format, pageNum++);
+                printPage(gc, pageNum);
                 gc.dispose();
-                Path pngPath = path.resolve(PathUtils.enforceExtension(name + (pageNum > 1 ? " " + pageNum : ""), FileType.PNG.getExtension()));
-                ImageIO.write(buffer, "png", pngPath.toFile());
+                Path pngPath = path.resolve(PathUtils.enforceExtension(name + (pageNum > 0 ? " " + (pageNum + 1) : ""), FileType.PNG.getExtension()));
+                pending[slot] = encoder.submit(() -> ImageIO.write(buffer, "png", pngPath.toFile()));
                 createdPaths.add(pngPath);
             }
+            for (Future<?> future : pending) {
+                if (future != null) {
+                    future.get();
+                }
+            }
             return true;
         } catch (Exception exception) {
             Log.error(exception);
             return false;
         } finally {
+            encoder.shutdown();
             setPrinting(false);
             closeContainers(changed);
         }
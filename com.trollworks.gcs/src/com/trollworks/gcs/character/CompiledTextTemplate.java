@@ -0,0 +1,246 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.character;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A text template that has been parsed into a tree of literal text and key nodes, so that it can be
+ * executed any number of times without re-scanning its text. Parsed templates are cached by path and
+ * are re-parsed only when the file's modification time or size changes.
+ */
+final class CompiledTextTemplate {
+    private static final Map<Path, CompiledTextTemplate> CACHE = new ConcurrentHashMap<>();
+    private              FileTime                        mLastModified;
+    private              long                            mSize;
+    private              List<Node>                      mNodes;
+
+    /**
+     * @param template The template file.
+     * @return The compiled template.
+     */
+    static CompiledTextTemplate get(Path template) throws IOException {
+        Path                 key          = template.toAbsolutePath().normalize();
+        FileTime             lastModified = Files.getLastModifiedTime(key);
+        long                 size         = Files.size(key);
+        CompiledTextTemplate compiled     = CACHE.get(key);
+        if (compiled == null || !compiled.mLastModified.equals(lastModified) || compiled.mSize != size) {
+            compiled = new CompiledTextTemplate(Files.readString(key, StandardCharsets.UTF_8), lastModified, size);
+            CACHE.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    private CompiledTextTemplate(String text, FileTime lastModified, long size) {
+        mLastModified = lastModified;
+        mSize = size;
+        mNodes = Collections.unmodifiableList(new Parser(text).parse());
+    }
+
+    /** @return The top-level nodes. */
+    List<Node> getNodes() {
+        return mNodes;
+    }
+
+    /** A piece of a compiled template. */
+    static final class Node {
+        private String     mText;
+        private String     mKey;
+        private List<Node> mChildren;
+
+        private Node(String text, String key, List<Node> children) {
+            mText = text;
+            mKey = key;
+            mChildren = children != null ? Collections.unmodifiableList(children) : null;
+        }
+
+        /** @return The literal text to emit, or {@code null} if this is a key node. */
+        String getText() {
+            return mText;
+        }
+
+        /** @return The key, without the leading '@', or {@code null} if this is a text node. */
+        String getKey() {
+            return mKey;
+        }
+
+        /**
+         * @return The nodes that make up the body of this loop, or {@code null} if this is not a
+         *         loop node.
+         */
+        List<Node> getChildren() {
+            return mChildren;
+        }
+    }
+
+    /**
+     * Splits template text into nodes. This mirrors the historical character-at-a-time scanning of
+     * the template, so that existing templates produce the same output.
+     */
+    private static final class Parser {
+        private String  mText;
+        private int     mPos;
+        private boolean mEnhancedKeyParsing;
+
+        Parser(String text) {
+            mText = text;
+        }
+
+        List<Node> parse() {
+            List<Node>    nodes            = new ArrayList<>();
+            StringBuilder literal          = new StringBuilder();
+            StringBuilder keyBuffer        = new StringBuilder();
+            boolean       lookForKeyMarker = true;
+            int           mark             = 0;
+            int           length           = mText.length();
+            while (mPos < length) {
+                char ch = mText.charAt(mPos++);
+                if (lookForKeyMarker) {
+                    if (ch == '@') {
+                        lookForKeyMarker = false;
+                        mark = mPos;
+                    } else {
+                        literal.append(ch);
+                    }
+                } else if (isKeyChar(ch)) {
+                    keyBuffer.append(ch);
+                    mark = mPos;
+                } else {
+                    if (!mEnhancedKeyParsing || ch != '@') {
+                        mPos = mark;        // Allow KEYs to be surrounded by @KEY@
+                    }
+                    flushLiteral(nodes, literal);
+                    addTopLevelKey(nodes, keyBuffer.toString());
+                    keyBuffer.setLength(0);
+                    lookForKeyMarker = true;
+                }
+            }
+            flushLiteral(nodes, literal);
+            if (!keyBuffer.isEmpty()) {
+                addTopLevelKey(nodes, keyBuffer.toString());
+            }
+            return nodes;
+        }
+
+        private void addTopLevelKey(List<Node> nodes, String key) {
+            if (TextTemplate.isEnhancedKeyParsingKey(key)) {
+                // Turn on the ability to enclose a KEY with @, e.g. @KEY@. Useful for when output
+                // needs to be embedded, e.g. "<HTML@KEY@TAG>".
+                mEnhancedKeyParsing = true;
+                return;
+            }
+            String endKey = TextTemplate.getLoopEndKey(key);
+            if (endKey != null) {
+                nodes.add(new Node(null, key, parseBody(extractUpToMarker(endKey), TextTemplate.isHierarchicalLoop(key))));
+            } else {
+                nodes.add(new Node(null, key, null));
+            }
+        }
+
+        private String extractUpToMarker(String marker) {
+            StringBuilder keyBuffer        = new StringBuilder();
+            StringBuilder extraction       = new StringBuilder();
+            boolean       lookForKeyMarker = true;
+            int           mark             = mPos;
+            int           length           = mText.length();
+            while (mPos < length) {
+                char ch = mText.charAt(mPos++);
+                if (lookForKeyMarker) {
+                    if (ch == '@') {
+                        lookForKeyMarker = false;
+                        mark = mPos;
+                    } else {
+                        extraction.append(ch);
+                    }
+                } else if (isKeyChar(ch)) {
+                    keyBuffer.append(ch);
+                    mark = mPos;
+                } else {
+                    mPos = mark;
+                    String key = keyBuffer.toString();
+                    if (key.equals(marker)) {
+                        return extraction.toString();
+                    }
+                    extraction.append('@');
+                    extraction.append(key);
+                    keyBuffer.setLength(0);
+                    lookForKeyMarker = true;
+                }
+            }
+            return extraction.toString();
+        }
+
+        private List<Node> parseBody(String contents, boolean allowAttackModes) {
+            List<Node>    nodes            = new ArrayList<>();
+            StringBuilder literal          = new StringBuilder();
+            StringBuilder keyBuffer        = new StringBuilder();
+            boolean       lookForKeyMarker = true;
+            int           length           = contents.length();
+            for (int i = 0; i < length; i++) {
+                char ch = contents.charAt(i);
+                if (lookForKeyMarker) {
+                    if (ch == '@') {
+                        lookForKeyMarker = false;
+                    } else {
+                        literal.append(ch);
+                    }
+                } else if (isKeyChar(ch)) {
+                    keyBuffer.append(ch);
+                } else {
+                    String key = keyBuffer.toString();
+                    i--;
+                    if (mEnhancedKeyParsing && ch == '@') {
+                        i++;        // Allow KEYs to be surrounded by @KEY@
+                    }
+                    keyBuffer.setLength(0);
+                    lookForKeyMarker = true;
+                    flushLiteral(nodes, literal);
+                    String endKey = allowAttackModes ? TextTemplate.getAttackModesLoopEndKey(key) : null;
+                    if (endKey != null) {
+                        int endIndex = contents.indexOf(endKey);
+                        if (endIndex > 0) {
+                            nodes.add(new Node(null, key, parseBody(contents.substring(i + 1, endIndex - 1), false)));
+                            i = endIndex + endKey.length();
+                            continue;
+                        }
+                    }
+                    nodes.add(new Node(null, key, null));
+                }
+            }
+            flushLiteral(nodes, literal);
+            if (!keyBuffer.isEmpty()) {
+                nodes.add(new Node(null, keyBuffer.toString(), null));
+            }
+            return nodes;
+        }
+
+        private static void flushLiteral(List<Node> nodes, StringBuilder literal) {
+            if (!literal.isEmpty()) {
+                nodes.add(new Node(literal.toString(), null, null));
+                literal.setLength(0);
+            }
+        }
+
+        private static boolean isKeyChar(char ch) {
+            return ch == '_' || Character.isLetterOrDigit(ch);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.character;
+
+import com.trollworks.gcs.advantage.Advantage;
+import com.trollworks.gcs.equipment.Equipment;
+import com.trollworks.gcs.feature.Bonus;
+import com.trollworks.gcs.feature.Feature;
+import com.trollworks.gcs.feature.LeveledAmount;
+import com.trollworks.gcs.modifier.AdvantageModifier;
+import com.trollworks.gcs.modifier.EquipmentModifier;
+import com.trollworks.gcs.ui.widget.outline.ListRow;
+import com.trollworks.gcs.ui.widget.outline.Row;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains a character's feature map, keyed by the lower-cased feature key. Rather than
+ * rebuilding the whole map on every change, rows whose contributions may have changed are marked
+ * dirty and only their contributions are recomputed. The features for a given key are kept in the
+ * same order a full rebuild would produce.
+ */
+class FeatureIndex {
+    private HashMap<String, ArrayList<Feature>>  mMap            = new HashMap<>();
+    private Map<String, ArrayList<Contribution>> mContributions  = new HashMap<>();
+    private Map<ListRow, RowEntry>               mRows           = new HashMap<>();
+    private Set<ListRow>                         mDirtyRows      = new HashSet<>();
+    private boolean                              mRebuildPending = true;
+
+    /** @return The current feature map. */
+    HashMap<String, ArrayList<Feature>> getMap() {
+        return mMap;
+    }
+
+    /** Forces all contributions to be recomputed on the next update. */
+    void markAllDirty() {
+        mRebuildPending = true;
+        mDirtyRows.clear();
+    }
+
+    /**
+     * @param row             A row whose contributions may have changed.
+     * @param includeChildren Whether the row's descendants should also be marked.
+     */
+    void markDirty(ListRow row, boolean includeChildren) {
+        if (!mRebuildPending) {
+            if (mRows.containsKey(row)) {
+                mDirtyRows.add(row);
+                if (includeChildren && row.hasChildren()) {
+                    for (Row child : row.getChildren()) {
+                        markDirty((ListRow) child, true);
+                    }
+                }
+            } else {
+                // Not a row we track, so fall back to a full rebuild.
+                markAllDirty();
+            }
+        }
+    }
+
+    /**
+     * Brings the feature map up-to-date.
+     *
+     * @param character   The character to pull rows from.
+     * @param changedKeys Filled in with the keys whose contributors may have changed.
+     * @return {@code true} if a repaint is needed because a bonus' level changed.
+     */
+    boolean update(GURPSCharacter character, Set<String> changedKeys) {
+        boolean needRepaint = false;
+        if (mRebuildPending) {
+            changedKeys.addAll(mMap.keySet());
+            mMap = new HashMap<>();
+            mContributions.clear();
+            mRows.clear();
+            mDirtyRows.clear();
+            mRebuildPending = false;
+            List<Contribution> all = new ArrayList<>();
+            needRepaint |= addRows(character.getAdvantagesIterator(true), all);
+            needRepaint |= addRows(character.getSkillsIterator(), all);
+            needRepaint |= addRows(character.getSpellsIterator(), all);
+            needRepaint |= addRows(character.getEquipmentIterator(), all);
+            for (Contribution contribution : all) {
+                mContributions.computeIfAbsent(contribution.mKey, k -> new ArrayList<>()).add(contribution);
+                mMap.computeIfAbsent(contribution.mKey, k -> new ArrayList<>(1)).add(contribution.mFeature);
+            }
+            changedKeys.addAll(mMap.keySet());
+        } else if (!mDirtyRows.isEmpty()) {
+            Set<String> affected = new HashSet<>();
+            for (ListRow row : mDirtyRows) {
+                RowEntry entry = mRows.get(row);
+                for (Contribution contribution : entry.mContributions) {
+                    affected.add(contribution.mKey);
+                    mContributions.get(contribution.mKey).remove(contribution);
+                }
+                entry.mContributions.clear();
+                needRepaint |= collect(row, entry.mOrdinal, entry.mContributions);
+                for (Contribution contribution : entry.mContributions) {
+                    affected.add(contribution.mKey);
+                    insert(mContributions.computeIfAbsent(contribution.mKey, k -> new ArrayList<>()), contribution);
+                }
+            }
+            mDirtyRows.clear();
+            for (String key : affected) {
+                List<Contribution> contributions = mContributions.get(key);
+                if (contributions == null || contributions.isEmpty()) {
+                    mContributions.remove(key);
+                    mMap.remove(key);
+                } else {
+                    ArrayList<Feature> features = new ArrayList<>(contributions.size());
+                    for (Contribution contribution : contributions) {
+                        features.add(contribution.mFeature);
+                    }
+                    mMap.put(key, features);
+                }
+            }
+            changedKeys.addAll(affected);
+        }
+        return needRepaint;
+    }
+
+    private boolean addRows(Iterable<? extends ListRow> rows, List<Contribution> all) {
+        boolean needRepaint = false;
+        for (ListRow row : rows) {
+            RowEntry entry = new RowEntry(mRows.size());
+            needRepaint |= collect(row, entry.mOrdinal, entry.mContributions);
+            mRows.put(row, entry);
+            all.addAll(entry.mContributions);
+        }
+        return needRepaint;
+    }
+
+    private static void insert(List<Contribution> contributions, Contribution contribution) {
+        int i = contributions.size();
+        while (i > 0 && contributions.get(i - 1).isAfter(contribution)) {
+            i--;
+        }
+        contributions.add(i, contribution);
+    }
+
+    private static boolean collect(ListRow row, int ordinal, List<Contribution> contributions) {
+        if (row instanceof Advantage) {
+            if (!((Advantage) row).isEnabled()) {
+                return false;
+            }
+        } else if (row instanceof Equipment) {
+            Equipment equipment = (Equipment) row;
+            if (!equipment.isEquipped() || equipment.getQuantity() < 1) {
+                // Don't allow unequipped equipment to affect the character
+                return false;
+            }
+        }
+        boolean needRepaint = false;
+        for (Feature feature : row.getFeatures()) {
+            needRepaint |= add(contributions, ordinal, row, row instanceof Advantage ? ((Advantage) row).getLevels() : 0, feature);
+        }
+        if (row instanceof Advantage) {
+            Advantage advantage = (Advantage) row;
+            for (Bonus bonus : advantage.getCRAdj().getBonuses(advantage.getCR())) {
+                needRepaint |= add(contributions, ordinal, row, 0, bonus);
+            }
+            for (AdvantageModifier modifier : advantage.getModifiers()) {
+                if (modifier.isEnabled()) {
+                    for (Feature feature : modifier.getFeatures()) {
+                        needRepaint |= add(contributions, ordinal, row, modifier.getLevels(), feature);
+                    }
+                }
+            }
+        }
+        if (row instanceof Equipment) {
+            for (EquipmentModifier modifier : ((Equipment) row).getModifiers()) {
+                if (modifier.isEnabled()) {
+                    for (Feature feature : modifier.getFeatures()) {
+                        needRepaint |= add(contributions, ordinal, row, 0, feature);
+                    }
+                }
+            }
+        }
+        return needRepaint;
+    }
+
+    private static boolean add(List<Contribution> contributions, int ordinal, ListRow row, int levels, Feature feature) {
+        boolean needRepaint = false;
+        if (feature instanceof Bonus) {
+            Bonus         bonus  = (Bonus) feature;
+            LeveledAmount amount = bonus.getAmount();
+            if (amount.getLevel() != levels) {
+                amount.setLevel(levels);
+                needRepaint = true;
+            }
+            bonus.setParent(row);
+        }
+        contributions.add(new Contribution(feature.getKey().toLowerCase(), feature, ordinal, contributions.size()));
+        return needRepaint;
+    }
+
+    private static class RowEntry {
+        int                mOrdinal;
+        List<Contribution> mContributions = new ArrayList<>();
+
+        RowEntry(int ordinal) {
+            mOrdinal = ordinal;
+        }
+    }
+
+    private static class Contribution {
+        String  mKey;
+        Feature mFeature;
+        int     mOrdinal;
+        int     mSequence;
+
+        Contribution(String key, Feature feature, int ordinal, int sequence) {
+            mKey = key;
+            mFeature = feature;
+            mOrdinal = ordinal;
+            mSequence = sequence;
+        }
+
+        boolean isAfter(Contribution other) {
+            return mOrdinal > other.mOrdinal || (mOrdinal == other.mOrdinal && mSequence > other.mSequence);
+        }
+    }
+}
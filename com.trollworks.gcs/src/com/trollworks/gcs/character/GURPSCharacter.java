@@ -31,7 +31,9 @@ import com.trollworks.gcs.feature.WeaponSelectionType;
 import com.trollworks.gcs.modifier.AdvantageModifier;
 import com.trollworks.gcs.modifier.EquipmentModifier;
 import com.trollworks.gcs.preferences.Preferences;
+import com.trollworks.gcs.prereq.Prereq;
 import com.trollworks.gcs.skill.Skill;
+import com.trollworks.gcs.skill.SkillLevelCache;
 import com.trollworks.gcs.skill.Technique;
 import com.trollworks.gcs.spell.RitualMagicSpell;
 import com.trollworks.gcs.spell.Spell;
@@ -59,6 +61,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -275,6 +278,12 @@ public class GURPSCharacter extends CollectedModels {
     private              int                                 mCachedRacePoints;
     private              PrintManager                        mPageSettings;
     private              String                              mPageSettingsString;
+    private              SkillLevelCache                     mSkillLevelCache;
+    private              FeatureIndex                        mFeatureIndex;
+    private              PrereqTracker                       mPrereqTracker;
+    private              RowNameIndex<Advantage>             mAdvantageIndex;
+    private              RowNameIndex<Skill>                 mSkillIndex;
+    private              RowNameIndex<Spell>                 mSpellIndex;
     private              boolean                             mSkillsUpdated;
     private              boolean                             mSpellsUpdated;
     private              boolean                             mDidModify;
@@ -384,6 +393,9 @@ public class GURPSCharacter extends CollectedModels {
         mSpeedAdj = m.getDouble(KEY_SPEED_ADJ);
         mMoveAdj = m.getInt(KEY_MOVE_ADJ);
         loadModels(m, state);
+        invalidateNameIndexes();
+        invalidateFeatures();
+        invalidatePrereqs();
         if (mPageSettings != null && m.has(PrintManager.TAG_ROOT)) {
             mPageSettings = new PrintManager(m.getMap(PrintManager.TAG_ROOT));
             mPageSettingsString = mPageSettings.toString();
@@ -391,9 +403,7 @@ public class GURPSCharacter extends CollectedModels {
         // Loop through the skills and update their levels. It is necessary to do this here and not
         // as they are loaded, since references to defaults won't work until the entire list is
         // available.
-        for (Skill skill : getSkillsIterator()) {
-            skill.updateLevel(false);
-        }
+        updateSkillLevels(false);
         calculateAll();
         mModifiedOn = Numbers.extractDateTime(Numbers.DATE_TIME_STORED_FORMAT, m.getString(TAG_MODIFIED_DATE)); // Must be last
     }
@@ -644,6 +654,9 @@ public class GURPSCharacter extends CollectedModels {
 
     @Override
     public void notify(String type, Object data) {
+        updateNameIndexes(type, data);
+        updateFeatureIndex(type, data);
+        updatePrereqTracker(type, data);
         super.notify(type, data);
         if (Advantage.ID_POINTS.equals(type) || Advantage.ID_ROUND_COST_DOWN.equals(type) || Advantage.ID_LEVELS.equals(type) || Advantage.ID_CONTAINER_TYPE.equals(type) || Advantage.ID_LIST_CHANGED.equals(type) || Advantage.ID_CR.equals(type) || AdvantageModifier.ID_LIST_CHANGED.equals(type) || AdvantageModifier.ID_ENABLED.equals(type)) {
             mNeedAdvantagesPointCalculation = true;
@@ -718,13 +731,33 @@ public class GURPSCharacter extends CollectedModels {
     }
 
     public void updateSkills() {
-        for (Skill skill : getSkillsIterator()) {
-            skill.updateLevel(true);
-        }
+        updateSkillLevels(true);
         mSkillsUpdated = true;
     }
 
+    private void updateSkillLevels(boolean notify) {
+        SkillLevelCache cache = getSkillLevelCache();
+        invalidateDisplayValues();
+        cache.startPass();
+        try {
+            for (Skill skill : getSkillsIterator()) {
+                skill.updateLevel(notify);
+            }
+        } finally {
+            cache.endPass();
+        }
+    }
+
+    /** @return The cache of skill levels resolved during the current recalculation pass. */
+    public SkillLevelCache getSkillLevelCache() {
+        if (mSkillLevelCache == null) {
+            mSkillLevelCache = new SkillLevelCache();
+        }
+        return mSkillLevelCache;
+    }
+
     private void updateSpells() {
+        invalidateDisplayValues();
         for (Spell spell : getSpellsIterator()) {
             spell.updateLevel(true);
         }
@@ -1358,6 +1391,7 @@ public class GURPSCharacter extends CollectedModels {
         WeightValue savedWeight          = new WeightValue(mCachedWeightCarried);
         WeightValue savedWeightForSkills = new WeightValue(mCachedWeightCarriedForSkills);
         Fixed6      savedWealth          = mCachedWealthCarried;
+        invalidateDisplayValues();
         mCachedWeightCarried = new WeightValue(Fixed6.ZERO, defaultWeightUnits());
         mCachedWeightCarriedForSkills = new WeightValue(Fixed6.ZERO, defaultWeightUnits());
         mCachedWealthCarried = Fixed6.ZERO;
@@ -1394,6 +1428,7 @@ public class GURPSCharacter extends CollectedModels {
      */
     public void calculateWealthNotCarried(boolean notify) {
         Fixed6 savedWealth = mCachedWealthNotCarried;
+        invalidateDisplayValues();
         mCachedWealthNotCarried = Fixed6.ZERO;
         for (Row one : getOtherEquipmentModel().getTopLevelRows()) {
             mCachedWealthNotCarried = mCachedWealthNotCarried.add(((Equipment) one).getExtendedValue());
@@ -2258,6 +2293,79 @@ public class GURPSCharacter extends CollectedModels {
         return mArmor;
     }
 
+    private RowNameIndex<Advantage> getAdvantageIndex() {
+        if (mAdvantageIndex == null) {
+            mAdvantageIndex = new RowNameIndex<>(getAdvantagesModel(), Advantage::getName, null);
+        }
+        return mAdvantageIndex;
+    }
+
+    private RowNameIndex<Skill> getSkillIndex() {
+        if (mSkillIndex == null) {
+            mSkillIndex = new RowNameIndex<>(getSkillsModel(), Skill::getName, Skill::getSpecialization);
+        }
+        return mSkillIndex;
+    }
+
+    private RowNameIndex<Spell> getSpellIndex() {
+        if (mSpellIndex == null) {
+            mSpellIndex = new RowNameIndex<>(getSpellsModel(), Spell::getName, null);
+        }
+        return mSpellIndex;
+    }
+
+    /**
+     * Forces the advantage, skill and spell name indexes to be rebuilt on their next use. Needed
+     * when rows are renamed without a name change notification, as happens when nameable keys are
+     * filled in.
+     */
+    public void invalidateNameIndexes() {
+        getAdvantageIndex().invalidate();
+        getSkillIndex().invalidate();
+        getSpellIndex().invalidate();
+    }
+
+    private void updateNameIndexes(String type, Object data) {
+        if (Advantage.ID_LIST_CHANGED.equals(type)) {
+            getAdvantageIndex().invalidate();
+        } else if (Advantage.ID_NAME.equals(type) && data instanceof Advantage) {
+            getAdvantageIndex().rowChanged((Advantage) data);
+        } else if (Skill.ID_LIST_CHANGED.equals(type)) {
+            getSkillIndex().invalidate();
+        } else if ((Skill.ID_NAME.equals(type) || Skill.ID_SPECIALIZATION.equals(type)) && data instanceof Skill) {
+            getSkillIndex().rowChanged((Skill) data);
+        } else if (Spell.ID_LIST_CHANGED.equals(type)) {
+            getSpellIndex().invalidate();
+        } else if (Spell.ID_NAME.equals(type) && data instanceof Spell) {
+            getSpellIndex().rowChanged((Spell) data);
+        }
+    }
+
+    /**
+     * @param name The name to look for. Case is ignored.
+     * @return All advantages (enabled or not) with the specified name. Do not modify the returned
+     *         list.
+     */
+    public List<Advantage> getAdvantagesNamed(String name) {
+        return getAdvantageIndex().lookup(name);
+    }
+
+    /**
+     * @param name The name to look for. Case is ignored.
+     * @return All spells with the specified name. Do not modify the returned list.
+     */
+    public List<Spell> getSpellsNamed(String name) {
+        return getSpellIndex().lookup(name);
+    }
+
+    /**
+     * @param name The name to look for. Case is ignored.
+     * @return All skills and containers with the specified name. Do not modify the returned list.
+     */
+    public List<Skill> getSkillsNamed(String name) {
+        return getSkillIndex().lookup(name);
+    }
+
     /**
      * Searches the character's current advantages list for the specified name.
      *
@@ -2265,8 +2373,8 @@ public class GURPSCharacter extends CollectedModels {
      * @return The advantage, if present, or {@code null}.
      */
     public Advantage getAdvantageNamed(String name) {
-        for (Advantage advantage : getAdvantagesIterator(false)) {
-            if (advantage.getName().equals(name)) {
+        for (Advantage advantage : getAdvantagesNamed(name)) {
+            if (advantage.isEnabled() && advantage.getName().equals(name)) {
                 return advantage;
             }
         }
@@ -2295,17 +2403,13 @@ public class GURPSCharacter extends CollectedModels {
      * @return The skill if it is present, or {@code null} if its not.
      */
     public List<Skill> getSkillNamed(String name, String specialization, boolean requirePoints, Set<String> excludes) {
-        List<Skill> skills              = new ArrayList<>();
-        boolean     checkSpecialization = specialization != null && !specialization.isEmpty();
-        for (Skill skill : getSkillsIterator()) {
+        List<Skill> skills     = new ArrayList<>();
+        List<Skill> candidates = specialization != null && !specialization.isEmpty() ? getSkillIndex().lookup(name, specialization) : getSkillIndex().lookup(name);
+        for (Skill skill : candidates) {
             if (!skill.canHaveChildren()) {
                 if (excludes == null || !excludes.contains(skill.toString())) {
                     if (!requirePoints || skill instanceof Technique || skill.getPoints() > 0) {
-                        if (skill.getName().equalsIgnoreCase(name)) {
-                            if (!checkSpecialization || skill.getSpecialization().equalsIgnoreCase(specialization)) {
-                                skills.add(skill);
-                            }
-                        }
+                        skills.add(skill);
                     }
                 }
             }
@@ -2340,153 +2444,203 @@ public class GURPSCharacter extends CollectedModels {
 
     public boolean processFeaturesAndPrereqs() {
         boolean needRepaint = processFeatures();
-        needRepaint |= processPrerequisites(getAdvantagesIterator(false));
-        needRepaint |= processPrerequisites(getSkillsIterator());
-        needRepaint |= processPrerequisites(getSpellsIterator());
-        needRepaint |= processPrerequisites(getEquipmentIterator());
-        needRepaint |= processPrerequisites(getOtherEquipmentIterator());
+        needRepaint |= getPrereqTracker().update(this);
         return needRepaint;
     }
 
-    private boolean processFeatures() {
-        HashMap<String, ArrayList<Feature>> map         = new HashMap<>();
-        boolean                             needRepaint = buildFeatureMap(map, getAdvantagesIterator(false));
-        needRepaint |= buildFeatureMap(map, getSkillsIterator());
-        needRepaint |= buildFeatureMap(map, getSpellsIterator());
-        needRepaint |= buildFeatureMap(map, getEquipmentIterator());
-        setFeatureMap(map);
-        return needRepaint;
+    private FeatureIndex getFeatureIndex() {
+        if (mFeatureIndex == null) {
+            mFeatureIndex = new FeatureIndex();
+        }
+        return mFeatureIndex;
     }
 
-    private boolean buildFeatureMap(HashMap<String, ArrayList<Feature>> map, Iterator<? extends ListRow> iterator) {
-        boolean needRepaint = false;
-        while (iterator.hasNext()) {
-            ListRow row = iterator.next();
-            if (row instanceof Equipment) {
-                Equipment equipment = (Equipment) row;
-                if (!equipment.isEquipped() || equipment.getQuantity() < 1) {
-                    // Don't allow unequipped equipment to affect the character
-                    continue;
-                }
-            }
-            for (Feature feature : row.getFeatures()) {
-                needRepaint |= processFeature(map, row instanceof Advantage ? ((Advantage) row).getLevels() : 0, feature);
-                if (feature instanceof Bonus) {
-                    ((Bonus) feature).setParent(row);
-                }
-            }
-            if (row instanceof Advantage) {
-                Advantage advantage = (Advantage) row;
-                for (Bonus bonus : advantage.getCRAdj().getBonuses(advantage.getCR())) {
-                    needRepaint |= processFeature(map, 0, bonus);
-                    bonus.setParent(row);
-                }
-                for (AdvantageModifier modifier : advantage.getModifiers()) {
-                    if (modifier.isEnabled()) {
-                        for (Feature feature : modifier.getFeatures()) {
-                            needRepaint |= processFeature(map, modifier.getLevels(), feature);
-                            if (feature instanceof Bonus) {
-                                ((Bonus) feature).setParent(row);
-                            }
-                        }
-                    }
-                }
-            }
-            if (row instanceof Equipment) {
-                Equipment equipment = (Equipment) row;
-                for (EquipmentModifier modifier : equipment.getModifiers()) {
-                    if (modifier.isEnabled()) {
-                        for (Feature feature : modifier.getFeatures()) {
-                            needRepaint |= processFeature(map, 0, feature);
-                            if (feature instanceof Bonus) {
-                                ((Bonus) feature).setParent(row);
-                            }
-                        }
-                    }
-                }
+    /**
+     * Forces the contributions of every row to the feature map to be recomputed the next time
+     * {@link #processFeaturesAndPrereqs()} is called.
+     */
+    public void invalidateFeatures() {
+        getFeatureIndex().markAllDirty();
+    }
+
+    private void updateFeatureIndex(String type, Object data) {
+        if (Advantage.ID_LIST_CHANGED.equals(type) || Skill.ID_LIST_CHANGED.equals(type) || Spell.ID_LIST_CHANGED.equals(type) || Equipment.ID_LIST_CHANGED.equals(type) || AdvantageModifier.ID_LIST_CHANGED.equals(type) || AdvantageModifier.ID_ENABLED.equals(type) || EquipmentModifier.ID_LIST_CHANGED.equals(type) || EquipmentModifier.ID_ENABLED.equals(type)) {
+            getFeatureIndex().markAllDirty();
+        } else if (data instanceof ListRow) {
+            if (Advantage.ID_DISABLED.equals(type)) {
+                getFeatureIndex().markDirty((ListRow) data, true);
+            } else if (Advantage.ID_LEVELS.equals(type) || Advantage.ID_HALF_LEVEL.equals(type) || Advantage.ID_CR.equals(type) || Advantage.ID_MODIFIER_STATUS_CHANGED.equals(type) || Equipment.ID_EQUIPPED.equals(type) || Equipment.ID_QUANTITY.equals(type) || Equipment.ID_MODIFIER_STATUS_CHANGED.equals(type)) {
+                getFeatureIndex().markDirty((ListRow) data, false);
             }
         }
+    }
+
+    private boolean processFeatures() {
+        FeatureIndex index       = getFeatureIndex();
+        Set<String>  changedKeys = new HashSet<>();
+        boolean      needRepaint = index.update(this, changedKeys);
+        mFeatureMap = index.getMap();
+        applyFeatureMapChanges(changedKeys);
         return needRepaint;
     }
 
-    private boolean processFeature(HashMap<String, ArrayList<Feature>> map, int levels, Feature feature) {
-        String             key         = feature.getKey().toLowerCase();
-        ArrayList<Feature> list        = map.get(key);
-        boolean            needRepaint = false;
-        if (list == null) {
-            list = new ArrayList<>(1);
-            map.put(key, list);
+    private PrereqTracker getPrereqTracker() {
+        if (mPrereqTracker == null) {
+            mPrereqTracker = new PrereqTracker();
         }
-        if (feature instanceof Bonus) {
-            LeveledAmount amount = ((Bonus) feature).getAmount();
-            if (amount.getLevel() != levels) {
-                amount.setLevel(levels);
-                needRepaint = true;
-            }
+        return mPrereqTracker;
+    }
+
+    /**
+     * Forces the prerequisites of every row to be re-checked the next time {@link
+     * #processFeaturesAndPrereqs()} is called.
+     */
+    public void invalidatePrereqs() {
+        getPrereqTracker().markAllDirty();
+    }
+
+    private void updatePrereqTracker(String type, Object data) {
+        PrereqTracker tracker = getPrereqTracker();
+        if (type.startsWith(Settings.PREFIX) || type.startsWith(AdvantageModifier.PREFIX) || type.startsWith(EquipmentModifier.PREFIX) || Advantage.ID_LIST_CHANGED.equals(type) || Skill.ID_LIST_CHANGED.equals(type) || Spell.ID_LIST_CHANGED.equals(type) || Equipment.ID_LIST_CHANGED.equals(type) || Advantage.ID_DISABLED.equals(type) || Advantage.ID_NAME.equals(type) || Skill.ID_NAME.equals(type) || Skill.ID_SPECIALIZATION.equals(type) || Spell.ID_NAME.equals(type)) {
+            // Membership or names changed, so we can't tell which rows are affected
+            tracker.markAllDirty();
+        } else if (type.startsWith(ATTRIBUTES_PREFIX)) {
+            tracker.markChanged(Prereq.DEPENDS_ON_ATTRIBUTES);
+        } else if (Profile.ID_TECH_LEVEL.equals(type)) {
+            tracker.markChanged(Prereq.DEPENDS_ON_TECH_LEVEL);
+        } else if (data instanceof Advantage && type.startsWith(Advantage.PREFIX)) {
+            markRowChanged(tracker, Prereq.DEPENDS_ON_ADVANTAGE, (Advantage) data, ((Advantage) data).getName());
+        } else if (data instanceof Skill && type.startsWith(Skill.PREFIX)) {
+            markRowChanged(tracker, Prereq.DEPENDS_ON_SKILL, (Skill) data, ((Skill) data).getName());
+        } else if (data instanceof Spell && type.startsWith(Spell.PREFIX)) {
+            markRowChanged(tracker, Prereq.DEPENDS_ON_SPELL, (Spell) data, ((Spell) data).getName());
+        } else if (data instanceof Equipment && type.startsWith(Equipment.PREFIX)) {
+            tracker.markDirty((Equipment) data);
+            tracker.markChanged(Prereq.DEPENDS_ON_CONTAINED);
         }
-        list.add(feature);
-        return needRepaint;
     }
 
-    private boolean processPrerequisites(Iterator<? extends ListRow> iterator) {
-        boolean       needRepaint = false;
-        StringBuilder builder     = new StringBuilder();
-        while (iterator.hasNext()) {
-            ListRow row = iterator.next();
-            builder.setLength(0);
-            boolean satisfied = row.getPrereqs().satisfied(this, row, builder, "<li>");
-            if (satisfied && row instanceof Technique) {
-                satisfied = ((Technique) row).satisfied(builder, "<li>");
-            }
-            if (satisfied && row instanceof RitualMagicSpell) {
-                satisfied = ((RitualMagicSpell) row).satisfied(builder, "<li>");
-            }
-            if (row.isSatisfied() != satisfied) {
-                row.setSatisfied(satisfied);
-                needRepaint = true;
-            }
-            if (!satisfied) {
-                builder.insert(0, "<html><body>" + I18n.Text("Reason:") + "<ul>");
-                builder.append("</ul></body></html>");
-                row.setReasonForUnsatisfied(UL_PATTERN.matcher(builder.toString()).replaceAll("<ul style='margin-top: 0; margin-bottom: 0;'>"));
-            }
+    private static void markRowChanged(PrereqTracker tracker, String category, ListRow row, String name) {
+        tracker.markDirty(row);
+        tracker.markChanged(Prereq.getDependencyKey(category, name));
+        tracker.markChanged(Prereq.getDependencyKey(category, null));
+    }
+
+    /**
+     * @param row The row to build the reason for.
+     * @return The HTML describing why the row's prerequisites aren't satisfied, or {@code null}
+     *         if they are.
+     */
+    public String getReasonForUnsatisfied(ListRow row) {
+        StringBuilder builder   = new StringBuilder();
+        boolean       satisfied = row.getPrereqs().satisfied(this, row, builder, "<li>");
+        if (satisfied && row instanceof Technique) {
+            satisfied = ((Technique) row).satisfied(builder, "<li>");
         }
-        return needRepaint;
+        if (satisfied && row instanceof RitualMagicSpell) {
+            satisfied = ((RitualMagicSpell) row).satisfied(builder, "<li>");
+        }
+        if (satisfied) {
+            return null;
+        }
+        builder.insert(0, "<html><body>" + I18n.Text("Reason:") + "<ul>");
+        builder.append("</ul></body></html>");
+        return UL_PATTERN.matcher(builder.toString()).replaceAll("<ul style='margin-top: 0; margin-bottom: 0;'>");
     }
 
     /** @param map The new feature map. */
     public void setFeatureMap(HashMap<String, ArrayList<Feature>> map) {
         mFeatureMap = map;
+        // The map no longer comes from our index, so it needs a full rebuild next time around.
+        getFeatureIndex().markAllDirty();
+        applyFeatureMapChanges(null);
+    }
+
+    /**
+     * Refreshes the values derived from the feature map.
+     *
+     * @param changedKeys The lower-cased feature keys whose contributors changed, or {@code null}
+     *                    if all of them should be considered changed.
+     */
+    private void applyFeatureMapChanges(Set<String> changedKeys) {
+        invalidateDisplayValues();
+        getSkillLevelCache().clear();
         mSkillsUpdated = false;
         mSpellsUpdated = false;
 
         startNotify();
-        setStrengthBonus(getIntegerBonusFor(ID_STRENGTH));
-        setStrengthCostReduction(getCostReductionFor(ID_STRENGTH));
-        setLiftingStrengthBonus(getIntegerBonusFor(ID_LIFTING_STRENGTH));
-        setStrikingStrengthBonus(getIntegerBonusFor(ID_STRIKING_STRENGTH));
-        setDexterityBonus(getIntegerBonusFor(ID_DEXTERITY));
-        setDexterityCostReduction(getCostReductionFor(ID_DEXTERITY));
-        setIntelligenceBonus(getIntegerBonusFor(ID_INTELLIGENCE));
-        setIntelligenceCostReduction(getCostReductionFor(ID_INTELLIGENCE));
-        setHealthBonus(getIntegerBonusFor(ID_HEALTH));
-        setHealthCostReduction(getCostReductionFor(ID_HEALTH));
-        setWillBonus(getIntegerBonusFor(ID_WILL));
-        setFrightCheckBonus(getIntegerBonusFor(ID_FRIGHT_CHECK));
-        setPerceptionBonus(getIntegerBonusFor(ID_PERCEPTION));
-        setVisionBonus(getIntegerBonusFor(ID_VISION));
-        setHearingBonus(getIntegerBonusFor(ID_HEARING));
-        setTasteAndSmellBonus(getIntegerBonusFor(ID_TASTE_AND_SMELL));
-        setTouchBonus(getIntegerBonusFor(ID_TOUCH));
-        setHitPointBonus(getIntegerBonusFor(ID_HIT_POINTS));
-        setFatiguePointBonus(getIntegerBonusFor(ID_FATIGUE_POINTS));
-        mProfile.update();
-        setDodgeBonus(getIntegerBonusFor(ID_DODGE_BONUS));
-        setParryBonus(getIntegerBonusFor(ID_PARRY_BONUS));
-        setBlockBonus(getIntegerBonusFor(ID_BLOCK_BONUS));
-        setBasicSpeedBonus(getDoubleBonusFor(ID_BASIC_SPEED));
-        setBasicMoveBonus(getIntegerBonusFor(ID_BASIC_MOVE));
-        mArmor.update();
+        if (isFeatureKeyChanged(changedKeys, ID_STRENGTH)) {
+            setStrengthBonus(getIntegerBonusFor(ID_STRENGTH));
+            setStrengthCostReduction(getCostReductionFor(ID_STRENGTH));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_LIFTING_STRENGTH)) {
+            setLiftingStrengthBonus(getIntegerBonusFor(ID_LIFTING_STRENGTH));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_STRIKING_STRENGTH)) {
+            setStrikingStrengthBonus(getIntegerBonusFor(ID_STRIKING_STRENGTH));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_DEXTERITY)) {
+            setDexterityBonus(getIntegerBonusFor(ID_DEXTERITY));
+            setDexterityCostReduction(getCostReductionFor(ID_DEXTERITY));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_INTELLIGENCE)) {
+            setIntelligenceBonus(getIntegerBonusFor(ID_INTELLIGENCE));
+            setIntelligenceCostReduction(getCostReductionFor(ID_INTELLIGENCE));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_HEALTH)) {
+            setHealthBonus(getIntegerBonusFor(ID_HEALTH));
+            setHealthCostReduction(getCostReductionFor(ID_HEALTH));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_WILL)) {
+            setWillBonus(getIntegerBonusFor(ID_WILL));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_FRIGHT_CHECK)) {
+            setFrightCheckBonus(getIntegerBonusFor(ID_FRIGHT_CHECK));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_PERCEPTION)) {
+            setPerceptionBonus(getIntegerBonusFor(ID_PERCEPTION));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_VISION)) {
+            setVisionBonus(getIntegerBonusFor(ID_VISION));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_HEARING)) {
+            setHearingBonus(getIntegerBonusFor(ID_HEARING));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_TASTE_AND_SMELL)) {
+            setTasteAndSmellBonus(getIntegerBonusFor(ID_TASTE_AND_SMELL));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_TOUCH)) {
+            setTouchBonus(getIntegerBonusFor(ID_TOUCH));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_HIT_POINTS)) {
+            setHitPointBonus(getIntegerBonusFor(ID_HIT_POINTS));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_FATIGUE_POINTS)) {
+            setFatiguePointBonus(getIntegerBonusFor(ID_FATIGUE_POINTS));
+        }
+        if (isFeatureKeyChanged(changedKeys, ATTRIBUTES_PREFIX + BonusAttributeType.SM.name())) {
+            mProfile.update();
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_DODGE_BONUS)) {
+            setDodgeBonus(getIntegerBonusFor(ID_DODGE_BONUS));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_PARRY_BONUS)) {
+            setParryBonus(getIntegerBonusFor(ID_PARRY_BONUS));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_BLOCK_BONUS)) {
+            setBlockBonus(getIntegerBonusFor(ID_BLOCK_BONUS));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_BASIC_SPEED)) {
+            setBasicSpeedBonus(getDoubleBonusFor(ID_BASIC_SPEED));
+        }
+        if (isFeatureKeyChanged(changedKeys, ID_BASIC_MOVE)) {
+            setBasicMoveBonus(getIntegerBonusFor(ID_BASIC_MOVE));
+        }
+        if (changedKeys == null || hasFeatureKeyWithPrefix(changedKeys, Armor.DR_PREFIX)) {
+            mArmor.update();
+        }
+        // Skill & spell levels depend on more than just the feature map (e.g. the levels of the
+        // skills they default to), so these are always refreshed.
         if (!mSkillsUpdated) {
             updateSkills();
         }
@@ -2496,6 +2650,20 @@ public class GURPSCharacter extends CollectedModels {
         endNotify();
     }
 
+    private static boolean isFeatureKeyChanged(Set<String> changedKeys, String id) {
+        return changedKeys == null || changedKeys.contains(id.toLowerCase());
+    }
+
+    private static boolean hasFeatureKeyWithPrefix(Set<String> changedKeys, String prefix) {
+        prefix = prefix.toLowerCase();
+        for (String key : changedKeys) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * @param id The cost reduction ID to search for.
      * @return The cost reduction, as a percentage.
@@ -0,0 +1,162 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.character;
+
+import com.trollworks.gcs.prereq.Prereq;
+import com.trollworks.gcs.skill.SkillDefault;
+import com.trollworks.gcs.skill.Technique;
+import com.trollworks.gcs.spell.RitualMagicSpell;
+import com.trollworks.gcs.ui.widget.outline.ListRow;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks which of a character's rows need their prerequisites re-checked. Each row is recorded
+ * along with the dependency keys its prerequisites read (see {@link
+ * Prereq#fillWithDependencies(Set)}), so that a change to, say, a single skill only causes the rows
+ * that depend on that skill to be re-checked. Changes that can't be narrowed down cause all rows
+ * to be re-checked.
+ */
+class PrereqTracker {
+    private Map<ListRow, Set<String>> mRows           = new HashMap<>();
+    private Map<String, Set<ListRow>> mDependents     = new HashMap<>();
+    private Set<ListRow>              mDirtyRows      = new HashSet<>();
+    private Set<String>               mChangedKeys    = new HashSet<>();
+    private boolean                   mRebuildPending = true;
+
+    /** Forces all rows to be re-checked on the next update. */
+    void markAllDirty() {
+        mRebuildPending = true;
+        mDirtyRows.clear();
+        mChangedKeys.clear();
+    }
+
+    /** @param row A row whose own data may have changed. */
+    void markDirty(ListRow row) {
+        if (!mRebuildPending) {
+            if (mRows.containsKey(row)) {
+                mDirtyRows.add(row);
+            } else {
+                // Not a row we track, so fall back to checking everything.
+                markAllDirty();
+            }
+        }
+    }
+
+    /** @param key A dependency key whose underlying data may have changed. */
+    void markChanged(String key) {
+        if (!mRebuildPending) {
+            mChangedKeys.add(key);
+        }
+    }
+
+    /**
+     * Re-checks the prerequisites of any rows that may be affected by the changes seen since the
+     * last update.
+     *
+     * @param character The character to pull rows from.
+     * @return {@code true} if the satisfied state of any row changed.
+     */
+    boolean update(GURPSCharacter character) {
+        boolean needRepaint = false;
+        if (mRebuildPending) {
+            mRows.clear();
+            mDependents.clear();
+            mDirtyRows.clear();
+            mChangedKeys.clear();
+            mRebuildPending = false;
+            needRepaint |= addRows(character, character.getAdvantagesIterator(false));
+            needRepaint |= addRows(character, character.getSkillsIterator());
+            needRepaint |= addRows(character, character.getSpellsIterator());
+            needRepaint |= addRows(character, character.getEquipmentIterator());
+            needRepaint |= addRows(character, character.getOtherEquipmentIterator());
+        } else if (!mDirtyRows.isEmpty() || !mChangedKeys.isEmpty()) {
+            Set<ListRow> rows = new HashSet<>(mDirtyRows);
+            for (String key : mChangedKeys) {
+                rows.addAll(mDependents.getOrDefault(key, Collections.emptySet()));
+            }
+            mDirtyRows.clear();
+            mChangedKeys.clear();
+            for (ListRow row : rows) {
+                // The row's own data may have changed what it depends upon
+                removeDependencies(row, mRows.get(row));
+                addDependencies(row);
+                needRepaint |= check(character, row);
+            }
+        }
+        return needRepaint;
+    }
+
+    private boolean addRows(GURPSCharacter character, Iterable<? extends ListRow> rows) {
+        boolean needRepaint = false;
+        for (ListRow row : rows) {
+            addDependencies(row);
+            needRepaint |= check(character, row);
+        }
+        return needRepaint;
+    }
+
+    private void addDependencies(ListRow row) {
+        Set<String> dependencies = new HashSet<>();
+        row.getPrereqs().fillWithDependencies(dependencies);
+        if (row instanceof Technique) {
+            SkillDefault skillDefault = ((Technique) row).getDefault();
+            if (skillDefault != null && skillDefault.getType().isSkillBased()) {
+                dependencies.add(Prereq.getDependencyKey(Prereq.DEPENDS_ON_SKILL, skillDefault.getName()));
+            }
+        }
+        if (row instanceof RitualMagicSpell) {
+            dependencies.add(Prereq.getDependencyKey(Prereq.DEPENDS_ON_SKILL, ((RitualMagicSpell) row).getBaseSkillName()));
+        }
+        mRows.put(row, dependencies);
+        for (String key : dependencies) {
+            mDependents.computeIfAbsent(key, k -> new HashSet<>()).add(row);
+        }
+    }
+
+    private void removeDependencies(ListRow row, Set<String> dependencies) {
+        for (String key : dependencies) {
+            Set<ListRow> rows = mDependents.get(key);
+            if (rows != null) {
+                rows.remove(row);
+                if (rows.isEmpty()) {
+                    mDependents.remove(key);
+                }
+            }
+        }
+    }
+
+    private static boolean check(GURPSCharacter character, ListRow row) {
+        // The reason text is only built when actually asked for, via
+        // GURPSCharacter.getReasonForUnsatisfied(ListRow).
+        boolean satisfied = row.getPrereqs().satisfied(character, row, null, "<li>");
+        if (satisfied && row instanceof Technique) {
+            satisfied = ((Technique) row).satisfied(null, "<li>");
+        }
+        if (satisfied && row instanceof RitualMagicSpell) {
+            satisfied = ((RitualMagicSpell) row).satisfied(null, "<li>");
+        }
+        boolean needRepaint = false;
+        if (row.isSatisfied() != satisfied) {
+            row.setSatisfied(satisfied);
+            needRepaint = true;
+        }
+        if (!satisfied) {
+            row.setReasonForUnsatisfied(null);
+        }
+        return needRepaint;
+    }
+}
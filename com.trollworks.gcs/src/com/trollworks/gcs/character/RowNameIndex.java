@@ -0,0 +1,158 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.character;
+
+import com.trollworks.gcs.ui.widget.outline.ListRow;
+import com.trollworks.gcs.ui.widget.outline.OutlineModel;
+import com.trollworks.gcs.ui.widget.outline.RowIterator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A case-insensitive, multi-valued index of all rows (disclosed or not) in an {@link
+ * OutlineModel}, keyed by name and, optionally, by name and specialization. The index is built on
+ * first use. Renamed rows are re-keyed in place, while changes to the set of rows simply
+ * invalidate the index so that it is rebuilt on next use. Rows within a bucket are kept in the same
+ * order a {@link RowIterator} would return them.
+ *
+ * @param <T> The type of row being indexed.
+ */
+class RowNameIndex<T extends ListRow> {
+    private static final char                 SEPARATOR = '\u0000';
+    private              OutlineModel         mModel;
+    private              Function<T, String>  mNameExtractor;
+    private              Function<T, String>  mSpecializationExtractor;
+    private              Map<T, Entry>        mEntries;
+    private              Map<String, List<T>> mByName;
+    private              Map<String, List<T>> mByNameAndSpecialization;
+
+    /**
+     * @param model                   The model to index.
+     * @param nameExtractor           Extracts the name from a row.
+     * @param specializationExtractor Extracts the specialization from a row. May be {@code null}
+     *                                if the rows don't have specializations.
+     */
+    RowNameIndex(OutlineModel model, Function<T, String> nameExtractor, Function<T, String> specializationExtractor) {
+        mModel = model;
+        mNameExtractor = nameExtractor;
+        mSpecializationExtractor = specializationExtractor;
+    }
+
+    /** Discards the index, forcing it to be rebuilt on next use. */
+    void invalidate() {
+        mEntries = null;
+        mByName = null;
+        mByNameAndSpecialization = null;
+    }
+
+    /** @param row A row whose name or specialization may have changed. */
+    void rowChanged(T row) {
+        if (mEntries != null) {
+            Entry entry = mEntries.get(row);
+            if (entry == null) {
+                // Not a row we know about, so the set of rows must have changed underneath us.
+                invalidate();
+            } else {
+                remove(mByName, entry.mNameKey, row);
+                if (mSpecializationExtractor != null) {
+                    remove(mByNameAndSpecialization, entry.mNameAndSpecializationKey, row);
+                }
+                add(row, entry.mOrdinal);
+            }
+        }
+    }
+
+    /**
+     * @param name The name to look for. Case is ignored.
+     * @return The matching rows. Do not modify the returned list.
+     */
+    List<T> lookup(String name) {
+        prepare();
+        return result(mByName.get(fold(name)));
+    }
+
+    /**
+     * @param name           The name to look for. Case is ignored.
+     * @param specialization The specialization to look for. Case is ignored.
+     * @return The matching rows. Do not modify the returned list.
+     */
+    List<T> lookup(String name, String specialization) {
+        prepare();
+        return result(mByNameAndSpecialization.get(key(fold(name), fold(specialization))));
+    }
+
+    private List<T> result(List<T> rows) {
+        return rows != null ? rows : Collections.emptyList();
+    }
+
+    private void prepare() {
+        if (mEntries == null) {
+            mEntries = new HashMap<>();
+            mByName = new HashMap<>();
+            mByNameAndSpecialization = new HashMap<>();
+            int ordinal = 0;
+            for (T row : new RowIterator<T>(mModel)) {
+                add(row, ordinal++);
+            }
+        }
+    }
+
+    private void add(T row, int ordinal) {
+        Entry entry = new Entry();
+        entry.mOrdinal = ordinal;
+        entry.mNameKey = fold(mNameExtractor.apply(row));
+        mEntries.put(row, entry);
+        insert(mByName, entry.mNameKey, row, ordinal);
+        if (mSpecializationExtractor != null) {
+            entry.mNameAndSpecializationKey = key(entry.mNameKey, fold(mSpecializationExtractor.apply(row)));
+            insert(mByNameAndSpecialization, entry.mNameAndSpecializationKey, row, ordinal);
+        }
+    }
+
+    private void insert(Map<String, List<T>> map, String key, T row, int ordinal) {
+        List<T> rows = map.computeIfAbsent(key, k -> new ArrayList<>(1));
+        int     i    = rows.size();
+        while (i > 0 && mEntries.get(rows.get(i - 1)).mOrdinal > ordinal) {
+            i--;
+        }
+        rows.add(i, row);
+    }
+
+    private static <T> void remove(Map<String, List<T>> map, String key, T row) {
+        List<T> rows = map.get(key);
+        if (rows != null) {
+            rows.remove(row);
+            if (rows.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    private static String fold(String text) {
+        return text != null ? text.toLowerCase() : "";
+    }
+
+    private static String key(String name, String specialization) {
+        return name + SEPARATOR + specialization;
+    }
+
+    private static class Entry {
+        int    mOrdinal;
+        String mNameKey;
+        String mNameAndSpecializationKey;
+    }
+}
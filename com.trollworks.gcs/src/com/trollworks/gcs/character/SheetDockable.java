@@ -134,7 +134,11 @@ public class SheetDockable extends CollectedOutlinesDockable {
 
     /** Notify background threads of prereq or feature modifications. */
     public void notifyOfPrereqOrFeatureModification() {
-        if (mSheet.getCharacter().processFeaturesAndPrereqs()) {
+        GURPSCharacter character = mSheet.getCharacter();
+        character.invalidateNameIndexes();
+        character.invalidateFeatures();
+        character.invalidatePrereqs();
+        if (character.processFeaturesAndPrereqs()) {
             mSheet.repaint();
         }
     }
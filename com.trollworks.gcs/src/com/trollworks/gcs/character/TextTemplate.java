@@ -13,6 +13,7 @@ package com.trollworks.gcs.character;
 
 import com.trollworks.gcs.advantage.Advantage;
 import com.trollworks.gcs.advantage.AdvantageColumn;
+import com.trollworks.gcs.character.CompiledTextTemplate.Node;
 import com.trollworks.gcs.equipment.Equipment;
 import com.trollworks.gcs.equipment.EquipmentColumn;
 import com.trollworks.gcs.feature.DRBonus;
@@ -37,11 +38,12 @@ import com.trollworks.gcs.weapon.RangedWeaponStats;
 import com.trollworks.gcs.weapon.WeaponDisplayRow;
 import com.trollworks.gcs.weapon.WeaponStats;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -284,9 +286,32 @@ public class TextTemplate {
     private static final String         KEY_CAMPAIGN_DEPRECATED               = "CAMPAIGN";
     private static final String         KEY_RACE_DEPRECATED                   = "RACE";
     private static final Pattern        NOT_NUMBER_PATTERN                    = Pattern.compile("[^0-9]");
+    // Pairs of loop start & end keys, in the order they are checked for
+    private static final String[][]     LOOP_KEYS                             = {
+            {KEY_ENCUMBRANCE_LOOP_START, KEY_ENCUMBRANCE_LOOP_END},
+            {KEY_HIT_LOCATION_LOOP_START, KEY_HIT_LOCATION_LOOP_END},
+            {KEY_ADVANTAGES_LOOP_START, KEY_ADVANTAGES_LOOP_END},
+            {KEY_ADVANTAGES_ALL_LOOP_START, KEY_ADVANTAGES_ALL_LOOP_END},
+            {KEY_ADVANTAGES_ONLY_LOOP_START, KEY_ADVANTAGES_ONLY_LOOP_END},
+            {KEY_DISADVANTAGES_LOOP_START, KEY_DISADVANTAGES_LOOP_END},
+            {KEY_DISADVANTAGES_ALL_LOOP_START, KEY_DISADVANTAGES_ALL_LOOP_END},
+            {KEY_QUIRKS_LOOP_START, KEY_QUIRKS_LOOP_END},
+            {KEY_PERKS_LOOP_START, KEY_PERKS_LOOP_END},
+            {KEY_LANGUAGES_LOOP_START, KEY_LANGUAGES_LOOP_END},
+            {KEY_CULTURAL_FAMILIARITIES_LOOP_START, KEY_CULTURAL_FAMILIARITIES_LOOP_END},
+            {KEY_SKILLS_LOOP_START, KEY_SKILLS_LOOP_END},
+            {KEY_SPELLS_LOOP_START, KEY_SPELLS_LOOP_END},
+            {KEY_MELEE_LOOP_START, KEY_MELEE_LOOP_END},
+            {KEY_HIERARCHICAL_MELEE_LOOP_START, KEY_HIERARCHICAL_MELEE_LOOP_END},
+            {KEY_RANGED_LOOP_START, KEY_RANGED_LOOP_END},
+            {KEY_HIERARCHICAL_RANGED_LOOP_START, KEY_HIERARCHICAL_RANGED_LOOP_END},
+            {KEY_EQUIPMENT_LOOP_START, KEY_EQUIPMENT_LOOP_END},
+            {KEY_OTHER_EQUIPMENT_LOOP_START, KEY_OTHER_EQUIPMENT_LOOP_END},
+            {KEY_NOTES_LOOP_START, KEY_NOTES_LOOP_END},
+            {KEY_REACTION_LOOP_START, KEY_REACTION_LOOP_END}
+    };
     private              CharacterSheet mSheet;
     private              boolean        mEncodeText                           = true;
-    private              boolean        mEnhancedKeyParsing;
     private              int            mCurrentId;
     private              int            mStartId;
     private              Set<String>    mOnlyCategories                       = new HashSet<>();
@@ -302,47 +327,92 @@ public class TextTemplate {
      * @return {@code true} on success.
      */
     public boolean export(Path exportTo, Path template) {
-        try {
-            char[]        buffer           = new char[1];
-            boolean       lookForKeyMarker = true;
-            StringBuilder keyBuffer        = new StringBuilder();
-            try (BufferedReader in = Files.newBufferedReader(template, StandardCharsets.UTF_8)) {
-                try (BufferedWriter out = Files.newBufferedWriter(exportTo, StandardCharsets.UTF_8)) {
-                    while (in.read(buffer) != -1) {
-                        char ch = buffer[0];
-                        if (lookForKeyMarker) {
-                            if (ch == '@') {
-                                lookForKeyMarker = false;
-                                in.mark(1);
-                            } else {
-                                out.append(ch);
-                            }
-                        } else {
-                            if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                                keyBuffer.append(ch);
-                                in.mark(1);
-                            } else {
-                                if (!mEnhancedKeyParsing || ch != '@') {
-                                    in.reset();        // Allow KEYs to be surrounded by @KEY@
-                                }
-                                emitKey(in, out, keyBuffer.toString(), exportTo);
-                                keyBuffer.setLength(0);
-                                lookForKeyMarker = true;
-                            }
-                        }
-                    }
-                    if (!keyBuffer.isEmpty()) {
-                        emitKey(in, out, keyBuffer.toString(), exportTo);
-                    }
-                }
-            }
+        try (BufferedWriter out = Files.newBufferedWriter(exportTo, StandardCharsets.UTF_8)) {
+            export(template, out, exportTo);
             return true;
         } catch (Exception exception) {
             return false;
         }
     }
 
-    private void emitKey(BufferedReader in, BufferedWriter out, String key, Path base) throws IOException {
+    /**
+     * Renders the template as UTF-8 text into the specified stream. The stream is flushed, but not
+     * closed.
+     *
+     * @param template The template to use.
+     * @param out      The stream to write to.
+     * @param exportTo The path the output is destined for, used to place companion files, such as
+     *                 the portrait, next to it. May be {@code null}, in which case such files are
+     *                 embedded in the output instead.
+     */
+    public void export(Path template, OutputStream out, Path exportTo) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        export(template, writer, exportTo);
+        writer.flush();
+    }
+
+    /**
+     * Renders the template into the specified writer. The writer is not flushed or closed.
+     *
+     * @param template The template to use.
+     * @param out      The writer to write to.
+     * @param exportTo The path the output is destined for, used to place companion files, such as
+     *                 the portrait, next to it. May be {@code null}, in which case such files are
+     *                 embedded in the output instead.
+     */
+    public void export(Path template, Writer out, Path exportTo) throws IOException {
+        for (Node node : CompiledTextTemplate.get(template).getNodes()) {
+            String key = node.getKey();
+            if (key == null) {
+                out.write(node.getText());
+            } else {
+                emitKey(out, node, exportTo);
+            }
+        }
+    }
+
+    /**
+     * @param key The key to check.
+     * @return {@code true} if the key turns on enhanced key parsing for the remainder of the
+     *         template.
+     */
+    static boolean isEnhancedKeyParsingKey(String key) {
+        return KEY_ENHANCED_KEY_PARSING.equals(key);
+    }
+
+    /**
+     * @param key The top-level key to check.
+     * @return The key that ends the loop started by the specified key, or {@code null} if the key
+     *         doesn't start a loop.
+     */
+    static String getLoopEndKey(String key) {
+        for (String[] pair : LOOP_KEYS) {
+            if (key.startsWith(pair[0])) {
+                return pair[1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param key The top-level key that starts a loop.
+     * @return {@code true} if the loop may contain an attack modes loop.
+     */
+    static boolean isHierarchicalLoop(String key) {
+        return key.startsWith(KEY_HIERARCHICAL_MELEE_LOOP_START) || key.startsWith(KEY_HIERARCHICAL_RANGED_LOOP_START);
+    }
+
+    /**
+     * @param key The key within a hierarchical loop to check.
+     * @return The key that ends the attack modes loop started by the specified key, or {@code
+     *         null} if the key doesn't start an attack modes loop.
+     */
+    static String getAttackModesLoopEndKey(String key) {
+        return key.startsWith(KEY_ATTACK_MODES_LOOP_START) ? KEY_ATTACK_MODES_LOOP_END : null;
+    }
+
+    private void emitKey(Writer out, Node node, Path base) throws IOException {
+        String         key            = node.getKey();
         GURPSCharacter gurpsCharacter = mSheet.getCharacter();
         Profile        description    = gurpsCharacter.getProfile();
         switch (key) {
@@ -352,21 +422,17 @@ public class TextTemplate {
         case KEY_ENCODING_OFF:
             mEncodeText = false;
             break;
-        case KEY_ENHANCED_KEY_PARSING:      // Turn on the ability to enclose a KEY with @.
-            mEnhancedKeyParsing = true;     // ex: @KEY@. Useful for when output needs to
-            break;                          // be embedded. ex: "<HTML@KEY@TAG>"
         case KEY_PORTRAIT:
+            if (base == null) {
+                writeEmbeddedPortrait(out, description);
+                break;
+            }
             String fileName = PathUtils.enforceExtension(PathUtils.getLeafName(base, false), FileType.PNG.getExtension());
             ImageIO.write(description.getPortrait().getRetina(), "png", base.resolveSibling(fileName).toFile());
             out.write(URLEncoder.encode(fileName, StandardCharsets.UTF_8));
             break;
         case KEY_PORTRAIT_EMBEDDED:
-            out.write("data:image/png;base64,");
-            ByteArrayOutputStream imgBuffer = new ByteArrayOutputStream();
-            OutputStream wrapped = Base64.getEncoder().wrap(imgBuffer);
-            ImageIO.write(description.getPortrait().getRetina(), "png", wrapped);
-            wrapped.close();
-            out.write(imgBuffer.toString(StandardCharsets.UTF_8));
+            writeEmbeddedPortrait(out, description);
             break;
         case KEY_NAME:
             writeEncodedText(out, description.getName());
@@ -630,47 +696,47 @@ public class TextTemplate {
             break;
         default:
             if (key.startsWith(KEY_ENCUMBRANCE_LOOP_START)) {
-                processEncumbranceLoop(out, extractUpToMarker(in, KEY_ENCUMBRANCE_LOOP_END));
+                processEncumbranceLoop(out, node.getChildren());
             } else if (key.startsWith(KEY_HIT_LOCATION_LOOP_START)) {
-                processHitLocationLoop(out, extractUpToMarker(in, KEY_HIT_LOCATION_LOOP_END));
+                processHitLocationLoop(out, node.getChildren());
             } else if (key.startsWith(KEY_ADVANTAGES_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_ADVANTAGES_LOOP_END), AdvantagesLoopType.ALL);
+                processAdvantagesLoop(out, node.getChildren(), AdvantagesLoopType.ALL);
             } else if (key.startsWith(KEY_ADVANTAGES_ALL_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_ADVANTAGES_ALL_LOOP_END), AdvantagesLoopType.ADS_ALL);
+                processAdvantagesLoop(out, node.getChildren(), AdvantagesLoopType.ADS_ALL);
             } else if (key.startsWith(KEY_ADVANTAGES_ONLY_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_ADVANTAGES_ONLY_LOOP_END), AdvantagesLoopType.ADS);
+                processAdvantagesLoop(out, node.getChildren(), AdvantagesLoopType.ADS);
             } else if (key.startsWith(KEY_DISADVANTAGES_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_DISADVANTAGES_LOOP_END), AdvantagesLoopType.DISADS);
+                processAdvantagesLoop(out, node.getChildren(), AdvantagesLoopType.DISADS);
             } else if (key.startsWith(KEY_DISADVANTAGES_ALL_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_DISADVANTAGES_ALL_LOOP_END), AdvantagesLoopType.DISADS_ALL);
+                processAdvantagesLoop(out, node.getChildren(), AdvantagesLoopType.DISADS_ALL);
             } else if (key.startsWith(KEY_QUIRKS_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_QUIRKS_LOOP_END), AdvantagesLoopType.QUIRKS);
+                processAdvantagesLoop(out, node.getChildren(), AdvantagesLoopType.QUIRKS);
             } else if (key.startsWith(KEY_PERKS_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_PERKS_LOOP_END), AdvantagesLoopType.PERKS);
+                processAdvantagesLoop(out, node.getChildren(), AdvantagesLoopType.PERKS);
             } else if (key.startsWith(KEY_LANGUAGES_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_LANGUAGES_LOOP_END), AdvantagesLoopType.LANGUAGES);
+                processAdvantagesLoop(out, node.getChildren(), AdvantagesLoopType.LANGUAGES);
             } else if (key.startsWith(KEY_CULTURAL_FAMILIARITIES_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_CULTURAL_FAMILIARITIES_LOOP_END), AdvantagesLoopType.CULTURAL_FAMILIARITIES);
+                processAdvantagesLoop(out, node.getChildren(), AdvantagesLoopType.CULTURAL_FAMILIARITIES);
             } else if (key.startsWith(KEY_SKILLS_LOOP_START)) {
-                processSkillsLoop(out, extractUpToMarker(in, KEY_SKILLS_LOOP_END));
+                processSkillsLoop(out, node.getChildren());
             } else if (key.startsWith(KEY_SPELLS_LOOP_START)) {
-                processSpellsLoop(out, extractUpToMarker(in, KEY_SPELLS_LOOP_END));
+                processSpellsLoop(out, node.getChildren());
             } else if (key.startsWith(KEY_MELEE_LOOP_START)) {
-                processMeleeLoop(out, extractUpToMarker(in, KEY_MELEE_LOOP_END));
+                processMeleeLoop(out, node.getChildren());
             } else if (key.startsWith(KEY_HIERARCHICAL_MELEE_LOOP_START)) {
-                processHierarchicalMeleeLoop(out, extractUpToMarker(in, KEY_HIERARCHICAL_MELEE_LOOP_END));
+                processHierarchicalMeleeLoop(out, node.getChildren());
             } else if (key.startsWith(KEY_RANGED_LOOP_START)) {
-                processRangedLoop(out, extractUpToMarker(in, KEY_RANGED_LOOP_END));
+                processRangedLoop(out, node.getChildren());
             } else if (key.startsWith(KEY_HIERARCHICAL_RANGED_LOOP_START)) {
-                processHierarchicalRangedLoop(out, extractUpToMarker(in, KEY_HIERARCHICAL_RANGED_LOOP_END));
+                processHierarchicalRangedLoop(out, node.getChildren());
             } else if (key.startsWith(KEY_EQUIPMENT_LOOP_START)) {
-                processEquipmentLoop(out, extractUpToMarker(in, KEY_EQUIPMENT_LOOP_END), true);
+                processEquipmentLoop(out, node.getChildren(), true);
             } else if (key.startsWith(KEY_OTHER_EQUIPMENT_LOOP_START)) {
-                processEquipmentLoop(out, extractUpToMarker(in, KEY_OTHER_EQUIPMENT_LOOP_END), false);
+                processEquipmentLoop(out, node.getChildren(), false);
             } else if (key.startsWith(KEY_NOTES_LOOP_START)) {
-                processNotesLoop(out, extractUpToMarker(in, KEY_NOTES_LOOP_END));
+                processNotesLoop(out, node.getChildren());
             } else if (key.startsWith(KEY_REACTION_LOOP_START)) {
-                processReactionLoop(out, extractUpToMarker(in, KEY_REACTION_LOOP_END));
+                processReactionLoop(out, node.getChildren());
             } else if (key.startsWith(KEY_ONLY_CATEGORIES)) {
                 setOnlyCategories(key);
             } else if (key.startsWith(KEY_EXCLUDE_CATEGORIES)) {
@@ -682,6 +748,15 @@ public class TextTemplate {
         }
     }
 
+    private static void writeEmbeddedPortrait(Writer out, Profile description) throws IOException {
+        out.write("data:image/png;base64,");
+        ByteArrayOutputStream imgBuffer = new ByteArrayOutputStream();
+        OutputStream wrapped = Base64.getEncoder().wrap(imgBuffer);
+        ImageIO.write(description.getPortrait().getRetina(), "png", wrapped);
+        wrapped.close();
+        out.write(imgBuffer.toString(StandardCharsets.UTF_8));
+    }
+
     private void setOnlyCategories(String key) {
         String[] categories = key.substring(KEY_ONLY_CATEGORIES.length()).split(UNDERSCORE);
         mOnlyCategories.addAll(Arrays.asList(categories));
@@ -692,7 +767,7 @@ public class TextTemplate {
         mExcludedCategories.addAll(Arrays.asList(categories));
     }
 
-    private void writeBestWeaponDefense(BufferedWriter out, Function<MeleeWeaponStats, String> resolver) throws IOException {
+    private void writeBestWeaponDefense(Writer out, Function<MeleeWeaponStats, String> resolver) throws IOException {
         String best      = "-";
         int    bestValue = Integer.MIN_VALUE;
         for (WeaponDisplayRow row : new FilteredIterator<>(mSheet.getMeleeWeaponOutline().getModel().getRows(), WeaponDisplayRow.class)) {
@@ -709,7 +784,7 @@ public class TextTemplate {
         writeEncodedText(out, best);
     }
 
-    private void writeEncodedText(BufferedWriter out, String text) throws IOException {
+    private void writeEncodedText(Writer out, String text) throws IOException {
         if (mEncodeText) {
             StringBuilder buffer = new StringBuilder();
             int           length = text.length();
@@ -738,157 +813,84 @@ public class TextTemplate {
         out.write(text);
     }
 
-    private String extractUpToMarker(BufferedReader in, String marker) throws IOException {
-        char[]        buffer           = new char[1];
-        StringBuilder keyBuffer        = new StringBuilder();
-        StringBuilder extraction       = new StringBuilder();
-        boolean       lookForKeyMarker = true;
-        while (in.read(buffer) != -1) {
-            char ch = buffer[0];
-            if (lookForKeyMarker) {
-                if (ch == '@') {
-                    lookForKeyMarker = false;
-                    in.mark(1);
-                } else {
-                    extraction.append(ch);
-                }
-            } else {
-                if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                    keyBuffer.append(ch);
-                    in.mark(1);
-                } else {
-                    if (!mEnhancedKeyParsing || ch != '@') {
-                        in.reset();        // Allow KEYs to be surrounded by @KEY@
-                    }
-                    String key = keyBuffer.toString();
-                    in.reset();
-                    if (key.equals(marker)) {
-                        return extraction.toString();
-                    }
-                    extraction.append('@');
-                    extraction.append(key);
-                    keyBuffer.setLength(0);
-                    lookForKeyMarker = true;
-                }
-            }
-        }
-        return extraction.toString();
-    }
-
-    private void processEncumbranceLoop(BufferedWriter out, String contents) throws IOException {
-        GURPSCharacter gurpsCharacter   = mSheet.getCharacter();
-        int            length           = contents.length();
-        StringBuilder  keyBuffer        = new StringBuilder();
-        boolean        lookForKeyMarker = true;
+    private void processEncumbranceLoop(Writer out, List<Node> body) throws IOException {
+        GURPSCharacter gurpsCharacter = mSheet.getCharacter();
         for (Encumbrance encumbrance : Encumbrance.values()) {
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (Node node : body) {
+                String key = node.getKey();
+                if (key == null) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
+                    switch (key) {
+                    case KEY_CURRENT_MARKER:
+                        if (encumbrance == gurpsCharacter.getEncumbranceLevel(false)) {
+                            out.write(CURRENT);
                         }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        switch (key) {
-                        case KEY_CURRENT_MARKER:
-                            if (encumbrance == gurpsCharacter.getEncumbranceLevel(false)) {
-                                out.write(CURRENT);
-                            }
-                            break;
-                        case KEY_CURRENT_MARKER_1:
-                            if (encumbrance == gurpsCharacter.getEncumbranceLevel(false)) {
-                                out.write(ONE);
-                            }
-                            break;
-                        case KEY_CURRENT_MARKER_BULLET:
-                            if (encumbrance == gurpsCharacter.getEncumbranceLevel(false)) {
-                                out.write("•");
-                            }
-                            break;
-                        case KEY_LEVEL:
-                            writeEncodedText(out, MessageFormat.format(encumbrance == gurpsCharacter.getEncumbranceLevel(false) ? "• {0} ({1})" : "{0} ({1})", encumbrance, Numbers.format(-encumbrance.getEncumbrancePenalty())));
-                            break;
-                        case KEY_LEVEL_NO_MARKER:
-                            writeEncodedText(out, MessageFormat.format("{0} ({1})", encumbrance, Numbers.format(-encumbrance.getEncumbrancePenalty())));
-                            break;
-                        case KEY_LEVEL_ONLY:
-                            writeEncodedText(out, Numbers.format(-encumbrance.getEncumbrancePenalty()));
-                            break;
-                        case KEY_MAX_LOAD:
-                            writeEncodedText(out, gurpsCharacter.getMaximumCarry(encumbrance).toString());
-                            break;
-                        case KEY_MOVE:
-                            writeEncodedText(out, Numbers.format(gurpsCharacter.getMove(encumbrance)));
-                            break;
-                        case KEY_DODGE:
-                            writeEncodedText(out, Numbers.format(gurpsCharacter.getDodge(encumbrance)));
-                            break;
-                        default:
-                            writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
-                            break;
+                        break;
+                    case KEY_CURRENT_MARKER_1:
+                        if (encumbrance == gurpsCharacter.getEncumbranceLevel(false)) {
+                            out.write(ONE);
+                        }
+                        break;
+                    case KEY_CURRENT_MARKER_BULLET:
+                        if (encumbrance == gurpsCharacter.getEncumbranceLevel(false)) {
+                            out.write("•");
                         }
+                        break;
+                    case KEY_LEVEL:
+                        writeEncodedText(out, MessageFormat.format(encumbrance == gurpsCharacter.getEncumbranceLevel(false) ? "• {0} ({1})" : "{0} ({1})", encumbrance, Numbers.format(-encumbrance.getEncumbrancePenalty())));
+                        break;
+                    case KEY_LEVEL_NO_MARKER:
+                        writeEncodedText(out, MessageFormat.format("{0} ({1})", encumbrance, Numbers.format(-encumbrance.getEncumbrancePenalty())));
+                        break;
+                    case KEY_LEVEL_ONLY:
+                        writeEncodedText(out, Numbers.format(-encumbrance.getEncumbrancePenalty()));
+                        break;
+                    case KEY_MAX_LOAD:
+                        writeEncodedText(out, gurpsCharacter.getMaximumCarry(encumbrance).toString());
+                        break;
+                    case KEY_MOVE:
+                        writeEncodedText(out, Numbers.format(gurpsCharacter.getMove(encumbrance)));
+                        break;
+                    case KEY_DODGE:
+                        writeEncodedText(out, Numbers.format(gurpsCharacter.getDodge(encumbrance)));
+                        break;
+                    default:
+                        writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
+                        break;
                     }
                 }
             }
         }
     }
 
-    private void processHitLocationLoop(BufferedWriter out, String contents) throws IOException {
-        GURPSCharacter gurpsCharacter   = mSheet.getCharacter();
-        int            length           = contents.length();
-        StringBuilder  keyBuffer        = new StringBuilder();
-        boolean        lookForKeyMarker = true;
+    private void processHitLocationLoop(Writer out, List<Node> body) throws IOException {
+        GURPSCharacter gurpsCharacter = mSheet.getCharacter();
         mCurrentId = mStartId;
         HitLocationTable table = gurpsCharacter.getProfile().getHitLocationTable();
         for (HitLocationTableEntry entry : table.getEntries()) {
             mCurrentId++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (Node node : body) {
+                String key = node.getKey();
+                if (key == null) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        switch (key) {
-                        case KEY_ROLL -> writeEncodedText(out, entry.getRoll());
-                        case KEY_WHERE -> writeEncodedText(out, entry.getName());
-                        case KEY_PENALTY -> writeEncodedText(out, Numbers.format(entry.getHitPenalty()));
-                        case KEY_DR -> writeEncodedText(out, Numbers.format(((Integer) gurpsCharacter.getValueForID(entry.getKey())).intValue()));
-                        case KEY_ID -> writeEncodedText(out, Integer.toString(mCurrentId));
-                        // Show the equipment that is providing the DR bonus
-                        case KEY_EQUIPMENT -> writeEncodedText(out, hitLocationEquipment(entry).replace(NEWLINE, COMMA_SEPARATOR));
-                        case KEY_EQUIPMENT_FORMATTED -> {
-                            String loc = hitLocationEquipment(entry);
-                            if (!loc.isEmpty()) {
-                                writeEncodedText(out, PARAGRAPH_START + loc.replace(NEWLINE, PARAGRAPH_END + NEWLINE + PARAGRAPH_START) + PARAGRAPH_END);
-                            }
-                        }
-                        default -> writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
+                    switch (key) {
+                    case KEY_ROLL -> writeEncodedText(out, entry.getRoll());
+                    case KEY_WHERE -> writeEncodedText(out, entry.getName());
+                    case KEY_PENALTY -> writeEncodedText(out, Numbers.format(entry.getHitPenalty()));
+                    case KEY_DR -> writeEncodedText(out, Numbers.format(((Integer) gurpsCharacter.getValueForID(entry.getKey())).intValue()));
+                    case KEY_ID -> writeEncodedText(out, Integer.toString(mCurrentId));
+                    // Show the equipment that is providing the DR bonus
+                    case KEY_EQUIPMENT -> writeEncodedText(out, hitLocationEquipment(entry).replace(NEWLINE, COMMA_SEPARATOR));
+                    case KEY_EQUIPMENT_FORMATTED -> {
+                        String loc = hitLocationEquipment(entry);
+                        if (!loc.isEmpty()) {
+                            writeEncodedText(out, PARAGRAPH_START + loc.replace(NEWLINE, PARAGRAPH_END + NEWLINE + PARAGRAPH_START) + PARAGRAPH_END);
                         }
                     }
+                    default -> writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
+                    }
                 }
             }
         }
@@ -925,71 +927,51 @@ public class TextTemplate {
         return sb.toString();
     }
 
-    private void processAdvantagesLoop(BufferedWriter out, String contents, AdvantagesLoopType loopType) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
+    private void processAdvantagesLoop(Writer out, List<Node> body, AdvantagesLoopType loopType) throws IOException {
         mCurrentId = mStartId;
         for (Advantage advantage : mSheet.getCharacter().getAdvantagesIterator(false)) {
             if (loopType.shouldInclude(advantage, mOnlyCategories, mExcludedCategories)) {
                 mCurrentId++;
-                for (int i = 0; i < length; i++) {
-                    char ch = contents.charAt(i);
-                    if (lookForKeyMarker) {
-                        if (ch == '@') {
-                            lookForKeyMarker = false;
-                        } else {
-                            out.append(ch);
-                        }
-                    } else {
-                        if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                            keyBuffer.append(ch);
-                        } else {
-                            String key = keyBuffer.toString();
-                            i--;
-                            if (mEnhancedKeyParsing && ch == '@') {
-                                i++;        // Allow KEYs to be surrounded with @, e.g. @KEY@
-                            }
-                            keyBuffer.setLength(0);
-                            lookForKeyMarker = true;
-                            if (!processStyleIndentWarning(key, out, advantage)) {
-                                if (!processDescription(key, out, advantage)) {
-                                    switch (key) {
-                                    case KEY_POINTS:
-                                        writeEncodedText(out, AdvantageColumn.POINTS.getDataAsText(advantage));
-                                        break;
-                                    case KEY_REF:
-                                        writeEncodedText(out, AdvantageColumn.REFERENCE.getDataAsText(advantage));
-                                        break;
-                                    case KEY_ID:
-                                        writeEncodedText(out, Integer.toString(mCurrentId));
-                                        break;
-                                    case KEY_TYPE:
-                                        writeEncodedText(out, advantage.canHaveChildren() ? advantage.getContainerType().name() : ITEM);
-                                        break;
-                                    case KEY_DESCRIPTION_USER:
-                                        writeEncodedText(out, advantage.getUserDesc());
-                                        break;
-                                    case KEY_DESCRIPTION_USER_FORMATTED:
-                                        if (!advantage.getUserDesc().isEmpty()) {
-                                            writeEncodedText(out, PARAGRAPH_START + advantage.getUserDesc().replace(NEWLINE, PARAGRAPH_END + NEWLINE + PARAGRAPH_START) + PARAGRAPH_END);
-                                        }
-                                        break;
-                                    default:
-                                        /* Allows the access to notes on modifiers.  Currently only used in the 'Language' loop.
-                                         * e.g. Advantage:Language, Modifier:Spoken -> Note:Native, Advantage:Language, Modifier:Written -> Note:Accented
-                                         */
-                                        if (key.startsWith(KEY_MODIFIER_NOTES_FOR)) {
-                                            AdvantageModifier m = advantage.getActiveModifierFor(key.substring(KEY_MODIFIER_NOTES_FOR.length()));
-                                            if (m != null) {
-                                                writeEncodedText(out, m.getNotes());
-                                            }
-                                        } else {
-                                            writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
-                                        }
-                                        break;
+                for (Node node : body) {
+                    String key = node.getKey();
+                    if (key == null) {
+                        out.write(node.getText());
+                    } else if (!processStyleIndentWarning(key, out, advantage)) {
+                        if (!processDescription(key, out, advantage)) {
+                            switch (key) {
+                            case KEY_POINTS:
+                                writeEncodedText(out, AdvantageColumn.POINTS.getDataAsText(advantage));
+                                break;
+                            case KEY_REF:
+                                writeEncodedText(out, AdvantageColumn.REFERENCE.getDataAsText(advantage));
+                                break;
+                            case KEY_ID:
+                                writeEncodedText(out, Integer.toString(mCurrentId));
+                                break;
+                            case KEY_TYPE:
+                                writeEncodedText(out, advantage.canHaveChildren() ? advantage.getContainerType().name() : ITEM);
+                                break;
+                            case KEY_DESCRIPTION_USER:
+                                writeEncodedText(out, advantage.getUserDesc());
+                                break;
+                            case KEY_DESCRIPTION_USER_FORMATTED:
+                                if (!advantage.getUserDesc().isEmpty()) {
+                                    writeEncodedText(out, PARAGRAPH_START + advantage.getUserDesc().replace(NEWLINE, PARAGRAPH_END + NEWLINE + PARAGRAPH_START) + PARAGRAPH_END);
+                                }
+                                break;
+                            default:
+                                /* Allows the access to notes on modifiers.  Currently only used in the 'Language' loop.
+                                 * e.g. Advantage:Language, Modifier:Spoken -> Note:Native, Advantage:Language, Modifier:Written -> Note:Accented
+                                 */
+                                if (key.startsWith(KEY_MODIFIER_NOTES_FOR)) {
+                                    AdvantageModifier m = advantage.getActiveModifierFor(key.substring(KEY_MODIFIER_NOTES_FOR.length()));
+                                    if (m != null) {
+                                        writeEncodedText(out, m.getNotes());
                                     }
+                                } else {
+                                    writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
                                 }
+                                break;
                             }
                         }
                     }
@@ -1001,7 +983,7 @@ public class TextTemplate {
         mStartId = 0;
     }
 
-    private boolean processDescription(String key, BufferedWriter out, ListRow row) throws IOException {
+    private boolean processDescription(String key, Writer out, ListRow row) throws IOException {
         if (key.equals(KEY_DESCRIPTION)) {
             writeEncodedText(out, row.toString());
             writeNote(out, row.getModifierNotes());
@@ -1018,7 +1000,7 @@ public class TextTemplate {
         return true;
     }
 
-    private void writeXMLTextWithOptionalParens(String key, BufferedWriter out, String text) throws IOException {
+    private void writeXMLTextWithOptionalParens(String key, Writer out, String text) throws IOException {
         if (!text.isEmpty()) {
             String pre  = "";
             String post = "";
@@ -1038,7 +1020,7 @@ public class TextTemplate {
         }
     }
 
-    private void writeNote(BufferedWriter out, String notes) throws IOException {
+    private void writeNote(Writer out, String notes) throws IOException {
         if (!notes.isEmpty()) {
             out.write("<div class=\"note\">");
             writeEncodedText(out, notes);
@@ -1046,44 +1028,24 @@ public class TextTemplate {
         }
     }
 
-    private void processSkillsLoop(BufferedWriter out, String contents) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
+    private void processSkillsLoop(Writer out, List<Node> body) throws IOException {
         mCurrentId = mStartId;
         for (Skill skill : mSheet.getCharacter().getSkillsIterator()) {
             mCurrentId++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
-                } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        if (!processStyleIndentWarning(key, out, skill)) {
-                            if (!processDescription(key, out, skill)) {
-                                switch (key) {
-                                case KEY_SL -> writeEncodedText(out, SkillColumn.LEVEL.getDataAsText(skill));
-                                case KEY_RSL -> writeEncodedText(out, SkillColumn.RELATIVE_LEVEL.getDataAsText(skill));
-                                case KEY_DIFFICULTY -> writeEncodedText(out, SkillColumn.DIFFICULTY.getDataAsText(skill));
-                                case KEY_POINTS -> writeEncodedText(out, SkillColumn.POINTS.getDataAsText(skill));
-                                case KEY_REF -> writeEncodedText(out, SkillColumn.REFERENCE.getDataAsText(skill));
-                                case KEY_ID -> writeEncodedText(out, Integer.toString(mCurrentId));
-                                default -> writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
-                                }
-                            }
+            for (Node node : body) {
+                String key = node.getKey();
+                if (key == null) {
+                    out.write(node.getText());
+                } else if (!processStyleIndentWarning(key, out, skill)) {
+                    if (!processDescription(key, out, skill)) {
+                        switch (key) {
+                        case KEY_SL -> writeEncodedText(out, SkillColumn.LEVEL.getDataAsText(skill));
+                        case KEY_RSL -> writeEncodedText(out, SkillColumn.RELATIVE_LEVEL.getDataAsText(skill));
+                        case KEY_DIFFICULTY -> writeEncodedText(out, SkillColumn.DIFFICULTY.getDataAsText(skill));
+                        case KEY_POINTS -> writeEncodedText(out, SkillColumn.POINTS.getDataAsText(skill));
+                        case KEY_REF -> writeEncodedText(out, SkillColumn.REFERENCE.getDataAsText(skill));
+                        case KEY_ID -> writeEncodedText(out, Integer.toString(mCurrentId));
+                        default -> writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
                         }
                     }
                 }
@@ -1092,7 +1054,7 @@ public class TextTemplate {
         mStartId = 0;
     }
 
-    private static boolean processStyleIndentWarning(String key, BufferedWriter out, ListRow row) throws IOException {
+    private static boolean processStyleIndentWarning(String key, Writer out, ListRow row) throws IOException {
         if (key.equals(KEY_STYLE_INDENT_WARNING)) {
             StringBuilder style = new StringBuilder();
             int           depth = row.getDepth();
@@ -1122,51 +1084,31 @@ public class TextTemplate {
         return true;
     }
 
-    private void processSpellsLoop(BufferedWriter out, String contents) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
+    private void processSpellsLoop(Writer out, List<Node> body) throws IOException {
         mCurrentId = mStartId;
         for (Spell spell : mSheet.getCharacter().getSpellsIterator()) {
             mCurrentId++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
-                } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        if (!processStyleIndentWarning(key, out, spell)) {
-                            if (!processDescription(key, out, spell)) {
-                                switch (key) {
-                                case KEY_CLASS -> writeEncodedText(out, spell.getSpellClass());
-                                case KEY_COLLEGE -> writeEncodedText(out, spell.getCollege());
-                                case KEY_MANA_CAST -> writeEncodedText(out, spell.getCastingCost());
-                                case KEY_MANA_MAINTAIN -> writeEncodedText(out, spell.getMaintenance());
-                                case KEY_TIME_CAST -> writeEncodedText(out, spell.getCastingTime());
-                                case KEY_DURATION -> writeEncodedText(out, spell.getDuration());
-                                case KEY_RESIST -> writeEncodedText(out, spell.getResist());
-                                case KEY_SL -> writeEncodedText(out, SpellColumn.LEVEL.getDataAsText(spell));
-                                case KEY_RSL -> writeEncodedText(out, SpellColumn.RELATIVE_LEVEL.getDataAsText(spell));
-                                case KEY_DIFFICULTY -> writeEncodedText(out, spell.getDifficultyAsText());
-                                case KEY_POINTS -> writeEncodedText(out, SpellColumn.POINTS.getDataAsText(spell));
-                                case KEY_REF -> writeEncodedText(out, SpellColumn.REFERENCE.getDataAsText(spell));
-                                case KEY_ID -> writeEncodedText(out, Integer.toString(mCurrentId));
-                                default -> writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
-                                }
-                            }
+            for (Node node : body) {
+                String key = node.getKey();
+                if (key == null) {
+                    out.write(node.getText());
+                } else if (!processStyleIndentWarning(key, out, spell)) {
+                    if (!processDescription(key, out, spell)) {
+                        switch (key) {
+                        case KEY_CLASS -> writeEncodedText(out, spell.getSpellClass());
+                        case KEY_COLLEGE -> writeEncodedText(out, spell.getCollege());
+                        case KEY_MANA_CAST -> writeEncodedText(out, spell.getCastingCost());
+                        case KEY_MANA_MAINTAIN -> writeEncodedText(out, spell.getMaintenance());
+                        case KEY_TIME_CAST -> writeEncodedText(out, spell.getCastingTime());
+                        case KEY_DURATION -> writeEncodedText(out, spell.getDuration());
+                        case KEY_RESIST -> writeEncodedText(out, spell.getResist());
+                        case KEY_SL -> writeEncodedText(out, SpellColumn.LEVEL.getDataAsText(spell));
+                        case KEY_RSL -> writeEncodedText(out, SpellColumn.RELATIVE_LEVEL.getDataAsText(spell));
+                        case KEY_DIFFICULTY -> writeEncodedText(out, spell.getDifficultyAsText());
+                        case KEY_POINTS -> writeEncodedText(out, SpellColumn.POINTS.getDataAsText(spell));
+                        case KEY_REF -> writeEncodedText(out, SpellColumn.REFERENCE.getDataAsText(spell));
+                        case KEY_ID -> writeEncodedText(out, Integer.toString(mCurrentId));
+                        default -> writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
                         }
                     }
                 }
@@ -1175,35 +1117,17 @@ public class TextTemplate {
         mStartId = 0;
     }
 
-    private void processMeleeLoop(BufferedWriter out, String contents) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
+    private void processMeleeLoop(Writer out, List<Node> body) throws IOException {
         mCurrentId = mStartId;
         for (WeaponDisplayRow row : new FilteredIterator<>(mSheet.getMeleeWeaponOutline().getModel().getRows(), WeaponDisplayRow.class)) {
             mCurrentId++;
             MeleeWeaponStats weapon = (MeleeWeaponStats) row.getWeapon();
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (Node node : body) {
+                String key = node.getKey();
+                if (key == null) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        i = processMeleeWeaponKeys(out, key, mCurrentId, weapon, i, contents, null);
-                    }
+                    processMeleeWeaponKeys(out, node, mCurrentId, weapon, null);
                 }
             }
         }
@@ -1211,77 +1135,44 @@ public class TextTemplate {
     }
 
     /* Handle keys specific to MeleeWeaponStats.   If "attackModes" is NOT NULL, then we could allow processing of a hierarchical loop  */
-    private int processMeleeWeaponKeys(BufferedWriter out, String key, int counter, MeleeWeaponStats weapon, int index, String contents, List<MeleeWeaponStats> attackModes) throws IOException {
+    private void processMeleeWeaponKeys(Writer out, Node node, int counter, MeleeWeaponStats weapon, List<MeleeWeaponStats> attackModes) throws IOException {
+        String key = node.getKey();
         switch (key) {
-        case KEY_PARRY -> {
-            writeEncodedText(out, weapon.getResolvedParry());
-            return index;
-        }
-        case KEY_BLOCK -> {
-            writeEncodedText(out, weapon.getResolvedBlock());
-            return index;
-        }
-        case KEY_REACH -> {
-            writeEncodedText(out, weapon.getReach());
-            return index;
-        }
+        case KEY_PARRY -> writeEncodedText(out, weapon.getResolvedParry());
+        case KEY_BLOCK -> writeEncodedText(out, weapon.getResolvedBlock());
+        case KEY_REACH -> writeEncodedText(out, weapon.getReach());
         default -> {
-            if (attackModes != null && key.startsWith(KEY_ATTACK_MODES_LOOP_START)) {
-                int endIndex = contents.indexOf(KEY_ATTACK_MODES_LOOP_END);
-                if (endIndex > 0) {
-                    String subContents = contents.substring(index + 1, endIndex - 1);
-                    processMeleeAttackModes(out, subContents, attackModes);
-                    return endIndex + KEY_ATTACK_MODES_LOOP_END.length();
-                }
+            if (attackModes != null && node.getChildren() != null) {
+                processMeleeAttackModes(out, node.getChildren(), attackModes);
+            } else {
+                processWeaponKeys(out, key, counter, weapon);
             }
-            return processWeaponKeys(out, key, counter, weapon, index);
         }
         }
     }
 
     /* Handle keys specific to RangedWeaponStats.   If "attackModes" is NOT NULL, then we could allow processing of a hierarchical loop  */
-    private int processRangedWeaponKeys(BufferedWriter out, String key, int counter, RangedWeaponStats weapon, int index, String contents, List<RangedWeaponStats> attackModes) throws IOException {
+    private void processRangedWeaponKeys(Writer out, Node node, int counter, RangedWeaponStats weapon, List<RangedWeaponStats> attackModes) throws IOException {
+        String key = node.getKey();
         switch (key) {
-        case KEY_BULK -> {
-            writeEncodedText(out, weapon.getBulk());
-            return index;
-        }
-        case KEY_ACCURACY -> {
-            writeEncodedText(out, weapon.getAccuracy());
-            return index;
-        }
-        case KEY_RANGE -> {
-            writeEncodedText(out, weapon.getRange());
-            return index;
-        }
-        case KEY_ROF -> {
-            writeEncodedText(out, weapon.getRateOfFire());
-            return index;
-        }
-        case KEY_SHOTS -> {
-            writeEncodedText(out, weapon.getShots());
-            return index;
-        }
-        case KEY_RECOIL -> {
-            writeEncodedText(out, weapon.getRecoil());
-            return index;
-        }
+        case KEY_BULK -> writeEncodedText(out, weapon.getBulk());
+        case KEY_ACCURACY -> writeEncodedText(out, weapon.getAccuracy());
+        case KEY_RANGE -> writeEncodedText(out, weapon.getRange());
+        case KEY_ROF -> writeEncodedText(out, weapon.getRateOfFire());
+        case KEY_SHOTS -> writeEncodedText(out, weapon.getShots());
+        case KEY_RECOIL -> writeEncodedText(out, weapon.getRecoil());
         default -> {
-            if (attackModes != null && key.startsWith(KEY_ATTACK_MODES_LOOP_START)) {
-                int endIndex = contents.indexOf(KEY_ATTACK_MODES_LOOP_END);
-                if (endIndex > 0) {
-                    String subContents = contents.substring(index + 1, endIndex - 1);
-                    processRangedAttackModes(out, subContents, attackModes);
-                    return endIndex + KEY_ATTACK_MODES_LOOP_END.length();
-                }
+            if (attackModes != null && node.getChildren() != null) {
+                processRangedAttackModes(out, node.getChildren(), attackModes);
+            } else {
+                processWeaponKeys(out, key, counter, weapon);
             }
-            return processWeaponKeys(out, key, counter, weapon, index);
         }
         }
     }
 
     /* Break out handling of general weapons information. Anything known by WeaponStats or the equipment.  */
-    private int processWeaponKeys(BufferedWriter out, String key, int counter, WeaponStats weapon, int index) throws IOException {
+    private void processWeaponKeys(Writer out, String key, int counter, WeaponStats weapon) throws IOException {
         Equipment equipment = null;
         if (weapon.getOwner() instanceof Equipment) {
             equipment = (Equipment) weapon.getOwner();
@@ -1339,17 +1230,13 @@ public class TextTemplate {
                 break;
             }
         }
-        return index;
     }
 
     /* Process the weapons in a hierarchical format.   One time for each weapon with a unique name,
      * and then possibly one time for each different "attack mode" that the weapon can support.
      * e.g. Weapon Name: Spear, attack modes "1 Handed" and "2 Handed"
      */
-    private void processHierarchicalMeleeLoop(BufferedWriter out, String contents) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
+    private void processHierarchicalMeleeLoop(Writer out, List<Node> body) throws IOException {
         mCurrentId = mStartId;
         Map<String, ArrayList<MeleeWeaponStats>> weaponsMap = new HashMap<>();
         Map<String, MeleeWeaponStats>            weapons    = new HashMap<>();
@@ -1361,27 +1248,12 @@ public class TextTemplate {
         }
         for (MeleeWeaponStats weapon : weapons.values()) {
             mCurrentId++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (Node node : body) {
+                String key = node.getKey();
+                if (key == null) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        i = processMeleeWeaponKeys(out, key, mCurrentId, weapon, i, contents, weaponsMap.get(weapon.getDescription()));
-                    }
+                    processMeleeWeaponKeys(out, node, mCurrentId, weapon, weaponsMap.get(weapon.getDescription()));
                 }
             }
         }
@@ -1392,10 +1264,7 @@ public class TextTemplate {
      * and then possibly one time for each different "attack mode" that the weapon can support.
      * e.g. Weapon Name: Atlatl, attack modes "Shoot Dart" and "Shoot Javelin"
      */
-    private void processHierarchicalRangedLoop(BufferedWriter out, String contents) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
+    private void processHierarchicalRangedLoop(Writer out, List<Node> body) throws IOException {
         mCurrentId = mStartId;
         Map<String, ArrayList<RangedWeaponStats>> weaponsMap = new HashMap<>();
         Map<String, RangedWeaponStats>            weapons    = new HashMap<>();
@@ -1407,27 +1276,12 @@ public class TextTemplate {
         }
         for (RangedWeaponStats weapon : weapons.values()) {
             mCurrentId++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (Node node : body) {
+                String key = node.getKey();
+                if (key == null) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        i = processRangedWeaponKeys(out, key, mCurrentId, weapon, i, contents, weaponsMap.get(weapon.getDescription()));
-                    }
+                    processRangedWeaponKeys(out, node, mCurrentId, weapon, weaponsMap.get(weapon.getDescription()));
                 }
             }
         }
@@ -1437,34 +1291,16 @@ public class TextTemplate {
     /* Loop through all of the attackModes for a particular weapon.   We need to make melee/ranged specific
      * versions of this method because they must call the correct "processXXWeaponKeys" method.
      */
-    private void processMeleeAttackModes(BufferedWriter out, String contents, List<MeleeWeaponStats> attackModes) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
-        int           counter          = 0;
+    private void processMeleeAttackModes(Writer out, List<Node> body, List<MeleeWeaponStats> attackModes) throws IOException {
+        int counter = 0;
         for (MeleeWeaponStats weapon : attackModes) {
             counter++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (Node node : body) {
+                String key = node.getKey();
+                if (key == null) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        i = processMeleeWeaponKeys(out, key, counter, weapon, i, contents, null);
-                    }
+                    processMeleeWeaponKeys(out, node, counter, weapon, null);
                 }
             }
         }
@@ -1473,34 +1309,16 @@ public class TextTemplate {
     /* Loop through all of the attackModes for a particular weapon.   We need to make melee/ranged specific
      * versions of this method because they must call the correct "processXXWeaponKeys" method.
      */
-    private void processRangedAttackModes(BufferedWriter out, String contents, List<RangedWeaponStats> attackModes) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
-        int           counter          = 0;
+    private void processRangedAttackModes(Writer out, List<Node> body, List<RangedWeaponStats> attackModes) throws IOException {
+        int counter = 0;
         for (RangedWeaponStats weapon : attackModes) {
             counter++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (Node node : body) {
+                String key = node.getKey();
+                if (key == null) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        i = processRangedWeaponKeys(out, key, counter, weapon, i, contents, null);
-                    }
+                    processRangedWeaponKeys(out, node, counter, weapon, null);
                 }
             }
         }
@@ -1533,7 +1351,7 @@ public class TextTemplate {
         return 0;
     }
 
-    private boolean processDescription(String key, BufferedWriter out, WeaponStats stats) throws IOException {
+    private boolean processDescription(String key, Writer out, WeaponStats stats) throws IOException {
         if (key.equals(KEY_DESCRIPTION)) {
             writeEncodedText(out, stats.toString());
             writeNote(out, stats.getNotes());
@@ -1547,45 +1365,24 @@ public class TextTemplate {
         return true;
     }
 
-    private void processRangedLoop(BufferedWriter out, String contents) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
+    private void processRangedLoop(Writer out, List<Node> body) throws IOException {
         mCurrentId = mStartId;
         for (WeaponDisplayRow row : new FilteredIterator<>(mSheet.getRangedWeaponOutline().getModel().getRows(), WeaponDisplayRow.class)) {
             mCurrentId++;
             RangedWeaponStats weapon = (RangedWeaponStats) row.getWeapon();
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (Node node : body) {
+                String key = node.getKey();
+                if (key == null) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        i = processRangedWeaponKeys(out, key, mCurrentId, weapon, i, contents, null);
-                    }
+                    processRangedWeaponKeys(out, node, mCurrentId, weapon, null);
                 }
             }
         }
         mStartId = 0;
     }
 
-    private void processEquipmentLoop(BufferedWriter out, String contents, boolean carried) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
+    private void processEquipmentLoop(Writer out, List<Node> body, boolean carried) throws IOException {
         mCurrentId = mStartId;
         // Create child-to-parent maps to determine where items are being stored.
         // Used by KEY_LOCATION
@@ -1604,102 +1401,85 @@ public class TextTemplate {
         }
         for (Equipment equipment : equipmentList) {
             mCurrentId++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
-                } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        if (!processStyleIndentWarning(key, out, equipment)) {
-                            if (!processDescription(key, out, equipment)) {
-                                switch (key) {
-                                case KEY_STATE:
-                                    if (carried) {
-                                        out.write(equipment.isEquipped() ? "E" : "C");
-                                    } else {
-                                        out.write("-");
-                                    }
-                                    break;
-                                case KEY_EQUIPPED:
-                                    if (carried && equipment.isEquipped()) {
-                                        out.write("✓");
-                                    }
-                                    break;
-                                case KEY_EQUIPPED_NUM:
-                                    out.write(carried && equipment.isEquipped() ? '1' : '0');
-                                    break;
-                                case KEY_CARRIED_STATUS:
-                                    if (carried) {
-                                        out.write(equipment.isEquipped() ? '2' : '1');
-                                    } else {
-                                        out.write('0');
-                                    }
-                                    break;
-                                case KEY_QTY:
-                                    writeEncodedText(out, Numbers.format(equipment.getQuantity()));
-                                    break;
-                                case KEY_COST:
-                                    writeEncodedText(out, equipment.getAdjustedValue().toLocalizedString());
-                                    break;
-                                case KEY_WEIGHT:
-                                    writeEncodedText(out, EquipmentColumn.getDisplayWeight(equipment.getDataFile(), equipment.getAdjustedWeight(false)));
-                                    break;
-                                case KEY_COST_SUMMARY:
-                                    writeEncodedText(out, equipment.getExtendedValue().toLocalizedString());
-                                    break;
-                                case KEY_WEIGHT_SUMMARY:
-                                    writeEncodedText(out, EquipmentColumn.getDisplayWeight(equipment.getDataFile(), equipment.getExtendedWeight(false)));
-                                    break;
-                                case KEY_WEIGHT_RAW:
-                                    writeEncodedText(out, equipment.getAdjustedWeight(false).getNormalizedValue().toLocalizedString());
-                                    break;
-                                case KEY_REF:
-                                    writeEncodedText(out, equipment.getReference());
-                                    break;
-                                case KEY_ID:
-                                    writeEncodedText(out, Integer.toString(mCurrentId));
-                                    break;
-                                case KEY_TL:
-                                    writeEncodedText(out, equipment.getTechLevel());
-                                    break;
-                                case KEY_LEGALITY_CLASS:
-                                    writeEncodedText(out, equipment.getDisplayLegalityClass());
-                                    break;
-                                case KEY_CATEGORIES:
-                                    writeEncodedText(out, equipment.getCategoriesAsString());
-                                    break;
-                                case KEY_LOCATION:
-                                    for (int j = 0; j < children.size(); j++) {
-                                        if (children.get(j).contains(equipment)) {
-                                            writeEncodedText(out, parents.get(j).getDescription());
-                                        }
-                                    }
-                                    break;
-                                default:
-                                    if (key.startsWith(KEY_MODIFIER_NOTES_FOR)) {
-                                        EquipmentModifier m = equipment.getActiveModifierFor(key.substring(KEY_MODIFIER_NOTES_FOR.length()));
-                                        if (m != null) {
-                                            writeEncodedText(out, m.getNotes());
-                                        }
-                                    } else {
-                                        writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
-                                    }
-                                    break;
+            for (Node node : body) {
+                String key = node.getKey();
+                if (key == null) {
+                    out.write(node.getText());
+                } else if (!processStyleIndentWarning(key, out, equipment)) {
+                    if (!processDescription(key, out, equipment)) {
+                        switch (key) {
+                        case KEY_STATE:
+                            if (carried) {
+                                out.write(equipment.isEquipped() ? "E" : "C");
+                            } else {
+                                out.write("-");
+                            }
+                            break;
+                        case KEY_EQUIPPED:
+                            if (carried && equipment.isEquipped()) {
+                                out.write("✓");
+                            }
+                            break;
+                        case KEY_EQUIPPED_NUM:
+                            out.write(carried && equipment.isEquipped() ? '1' : '0');
+                            break;
+                        case KEY_CARRIED_STATUS:
+                            if (carried) {
+                                out.write(equipment.isEquipped() ? '2' : '1');
+                            } else {
+                                out.write('0');
+                            }
+                            break;
+                        case KEY_QTY:
+                            writeEncodedText(out, Numbers.format(equipment.getQuantity()));
+                            break;
+                        case KEY_COST:
+                            writeEncodedText(out, equipment.getAdjustedValue().toLocalizedString());
+                            break;
+                        case KEY_WEIGHT:
+                            writeEncodedText(out, EquipmentColumn.getDisplayWeight(equipment.getDataFile(), equipment.getAdjustedWeight(false)));
+                            break;
+                        case KEY_COST_SUMMARY:
+                            writeEncodedText(out, equipment.getExtendedValue().toLocalizedString());
+                            break;
+                        case KEY_WEIGHT_SUMMARY:
+                            writeEncodedText(out, EquipmentColumn.getDisplayWeight(equipment.getDataFile(), equipment.getExtendedWeight(false)));
+                            break;
+                        case KEY_WEIGHT_RAW:
+                            writeEncodedText(out, equipment.getAdjustedWeight(false).getNormalizedValue().toLocalizedString());
+                            break;
+                        case KEY_REF:
+                            writeEncodedText(out, equipment.getReference());
+                            break;
+                        case KEY_ID:
+                            writeEncodedText(out, Integer.toString(mCurrentId));
+                            break;
+                        case KEY_TL:
+                            writeEncodedText(out, equipment.getTechLevel());
+                            break;
+                        case KEY_LEGALITY_CLASS:
+                            writeEncodedText(out, equipment.getDisplayLegalityClass());
+                            break;
+                        case KEY_CATEGORIES:
+                            writeEncodedText(out, equipment.getCategoriesAsString());
+                            break;
+                        case KEY_LOCATION:
+                            for (int j = 0; j < children.size(); j++) {
+                                if (children.get(j).contains(equipment)) {
+                                    writeEncodedText(out, parents.get(j).getDescription());
                                 }
                             }
+                            break;
+                        default:
+                            if (key.startsWith(KEY_MODIFIER_NOTES_FOR)) {
+                                EquipmentModifier m = equipment.getActiveModifierFor(key.substring(KEY_MODIFIER_NOTES_FOR.length()));
+                                if (m != null) {
+                                    writeEncodedText(out, m.getNotes());
+                                }
+                            } else {
+                                writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
+                            }
+                            break;
                         }
                     }
                 }
@@ -1728,50 +1508,30 @@ public class TextTemplate {
         return true;
     }
 
-    private void processNotesLoop(BufferedWriter out, String contents) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
+    private void processNotesLoop(Writer out, List<Node> body) throws IOException {
         mCurrentId = mStartId;
         for (Note note : mSheet.getCharacter().getNoteIterator()) {
             mCurrentId++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
-                } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        if (!processStyleIndentWarning(key, out, note)) {
-                            switch (key) {
-                            case KEY_NOTE:
-                                writeEncodedText(out, note.getDescription());
-                                break;
-                            case KEY_NOTE_FORMATTED:
-                                if (!note.getDescription().isEmpty()) {
-                                    writeEncodedText(out, PARAGRAPH_START + note.getDescription().replace(NEWLINE, PARAGRAPH_END + NEWLINE + PARAGRAPH_START) + PARAGRAPH_END);
-                                }
-                                break;
-                            case KEY_ID:
-                                writeEncodedText(out, Integer.toString(mCurrentId));
-                                break;
-                            default:
-                                writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
-                                break;
-                            }
+            for (Node node : body) {
+                String key = node.getKey();
+                if (key == null) {
+                    out.write(node.getText());
+                } else if (!processStyleIndentWarning(key, out, note)) {
+                    switch (key) {
+                    case KEY_NOTE:
+                        writeEncodedText(out, note.getDescription());
+                        break;
+                    case KEY_NOTE_FORMATTED:
+                        if (!note.getDescription().isEmpty()) {
+                            writeEncodedText(out, PARAGRAPH_START + note.getDescription().replace(NEWLINE, PARAGRAPH_END + NEWLINE + PARAGRAPH_START) + PARAGRAPH_END);
                         }
+                        break;
+                    case KEY_ID:
+                        writeEncodedText(out, Integer.toString(mCurrentId));
+                        break;
+                    default:
+                        writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
+                        break;
                     }
                 }
             }
@@ -1779,39 +1539,21 @@ public class TextTemplate {
         mStartId = 0;
     }
 
-    private void processReactionLoop(BufferedWriter out, String contents) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
+    private void processReactionLoop(Writer out, List<Node> body) throws IOException {
         mCurrentId = mStartId;
         List<ReactionRow> reactions = mSheet.collectReactions();
         for (ReactionRow reaction : reactions) {
             mCurrentId++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (Node node : body) {
+                String key = node.getKey();
+                if (key == null) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        switch (key) {
-                        case KEY_MODIFIER -> writeEncodedText(out, Numbers.formatWithForcedSign(reaction.getTotalAmount()));
-                        case KEY_SITUATION -> writeEncodedText(out, reaction.getFrom());
-                        case KEY_ID -> writeEncodedText(out, Integer.toString(mCurrentId));
-                        default -> writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
-                        }
+                    switch (key) {
+                    case KEY_MODIFIER -> writeEncodedText(out, Numbers.formatWithForcedSign(reaction.getTotalAmount()));
+                    case KEY_SITUATION -> writeEncodedText(out, reaction.getFrom());
+                    case KEY_ID -> writeEncodedText(out, Integer.toString(mCurrentId));
+                    default -> writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
                     }
                 }
             }
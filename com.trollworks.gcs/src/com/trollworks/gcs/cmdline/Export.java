@@ -26,11 +26,19 @@ import com.trollworks.gcs.utility.text.Numbers;
 import com.trollworks.gcs.utility.units.LengthUnits;
 
 import java.awt.EventQueue;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 public class Export implements Runnable {
     List<Path> mFiles;
@@ -40,8 +48,9 @@ public class Export implements Runnable {
     Path       mTemplate;
     String     mMargins;
     String     mPaper;
+    int        mThreads;
 
-    public static void process(List<Path> files, boolean generatePDF, boolean generatePNG, boolean generateText, Path template, String margins, String paper) {
+    public static void process(List<Path> files, boolean generatePDF, boolean generatePNG, boolean generateText, Path template, String margins, String paper, int threads) {
         if (files.isEmpty()) {
             System.err.println(I18n.Text("must specify one or more sheet files to process"));
             System.exit(1);
@@ -49,17 +58,14 @@ public class Export implements Runnable {
         System.setProperty("java.awt.headless", Boolean.TRUE.toString());
         UIUtilities.initialize();
         try {
-            // This is run on the event queue since much of the sheet logic assumes a UI
-            // environment and would otherwise cause concurrent modification exceptions, as the
-            // detection of whether it was safe to modify data would be inaccurate.
-            EventQueue.invokeAndWait(new Export(files, generatePDF, generatePNG, generateText, template, margins, paper));
+            new Export(files, generatePDF, generatePNG, generateText, template, margins, paper, threads).run();
         } catch (Exception exception) {
             exception.printStackTrace(System.err);
             System.exit(1);
         }
     }
 
-    private Export(List<Path> files, boolean generatePDF, boolean generatePNG, boolean generateText, Path template, String margins, String paper) {
+    private Export(List<Path> files, boolean generatePDF, boolean generatePNG, boolean generateText, Path template, String margins, String paper, int threads) {
         mFiles = files;
         mGeneratePDF = generatePDF;
         mGeneratePNG = generatePNG;
@@ -67,87 +73,181 @@ public class Export implements Runnable {
         mTemplate = mGenerateText ? template : null;
         mMargins = margins;
         mPaper = paper;
+        mThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
     }
 
     public void run() {
         if (mGenerateText || mGeneratePDF || mGeneratePNG) {
-            double[] paperSize   = getPaperSize();
-            double[] marginsInfo = getMargins();
-            Timing   timing      = new Timing();
+            double[]              paperSize   = getPaperSize();
+            double[]              marginsInfo = getMargins();
+            int                   threads     = Math.max(Math.min(mThreads, mFiles.size()), 1);
+            Timing                timing      = new Timing();
+            ExecutorService       executor    = Executors.newFixedThreadPool(threads, new WorkerFactory());
+            List<Future<Boolean>> results     = new ArrayList<>();
             GraphicsUtilities.setHeadlessPrintMode(true);
             for (Path path : mFiles) {
-                if (!FileType.SHEET.matchExtension(PathUtils.getExtension(path)) || !Files.isReadable(path)) {
-                    System.out.printf(I18n.Text("Unable to load %s\n"), path);
-                    continue;
-                }
-                System.out.printf(I18n.Text("Loading %s... "), path);
-                System.out.flush();
-                timing.reset();
-                try {
-                    GURPSCharacter character = new GURPSCharacter(path);
-                    CharacterSheet sheet     = new CharacterSheet(character);
-                    PrintManager   settings  = character.getPageSettings();
-                    Path           output;
-                    boolean        success;
-
-                    sheet.addNotify(); // Required to allow layout to work
-                    sheet.rebuild();
-                    sheet.getCharacter().processFeaturesAndPrereqs();
-
-                    if (paperSize != null && settings != null) {
-                        settings.setPageSize(paperSize, LengthUnits.IN);
-                    }
-                    if (marginsInfo != null && settings != null) {
-                        settings.setPageMargins(marginsInfo, LengthUnits.IN);
-                    }
-                    sheet.rebuild();
-                    sheet.setSize(sheet.getPreferredSize());
-
-                    System.out.println(timing);
-                    if (mGenerateText) {
-                        System.out.print(I18n.Text("  Creating from text template... "));
-                        System.out.flush();
-                        output = path.resolveSibling(PathUtils.enforceExtension(PathUtils.getLeafName(path, false), PathUtils.getExtension(mTemplate)));
-                        timing.reset();
-                        success = new TextTemplate(sheet).export(output, mTemplate);
-                        System.out.println(timing);
-                        System.out.printf(I18n.Text("    Used text template file: %s\n"), mTemplate.normalize().toAbsolutePath());
-                        if (success) {
-                            System.out.printf(I18n.Text("    Created: %s\n"), output);
-                        }
-                    }
-                    if (mGeneratePDF) {
-                        System.out.print(I18n.Text("  Creating PDF... "));
-                        System.out.flush();
-                        output = path.resolveSibling(PathUtils.enforceExtension(PathUtils.getLeafName(path, false), FileType.PDF.getExtension()));
-                        timing.reset();
-                        success = sheet.saveAsPDF(output);
-                        System.out.println(timing);
-                        if (success) {
-                            System.out.printf(I18n.Text("    Created: %s\n"), output);
-                        }
+                // Sheets are parsed and loaded by the worker threads. Their sheet components are
+                // then created, laid out and exported on the event queue, since much of the sheet
+                // logic assumes a UI environment and would otherwise cause concurrent modification
+                // exceptions, as the detection of whether it was safe to modify data would be
+                // inaccurate.
+                CompletableFuture<Boolean> result = new CompletableFuture<>();
+                executor.execute(() -> {
+                    Loaded loaded = load(path);
+                    if (loaded == null) {
+                        result.complete(Boolean.FALSE);
+                    } else {
+                        EventQueue.invokeLater(() -> result.complete(Boolean.valueOf(export(loaded, paperSize, marginsInfo))));
                     }
-                    if (mGeneratePNG) {
-                        List<Path> result = new ArrayList<>();
-                        System.out.print(I18n.Text("  Creating PNG... "));
-                        System.out.flush();
-                        output = path.resolveSibling(PathUtils.enforceExtension(PathUtils.getLeafName(path, false), FileType.PNG.getExtension()));
-                        timing.reset();
-                        success = sheet.saveAsPNG(output, result);
-                        System.out.println(timing);
-                        if (success) {
-                            for (Path one : result) {
-                                System.out.printf(I18n.Text("    Created: %s\n"), one);
-                            }
-                        }
+                });
+                results.add(result);
+            }
+            int exported = 0;
+            for (Future<Boolean> result : results) {
+                try {
+                    if (result.get().booleanValue()) {
+                        exported++;
                     }
-                    sheet.dispose();
-                } catch (Exception exception) {
+                } catch (InterruptedException | ExecutionException exception) {
                     exception.printStackTrace();
                     System.out.println(I18n.Text("  ** ERROR ENCOUNTERED **"));
                 }
             }
+            executor.shutdown();
             GraphicsUtilities.setHeadlessPrintMode(false);
+            double seconds = timing.elapsedSeconds();
+            System.out.printf(I18n.Text("Exported %,d of %,d sheets, loaded using %,d threads, in %s (%,.2f sheets/s)\n"), Integer.valueOf(exported), Integer.valueOf(mFiles.size()), Integer.valueOf(threads), timing, Double.valueOf(seconds > 0 ? exported / seconds : 0));
+        }
+    }
+
+    /**
+     * Parses and loads the character for a single sheet. Each call creates its own character, so
+     * calls may be made concurrently from multiple worker threads.
+     *
+     * @return The loaded character, or {@code null} if it couldn't be loaded.
+     */
+    private static Loaded load(Path path) {
+        if (!FileType.SHEET.matchExtension(PathUtils.getExtension(path)) || !Files.isReadable(path)) {
+            System.out.printf(I18n.Text("Unable to load %s\n"), path);
+            return null;
+        }
+        Loaded loaded = new Loaded(path);
+        loaded.mLog.append(String.format(I18n.Text("Loading %s... "), path));
+        try {
+            loaded.mCharacter = new GURPSCharacter(path);
+            return loaded;
+        } catch (Exception exception) {
+            loaded.fail(exception);
+            return null;
+        }
+    }
+
+    /**
+     * Creates, lays out and exports the sheet for a loaded character. Must be called on the event
+     * queue. The progress output for the sheet is collected and emitted in one piece, so that it
+     * does not interleave with the output of concurrent loads.
+     */
+    private boolean export(Loaded loaded, double[] paperSize, double[] marginsInfo) {
+        Path          path    = loaded.mPath;
+        StringBuilder log     = loaded.mLog;
+        Timing        timing  = loaded.mTiming;
+        boolean       success = false;
+        try {
+            GURPSCharacter character = loaded.mCharacter;
+            CharacterSheet sheet     = new CharacterSheet(character);
+            PrintManager   settings  = character.getPageSettings();
+            Path           output;
+
+            sheet.addNotify(); // Required to allow layout to work
+            sheet.rebuild();
+            sheet.getCharacter().processFeaturesAndPrereqs();
+
+            if (paperSize != null && settings != null) {
+                settings.setPageSize(paperSize, LengthUnits.IN);
+            }
+            if (marginsInfo != null && settings != null) {
+                settings.setPageMargins(marginsInfo, LengthUnits.IN);
+            }
+            sheet.rebuild();
+            sheet.setSize(sheet.getPreferredSize());
+
+            log.append(timing).append('\n');
+            success = true;
+            if (mGenerateText) {
+                log.append(I18n.Text("  Creating from text template... "));
+                output = path.resolveSibling(PathUtils.enforceExtension(PathUtils.getLeafName(path, false), PathUtils.getExtension(mTemplate)));
+                timing.reset();
+                boolean created = new TextTemplate(sheet).export(output, mTemplate);
+                log.append(timing).append('\n');
+                log.append(String.format(I18n.Text("    Used text template file: %s\n"), mTemplate.normalize().toAbsolutePath()));
+                if (created) {
+                    log.append(String.format(I18n.Text("    Created: %s\n"), output));
+                }
+                success &= created;
+            }
+            if (mGeneratePDF) {
+                log.append(I18n.Text("  Creating PDF... "));
+                output = path.resolveSibling(PathUtils.enforceExtension(PathUtils.getLeafName(path, false), FileType.PDF.getExtension()));
+                timing.reset();
+                boolean created = sheet.saveAsPDF(output);
+                log.append(timing).append('\n');
+                if (created) {
+                    log.append(String.format(I18n.Text("    Created: %s\n"), output));
+                }
+                success &= created;
+            }
+            if (mGeneratePNG) {
+                List<Path> result = new ArrayList<>();
+                log.append(I18n.Text("  Creating PNG... "));
+                output = path.resolveSibling(PathUtils.enforceExtension(PathUtils.getLeafName(path, false), FileType.PNG.getExtension()));
+                timing.reset();
+                boolean created = sheet.saveAsPNG(output, result);
+                log.append(timing).append('\n');
+                if (created) {
+                    for (Path one : result) {
+                        log.append(String.format(I18n.Text("    Created: %s\n"), one));
+                    }
+                }
+                success &= created;
+            }
+            sheet.dispose();
+        } catch (Exception exception) {
+            loaded.fail(exception);
+            return false;
+        }
+        System.out.print(log);
+        System.out.flush();
+        return success;
+    }
+
+    private static class Loaded {
+        Path           mPath;
+        StringBuilder  mLog    = new StringBuilder();
+        Timing         mTiming = new Timing();
+        GURPSCharacter mCharacter;
+
+        Loaded(Path path) {
+            mPath = path;
+        }
+
+        void fail(Exception exception) {
+            StringWriter trace = new StringWriter();
+            exception.printStackTrace(new PrintWriter(trace));
+            mLog.append('\n').append(trace);
+            mLog.append(I18n.Text("  ** ERROR ENCOUNTERED **")).append('\n');
+            System.out.print(mLog);
+            System.out.flush();
+        }
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+        private int mCount;
+
+        @Override
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Export Worker " + ++mCount);
+            thread.setDaemon(true);
+            return thread;
         }
     }
 
@@ -18,7 +18,6 @@ import com.trollworks.gcs.ui.RetinaIcon;
 import com.trollworks.gcs.ui.widget.DataModifiedListener;
 import com.trollworks.gcs.utility.FileType;
 import com.trollworks.gcs.utility.Log;
-import com.trollworks.gcs.utility.SafeFileUpdater;
 import com.trollworks.gcs.utility.SaveType;
 import com.trollworks.gcs.utility.VersionException;
 import com.trollworks.gcs.utility.json.Json;
@@ -29,10 +28,9 @@ import com.trollworks.gcs.utility.notification.NotifierTarget;
 import com.trollworks.gcs.utility.undo.StdUndoManager;
 import com.trollworks.gcs.utility.units.WeightUnits;
 
+import java.awt.EventQueue;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -40,6 +38,8 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import javax.swing.undo.UndoableEdit;
 
 /** A common super class for all data file-based model objects. */
@@ -52,14 +52,41 @@ public abstract class DataFile implements Updatable, Undoable {
     private             UUID                       mID                    = UUID.randomUUID();
     private             Notifier                   mNotifier              = new Notifier();
     private             boolean                    mModified;
+    private             long                       mModificationCount;
     private             StdUndoManager             mUndoManager           = new StdUndoManager();
     private             List<DataModifiedListener> mDataModifiedListeners = new ArrayList<>();
     private             boolean                    mSortingMarksDirty     = true;
+    private             long                       mDisplayGeneration;
+    private             int                        mPendingSaves;
+    private             DataFileJournal            mJournal;
 
     /** @param path The path to load. */
     public void load(Path path) throws IOException {
         setPath(path);
-        try (BufferedReader fileReader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+        load(path, new LoadState());
+        mModified = false;
+    }
+
+    /**
+     * Called to load the contents of a file. By default, the file is parsed and the result passed
+     * to {@link #load(JsonMap, LoadState)}.
+     *
+     * @param path  The path to load.
+     * @param state The {@link LoadState} to use.
+     */
+    protected void load(Path path, LoadState state) throws IOException {
+        try (BufferedReader fileReader = openJson(path)) {
+            load(Json.asMap(Json.parse(fileReader)), state);
+        }
+    }
+
+    /**
+     * @param path The path to open.
+     * @return A reader of the JSON in the file.
+     */
+    protected static BufferedReader openJson(Path path) throws IOException {
+        BufferedReader fileReader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        try {
             fileReader.mark(20);
             char[] buffer = new char[5];
             int    n      = fileReader.read(buffer);
@@ -69,11 +96,12 @@ public abstract class DataFile implements Updatable, Undoable {
             fileReader.reset();
             if (n == 5 && buffer[0] == '<' && buffer[1] == '?' && buffer[2] == 'x' && buffer[3] == 'm' && buffer[4] == 'l') {
                 throw new IOException("The old xml format from versions prior to GCS v4.20 cannot be read by this version of GCS");
-            } else {
-                load(Json.asMap(Json.parse(fileReader)), new LoadState());
             }
+        } catch (IOException exception) {
+            fileReader.close();
+            throw exception;
         }
-        mModified = false;
+        return fileReader;
     }
 
     /**
@@ -108,22 +136,98 @@ public abstract class DataFile implements Updatable, Undoable {
      * @return {@code true} on success.
      */
     public boolean save(Path path) {
-        SafeFileUpdater transaction = new SafeFileUpdater();
-        boolean         success     = false;
-        transaction.begin();
         try {
-            File transactionFile = transaction.getTransactionFile(path.toFile());
-            try (JsonWriter w = new JsonWriter(new BufferedWriter(new FileWriter(transactionFile, StandardCharsets.UTF_8)), "\t")) {
-                save(w, SaveType.NORMAL, false);
+            CompletableFuture<Boolean> result = SaveQueue.INSTANCE.submit(path, serialize());
+            if (mJournal != null) {
+                mJournal.saved(result);
+            }
+            if (result.get().booleanValue()) {
+                setModified(false);
+                return true;
             }
-            transaction.commit();
-            setModified(false);
-            success = true;
         } catch (Exception exception) {
             Log.error(exception);
-            transaction.abort();
         }
-        return success;
+        return false;
+    }
+
+    /**
+     * Saves the data out to the specified path on a background thread. The data is captured before
+     * returning, so later changes won't be part of this save. The data remains modified until the
+     * save succeeds, and stays that way if further changes were made while it was being written.
+     * Does not affect the result of {@link #getPath()}.
+     *
+     * @param path         The path to write to.
+     * @param onCompletion Called on the event dispatch thread with {@code true} on success.
+     */
+    public void saveInBackground(Path path, Consumer<Boolean> onCompletion) {
+        byte[] data;
+        try {
+            data = serialize();
+        } catch (Exception exception) {
+            Log.error(exception);
+            onCompletion.accept(Boolean.FALSE);
+            return;
+        }
+        long modificationCount = mModificationCount;
+        mPendingSaves++;
+        CompletableFuture<Boolean> result = SaveQueue.INSTANCE.submit(path, data);
+        if (mJournal != null) {
+            mJournal.saved(result);
+        }
+        result.whenComplete((success, throwable) -> EventQueue.invokeLater(() -> {
+            mPendingSaves--;
+            boolean saved = success != null && success.booleanValue();
+            if (saved && modificationCount == mModificationCount) {
+                setModified(false);
+            }
+            onCompletion.accept(Boolean.valueOf(saved));
+        }));
+    }
+
+    /** @return {@code true} while a save started by {@link #saveInBackground(Path, Consumer)} runs. */
+    public boolean isSaving() {
+        return mPendingSaves > 0;
+    }
+
+    /** Waits for all saves that have been started to finish writing. */
+    public static void waitForPendingSaves() {
+        SaveQueue.INSTANCE.waitForPendingWrites();
+    }
+
+    /**
+     * Starts recording unsaved changes made through the undo manager in a {@link DataFileJournal},
+     * so they can be recovered after a crash.
+     */
+    void startJournal() {
+        if (mJournal == null) {
+            mJournal = new DataFileJournal(this);
+            mUndoManager.addUndoableEditListener(mJournal);
+        }
+    }
+
+    /** Journals the current contents now, rather than waiting for the next edit. */
+    void flushJournal() {
+        if (mJournal != null) {
+            mJournal.flush();
+        }
+    }
+
+    /** Stops recording unsaved changes and removes the journal. */
+    void closeJournal() {
+        if (mJournal != null) {
+            mUndoManager.removeUndoableEditListener(mJournal);
+            mJournal.close();
+            mJournal = null;
+        }
+    }
+
+    byte[] serialize() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter w = new JsonWriter(out, "\t")) {
+            save(w, SaveType.NORMAL, false);
+        }
+        return out.toByteArray();
     }
 
     /**
@@ -200,6 +304,9 @@ public abstract class DataFile implements Updatable, Undoable {
 
     /** @param modified Whether or not the data has been modified. */
     public final void setModified(boolean modified) {
+        if (modified) {
+            mModificationCount++;
+        }
         if (mModified != modified) {
             mModified = modified;
             for (DataModifiedListener listener : mDataModifiedListeners.toArray(new DataModifiedListener[0])) {
@@ -273,10 +380,27 @@ public abstract class DataFile implements Updatable, Undoable {
      */
     public void notify(String type, Object data) {
         setModified(true);
+        invalidateDisplayValues();
         mNotifier.notify(this, type, data);
         notifyOccured();
     }
 
+    /**
+     * @return The display generation, which changes whenever values displayed by this data file's
+     *         rows may have changed, including through a change to the preferences.
+     */
+    public long getDisplayGeneration() {
+        return mDisplayGeneration + Preferences.getInstance().getDisplayGeneration();
+    }
+
+    /**
+     * Advances the display generation, discarding any values rows have cached for display. Called
+     * by {@link #notify(String, Object)} and whenever derived values are recalculated.
+     */
+    public void invalidateDisplayValues() {
+        mDisplayGeneration++;
+    }
+
     /** Called when {@link #notify(String, Object)} is called. */
     protected void notifyOccured() {
         // Does nothing by default.
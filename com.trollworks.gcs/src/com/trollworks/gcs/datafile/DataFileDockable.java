@@ -28,6 +28,7 @@ import com.trollworks.gcs.utility.undo.StdUndoManager;
 import java.awt.BorderLayout;
 import java.awt.Window;
 import java.nio.file.Path;
+import java.util.function.Consumer;
 import javax.swing.Icon;
 
 /** Provides a common base for library and sheet files. */
@@ -44,6 +45,7 @@ public abstract class DataFileDockable extends Dockable implements CloseHandler,
         super(new BorderLayout());
         mDataFile = file;
         mDataFile.setUndoManager(new StdUndoManager());
+        mDataFile.startJournal();
     }
 
     /** @return The {@link DataFile}. */
@@ -109,6 +111,32 @@ public abstract class DataFileDockable extends Dockable implements CloseHandler,
         return new Path[0];
     }
 
+    @Override
+    public void saveToInBackground(Path path, Consumer<Path[]> onCompletion) {
+        mDataFile.saveInBackground(path, success -> {
+            if (success.booleanValue()) {
+                mDataFile.setPath(path);
+            } else {
+                WindowUtils.showError(this, I18n.Text("An error occurred while trying to save the file."));
+            }
+            updateTitle();
+            onCompletion.accept(success.booleanValue() ? new Path[]{path} : new Path[0]);
+        });
+        updateTitle();
+    }
+
+    @Override
+    public boolean isSaving() {
+        return mDataFile.isSaving();
+    }
+
+    private void updateTitle() {
+        DockContainer dc = getDockContainer();
+        if (dc != null) {
+            dc.updateTitle(this);
+        }
+    }
+
     @Override
     public boolean mayAttemptClose() {
         return true;
@@ -117,6 +145,7 @@ public abstract class DataFileDockable extends Dockable implements CloseHandler,
     @Override
     public boolean attemptClose() {
         if (SaveCommand.attemptSave(this)) {
+            mDataFile.closeJournal();
             getDockContainer().close(this);
             return true;
         }
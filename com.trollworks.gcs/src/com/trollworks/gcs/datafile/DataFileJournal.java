@@ -0,0 +1,400 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.datafile;
+
+import com.trollworks.gcs.library.LibraryExplorerDockable;
+import com.trollworks.gcs.ui.widget.WindowUtils;
+import com.trollworks.gcs.ui.widget.dock.DockContainer;
+import com.trollworks.gcs.utility.FileProxy;
+import com.trollworks.gcs.utility.I18n;
+import com.trollworks.gcs.utility.Log;
+import com.trollworks.gcs.utility.PathUtils;
+import com.trollworks.gcs.utility.Platform;
+import com.trollworks.gcs.utility.SafeFileUpdater;
+import com.trollworks.gcs.utility.json.Json;
+import com.trollworks.gcs.utility.json.JsonMap;
+import com.trollworks.gcs.utility.json.JsonNull;
+import com.trollworks.gcs.utility.task.Tasks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JOptionPane;
+import javax.swing.event.UndoableEditEvent;
+import javax.swing.event.UndoableEditListener;
+
+/**
+ * An append-only journal of the unsaved changes to an open data file, from which they can be
+ * recovered should GCS exit without saving them. A short while after edits are made, the top-level
+ * sections of the data file that changed since the last record are appended to the journal. The
+ * journal is rewritten as a single record once it grows long, and removed whenever the data file
+ * is saved or closed. Everything but capturing the data file's contents is done on the {@link
+ * SaveQueue}'s thread, after any saves that were requested before it.
+ */
+public final class DataFileJournal implements UndoableEditListener {
+    private static final int                 MAGIC          = 0x4743534A;
+    private static final int                 FORMAT_VERSION = 1;
+    private static final String              EXTENSION      = ".journal";
+    private static final int                 MAX_RECORDS    = 64;
+    private static final long                FLUSH_DELAY    = 1;
+    private              DataFile            mDataFile;
+    private              Path                mJournalPath;
+    private              boolean             mClosed;
+    // The remaining fields are only accessed from the save queue's thread.
+    private              String              mBasePath;
+    private              long                mBaseSize;
+    private              long                mBaseModified;
+    private              Map<String, String> mBase;
+    private              Map<String, String> mJournaled;
+    private              int                 mRecordCount;
+
+    DataFileJournal(DataFile dataFile) {
+        mDataFile = dataFile;
+        mJournalPath = getJournalDir().resolve(UUID.randomUUID() + EXTENSION);
+    }
+
+    private static Path getJournalDir() {
+        String home = System.getProperty("user.home", ".");
+        Path   path;
+        switch (Platform.getPlatform()) {
+        case MAC -> path = Paths.get(home, "Library", "Application Support", "GCS", "Recovery");
+        case WINDOWS -> {
+            String localAppData = System.getenv("LOCALAPPDATA");
+            path = Paths.get(localAppData != null ? localAppData : home, "GCS", "recovery");
+        }
+        default -> path = Paths.get(home, ".local", "share", "gcs", "recovery");
+        }
+        return path.normalize().toAbsolutePath();
+    }
+
+    @Override
+    public void undoableEditHappened(UndoableEditEvent event) {
+        if (!mClosed) {
+            // Edits arriving close together are journaled as one record.
+            Tasks.scheduleOnUIThread(this::flush, FLUSH_DELAY, TimeUnit.SECONDS, this);
+        }
+    }
+
+    /** Journals the data file's current contents, if they haven't been saved. */
+    void flush() {
+        if (!mClosed && mDataFile.isModified()) {
+            try {
+                byte[] data = mDataFile.serialize();
+                Path   path = mDataFile.getPath();
+                String ext  = mDataFile.getFileType().getExtension();
+                SaveQueue.INSTANCE.execute(() -> append(data, path, ext));
+            } catch (Exception exception) {
+                Log.error(exception);
+            }
+        }
+    }
+
+    /**
+     * Called after the data file has been asked to save, so that the journal is removed once the
+     * save succeeds.
+     *
+     * @param result The result of the save.
+     */
+    void saved(CompletableFuture<Boolean> result) {
+        SaveQueue.INSTANCE.execute(() -> {
+            if (result.getNow(Boolean.FALSE).booleanValue()) {
+                reset();
+            }
+        });
+    }
+
+    /** Called when the data file is closed to stop journaling and remove the journal. */
+    void close() {
+        mClosed = true;
+        SaveQueue.INSTANCE.execute(this::reset);
+    }
+
+    private void reset() {
+        mBase = null;
+        mJournaled = null;
+        try {
+            Files.deleteIfExists(mJournalPath);
+        } catch (IOException exception) {
+            Log.error(exception);
+        }
+    }
+
+    private void append(byte[] data, Path path, String ext) {
+        try {
+            appendChanges(data, path, ext);
+        } catch (Exception exception) {
+            Log.error(exception);
+            // The journal may now hold a partial record, so the next one rewrites it.
+            mRecordCount = 0;
+        }
+    }
+
+    private void appendChanges(byte[] data, Path path, String ext) throws IOException {
+        if (mBase == null) {
+            startFrom(path);
+        }
+        JsonMap             m        = Json.asMap(Json.parse(new ByteArrayInputStream(data)));
+        Map<String, String> sections = new HashMap<>();
+        for (String key : m.keySet()) {
+            sections.put(key, Json.toString(m.get(key)));
+        }
+        JsonMap changes = diff(m, sections, mJournaled);
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (mRecordCount == 0 || mRecordCount >= MAX_RECORDS) {
+            rewrite(diff(m, sections, mBase), ext);
+        } else {
+            try (FileChannel channel = FileChannel.open(mJournalPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                writeFully(channel, record(changes));
+                channel.force(false);
+            }
+            mRecordCount++;
+        }
+        mJournaled = sections;
+    }
+
+    private void startFrom(Path path) {
+        mBase = new HashMap<>();
+        mBasePath = "";
+        mBaseSize = -1;
+        mBaseModified = -1;
+        if (path != null && Files.isRegularFile(path)) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                JsonMap             m     = readJson(path);
+                for (String key : m.keySet()) {
+                    mBase.put(key, Json.toString(m.get(key)));
+                }
+                mBasePath = path.toString();
+                mBaseSize = attrs.size();
+                mBaseModified = attrs.lastModifiedTime().toMillis();
+            } catch (Exception exception) {
+                // Without the saved file, the journal records the whole data file instead.
+                Log.error(exception);
+                mBase.clear();
+            }
+        }
+        mJournaled = mBase;
+        mRecordCount = 0;
+    }
+
+    private static JsonMap readJson(Path path) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return Json.asMap(Json.parse(in));
+        }
+    }
+
+    private static JsonMap diff(JsonMap m, Map<String, String> sections, Map<String, String> against) {
+        JsonMap changes = new JsonMap();
+        for (Map.Entry<String, String> entry : sections.entrySet()) {
+            String key = entry.getKey();
+            if (!entry.getValue().equals(against.get(key))) {
+                changes.put(key, m.get(key));
+            }
+        }
+        for (String key : against.keySet()) {
+            if (!sections.containsKey(key)) {
+                changes.put(key, JsonNull.INSTANCE);
+            }
+        }
+        return changes;
+    }
+
+    private void rewrite(JsonMap changes, String ext) throws IOException {
+        if (changes.isEmpty()) {
+            // Nothing differs from the saved file, so there is nothing to recover.
+            Files.deleteIfExists(mJournalPath);
+            mRecordCount = 0;
+            return;
+        }
+        Files.createDirectories(mJournalPath.getParent());
+        SafeFileUpdater trans = new SafeFileUpdater();
+        trans.begin();
+        try {
+            File file = trans.getTransactionFile(mJournalPath.toFile());
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteArrayOutputStream header = new ByteArrayOutputStream();
+                try (DataOutputStream out = new DataOutputStream(header)) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    writeString(out, mBasePath);
+                    writeString(out, ext);
+                    out.writeLong(mBaseSize);
+                    out.writeLong(mBaseModified);
+                }
+                writeFully(channel, header.toByteArray());
+                writeFully(channel, record(changes));
+                channel.force(true);
+            }
+        } catch (IOException exception) {
+            trans.abort();
+            throw exception;
+        }
+        trans.commit();
+        mRecordCount = 1;
+    }
+
+    private static byte[] record(JsonMap changes) {
+        byte[]     json   = changes.toString(true).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + json.length);
+        buffer.putInt(json.length);
+        buffer.put(json);
+        return buffer.array();
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Offers to recover the unsaved changes recorded by any journals left behind by a previous run
+     * that didn't exit normally. Must be called on the event dispatch thread, before any data files
+     * have been opened.
+     */
+    public static void recover() {
+        Path dir = getJournalDir();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<Path> journals = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+            for (Path path : stream) {
+                journals.add(path);
+            }
+        } catch (IOException exception) {
+            Log.error(exception);
+        }
+        for (Path journal : journals) {
+            try {
+                recover(journal);
+                Files.deleteIfExists(journal);
+            } catch (Exception exception) {
+                Log.error(exception);
+            }
+        }
+    }
+
+    private static void recover(Path journal) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(journal));
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+            Log.warn("ignoring unrecognized recovery journal: " + journal);
+            return;
+        }
+        String              basePath     = readString(buffer);
+        String              ext          = readString(buffer);
+        long                baseSize     = buffer.getLong();
+        long                baseModified = buffer.getLong();
+        Map<String, Object> contents     = new HashMap<>();
+        Path                base         = basePath.isEmpty() ? null : Paths.get(basePath);
+        if (base != null) {
+            BasicFileAttributes attrs = Files.isRegularFile(base) ? Files.readAttributes(base, BasicFileAttributes.class) : null;
+            if (attrs == null || attrs.size() != baseSize || attrs.lastModifiedTime().toMillis() != baseModified) {
+                Log.warn("ignoring recovery journal for " + basePath + ", as the file has changed since");
+                return;
+            }
+            JsonMap m = readJson(base);
+            for (String key : m.keySet()) {
+                contents.put(key, m.get(key));
+            }
+        }
+        boolean changed = false;
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                // The last record was only partially written.
+                break;
+            }
+            JsonMap changes = Json.asMap(Json.parse(new ByteArrayInputStream(buffer.array(), buffer.position(), length)));
+            buffer.position(buffer.position() + length);
+            for (String key : changes.keySet()) {
+                Object value = changes.get(key);
+                if (JsonNull.INSTANCE.equals(value)) {
+                    contents.remove(key);
+                } else {
+                    contents.put(key, value);
+                }
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return;
+        }
+        String   name    = base != null ? PathUtils.getLeafName(base, true) : I18n.Text("an untitled file");
+        String   discard = I18n.Text("Discard");
+        Object[] options = {I18n.Text("Recover"), discard};
+        if (WindowUtils.showConfirmDialog(null, MessageFormat.format(I18n.Text("GCS did not exit normally. Recover the unsaved changes to {0}?"), name), I18n.Text("Recover Unsaved Changes"), JOptionPane.YES_NO_OPTION, options, discard) != JOptionPane.YES_OPTION) {
+            return;
+        }
+        JsonMap m = new JsonMap();
+        for (Map.Entry<String, Object> entry : contents.entrySet()) {
+            m.put(entry.getKey(), entry.getValue());
+        }
+        // The recovered contents are opened from a temporary copy, then pointed back at the file
+        // they belong to. The copy is neither recorded as a recent file nor locked.
+        Path recovered = journal.resolveSibling(UUID.randomUUID() + "." + ext);
+        try {
+            Files.writeString(recovered, m.toString(false), StandardCharsets.UTF_8);
+            LibraryExplorerDockable library = LibraryExplorerDockable.get();
+            FileProxy               proxy   = library != null ? library.openUnrecorded(recovered) : null;
+            if (proxy instanceof DataFileDockable) {
+                DataFileDockable dockable = (DataFileDockable) proxy;
+                DataFile         dataFile = dockable.getDataFile();
+                dataFile.setPath(base);
+                dataFile.setModified(true);
+                DockContainer dc = dockable.getDockContainer();
+                if (dc != null) {
+                    dc.updateTitle(dockable);
+                }
+                // Journal the recovered changes again right away, in case of another crash.
+                dataFile.flushJournal();
+            }
+        } finally {
+            Files.deleteIfExists(recovered);
+        }
+    }
+}
@@ -11,15 +11,20 @@
 
 package com.trollworks.gcs.datafile;
 
+import com.trollworks.gcs.library.LibrarySnapshot;
 import com.trollworks.gcs.ui.widget.outline.ListRow;
 import com.trollworks.gcs.ui.widget.outline.OutlineModel;
 import com.trollworks.gcs.ui.widget.outline.Row;
+import com.trollworks.gcs.utility.Log;
 import com.trollworks.gcs.utility.SaveType;
+import com.trollworks.gcs.utility.VersionException;
 import com.trollworks.gcs.utility.json.JsonArray;
 import com.trollworks.gcs.utility.json.JsonMap;
+import com.trollworks.gcs.utility.json.JsonReader;
 import com.trollworks.gcs.utility.json.JsonWriter;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,18 +40,87 @@ public abstract class ListFile extends DataFile {
         setSortingMarksDirty(false);
     }
 
+    @Override
+    protected void load(Path path, LoadState state) throws IOException {
+        // Library lists are re-opened often, so the contents read from their JSON are also kept in
+        // a binary snapshot, which is read in its place while it is up to date.
+        LibrarySnapshot snapshot = new LibrarySnapshot(path, getJSONVersion());
+        JsonReader      in       = snapshot.reader();
+        if (in != null) {
+            try (in) {
+                load(in, state);
+                return;
+            } catch (VersionException exception) {
+                throw exception;
+            } catch (Exception exception) {
+                // A damaged snapshot is replaced once the file has been read again.
+                Log.error(exception);
+                mModel.removeAllRows();
+            }
+        }
+        try (JsonReader fileIn = new JsonReader(openJson(path))) {
+            fileIn.setRecorder(snapshot.recorder());
+            load(fileIn, state);
+        }
+        snapshot.write();
+    }
+
+    /**
+     * Loads the file from a stream, creating each row as it is read rather than from a tree of the
+     * whole file. The other top-level values are collected and loaded as usual.
+     */
+    private void load(JsonReader in, LoadState state) throws IOException {
+        JsonMap m        = new JsonMap();
+        boolean streamed = false;
+        in.beginMap();
+        while (in.hasNext()) {
+            String key = in.nextKey();
+            if (m.has(key) || streamed && KEY_ROWS.equals(key)) {
+                throw new IOException("duplicate key \"" + key + "\"");
+            }
+            if (KEY_ROWS.equals(key) && m.has(LoadState.ATTRIBUTE_VERSION) && m.has(ATTRIBUTE_ID) && in.peek() == JsonReader.Kind.ARRAY) {
+                // The file's version and ID must be loaded before its rows, so this is only done
+                // once they have been seen, as they will have been in files GCS has written.
+                load(m, state);
+                streamed = true;
+                in.beginArray();
+                while (in.hasNext()) {
+                    addRow(ListRow.read(in, state, this::createRow));
+                }
+                in.endArray();
+            } else {
+                m.put(key, in.nextValue());
+            }
+        }
+        in.endMap();
+        if (!streamed) {
+            load(m, state);
+        }
+    }
+
     @Override
     protected void loadSelf(JsonMap m, LoadState state) throws IOException {
-        loadList(m.getArray(KEY_ROWS), state);
+        JsonArray a     = m.getArray(KEY_ROWS);
+        int       count = a.size();
+        for (int i = 0; i < count; i++) {
+            addRow(createRow(a.getMap(i), state));
+        }
+    }
+
+    private void addRow(ListRow row) {
+        if (row != null) {
+            mModel.addRow(row, true);
+        }
     }
 
     /**
-     * Called to load the individual rows.
+     * Called to create each of the top-level rows and their children.
      *
-     * @param a     The {@link JsonArray} to load data from.
+     * @param m     The {@link JsonMap} to load data from.
      * @param state The {@link LoadState} to use.
+     * @return The new row, or {@code null} if the data doesn't describe one of this list's rows.
      */
-    protected abstract void loadList(JsonArray a, LoadState state) throws IOException;
+    protected abstract ListRow createRow(JsonMap m, LoadState state) throws IOException;
 
     @Override
     protected final void saveSelf(JsonWriter w, SaveType saveType) throws IOException {
@@ -11,18 +11,26 @@
 
 package com.trollworks.gcs.datafile;
 
+import com.trollworks.gcs.ui.widget.outline.ListRow;
 import com.trollworks.gcs.utility.units.WeightUnits;
 
+import java.util.List;
+
 /** Temporary storage for data needed at load time. */
 public class LoadState {
     /** The attribute used for versioning. */
-    public static final String      ATTRIBUTE_VERSION = "version";
+    public static final String        ATTRIBUTE_VERSION = "version";
     /** The data file version. */
-    public              int         mDataFileVersion;
+    public              int           mDataFileVersion;
     /** The data item version. Used for individual items within a file. */
-    public              int         mDataItemVersion;
+    public              int           mDataItemVersion;
     /** Whether the load is happening to restore undo state. */
-    public              boolean     mForUndo;
+    public              boolean       mForUndo;
     /** The default weight units to use. */
-    public              WeightUnits mDefWeightUnits;
+    public              WeightUnits   mDefWeightUnits;
+    /**
+     * The children already read for the row about to be loaded, which it takes in place of any
+     * children in its own data.
+     */
+    public              List<ListRow> mChildren;
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.datafile;
+
+import com.trollworks.gcs.utility.Log;
+import com.trollworks.gcs.utility.SafeFileUpdater;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writes serialized data files to disk on a background thread. Writes are performed one at a time,
+ * in the order they were requested, so saves of the same file never overlap. When a file is saved
+ * again while an earlier save of it is still waiting to start, the earlier one is dropped and both
+ * requests get the result of writing the newer data.
+ */
+final class SaveQueue {
+    static final SaveQueue       INSTANCE = new SaveQueue();
+    private      ExecutorService mExecutor;
+    private      Map<Path, Job>  mWaiting = new HashMap<>();
+
+    private SaveQueue() {
+        mExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Save Queue");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param path The path to write to.
+     * @param data The bytes to write.
+     * @return A future that completes with {@code true} once the data has been written.
+     */
+    CompletableFuture<Boolean> submit(Path path, byte[] data) {
+        path = path.normalize().toAbsolutePath();
+        synchronized (this) {
+            Job job = mWaiting.get(path);
+            if (job != null) {
+                job.mData = data;
+                return job.mResult;
+            }
+            job = new Job(path, data);
+            mWaiting.put(path, job);
+            Job pending = job;
+            mExecutor.execute(() -> run(pending));
+            return job.mResult;
+        }
+    }
+
+    /**
+     * @param task A task to run on the queue's thread once all writes requested so far have
+     *             finished.
+     */
+    void execute(Runnable task) {
+        mExecutor.execute(() -> {
+            try {
+                task.run();
+            } catch (Throwable throwable) {
+                Log.error(throwable);
+            }
+        });
+    }
+
+    /** Waits for all writes requested so far to finish. */
+    void waitForPendingWrites() {
+        try {
+            mExecutor.submit(() -> {
+                // Nothing to do; writes are performed in order, so this runs after all of them.
+            }).get();
+        } catch (Exception exception) {
+            Log.error(exception);
+        }
+    }
+
+    private void run(Job job) {
+        byte[] data;
+        synchronized (this) {
+            mWaiting.remove(job.mPath);
+            data = job.mData;
+        }
+        job.mResult.complete(Boolean.valueOf(write(job.mPath, data)));
+    }
+
+    private static boolean write(Path path, byte[] data) {
+        SafeFileUpdater transaction = new SafeFileUpdater();
+        transaction.begin();
+        try {
+            File file = transaction.getTransactionFile(path.toFile());
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                // Make sure the data is actually on disk before it replaces the original.
+                channel.force(true);
+            }
+            transaction.commit();
+            return true;
+        } catch (Exception exception) {
+            Log.error(exception);
+            transaction.abort();
+            return false;
+        }
+    }
+
+    private static class Job {
+        Path                       mPath;
+        byte[]                     mData;
+        CompletableFuture<Boolean> mResult = new CompletableFuture<>();
+
+        Job(Path path, byte[] data) {
+            mPath = path;
+            mData = data;
+        }
+    }
+}
@@ -871,11 +871,9 @@ public class Equipment extends ListRow implements HasSourceReference {
     }
 
     @Override
-    public boolean contains(String text, boolean lowerCaseOnly) {
-        if (getDescription().toLowerCase().contains(text)) {
-            return true;
-        }
-        return super.contains(text, lowerCaseOnly);
+    protected void fillWithSearchableText(List<String> text) {
+        text.add(getDescription());
+        super.fillWithSearchableText(text);
     }
 
     @Override
@@ -884,7 +882,7 @@ public class Equipment extends ListRow implements HasSourceReference {
     }
 
     @Override
-    public String getDataAsText(Column column) {
+    protected String computeDataAsText(Column column) {
         return EquipmentColumn.values()[column.getID()].getDataAsText(this);
     }
 
@@ -26,78 +26,174 @@ import com.trollworks.gcs.utility.FileType;
 import com.trollworks.gcs.utility.PathUtils;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
+/**
+ * Locates all of the {@link Updatable}s within the libraries. Directories are walked and files are
+ * parsed in parallel, and the results are recorded in a {@link LibraryIndex} so that files which
+ * haven't changed since the last scan don't need to be parsed again.
+ */
 public class DataUpdater {
-    public Map<UUID, Updatable>  updatables;
+    public Map<UUID, Path>       locations;
     public Map<Path, List<Path>> ignoreMap;
 
     public DataUpdater() throws IOException {
         Map<UUID, Path> uuidToPathMap = new HashMap<>();
-        updatables = new HashMap<>();
+        LibraryIndex    index         = new LibraryIndex(LibraryIndex.getDefaultPath());
+        locations = new HashMap<>();
         ignoreMap = new HashMap<>();
         for (Library library : Library.LIBRARIES) {
-            traverse(uuidToPathMap, library.getPath());
+            Map<Path, LibraryIndex.Entry> entries;
+            try {
+                entries = ForkJoinPool.commonPool().invoke(new ScanTask(index, library.getPath()));
+            } catch (UncheckedIOException exception) {
+                throw exception.getCause();
+            }
+            // Merge in traversal order, so that the first file seen with a given ID wins, just as
+            // it would with a sequential scan.
+            for (Map.Entry<Path, LibraryIndex.Entry> one : entries.entrySet()) {
+                add(uuidToPathMap, one.getKey(), one.getValue());
+            }
         }
+        index.save();
     }
 
-    private void traverse(Map<UUID, Path> uuidToPathMap, Path dir) throws IOException {
-        if (!shouldSkip(dir)) {
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
-                for (Path path : stream) {
-                    if (Files.isDirectory(path)) {
-                        traverse(uuidToPathMap, path);
-                    } else if (!shouldSkip(path)) {
-                        String ext = PathUtils.getExtension(path.getFileName());
-                        if (FileType.SHEET.matchExtension(ext)) {
-                            add(uuidToPathMap, path, new GURPSCharacter(path));
-                        } else if (FileType.TEMPLATE.matchExtension(ext)) {
-                            add(uuidToPathMap, path, new Template(path));
-                        } else if (FileType.ADVANTAGE.matchExtension(ext)) {
-                            addList(uuidToPathMap, path, new AdvantageList());
-                        } else if (FileType.ADVANTAGE_MODIFIER.matchExtension(ext)) {
-                            addList(uuidToPathMap, path, new AdvantageModifierList());
-                        } else if (FileType.EQUIPMENT.matchExtension(ext)) {
-                            addList(uuidToPathMap, path, new EquipmentList());
-                        } else if (FileType.EQUIPMENT_MODIFIER.matchExtension(ext)) {
-                            addList(uuidToPathMap, path, new EquipmentModifierList());
-                        } else if (FileType.SKILL.matchExtension(ext)) {
-                            addList(uuidToPathMap, path, new SkillList());
-                        } else if (FileType.SPELL.matchExtension(ext)) {
-                            addList(uuidToPathMap, path, new SpellList());
-                        } else if (FileType.NOTE.matchExtension(ext)) {
-                            addList(uuidToPathMap, path, new NoteList());
-                        }
-                    }
-                }
-            }
+    /**
+     * Loads an {@link Updatable} from the file it was found in.
+     *
+     * @param id The ID of the {@link Updatable}.
+     * @return The {@link Updatable}, or {@code null} if it is unknown or no longer present.
+     */
+    public Updatable load(UUID id) throws IOException {
+        Path path = locations.get(id);
+        if (path == null) {
+            return null;
+        }
+        Updatable updatable = parse(path);
+        if (updatable == null) {
+            return null;
         }
+        if (id.equals(updatable.getID())) {
+            return updatable;
+        }
+        Map<UUID, Updatable> contained = new HashMap<>();
+        updatable.getContainedUpdatables(contained);
+        return contained.get(id);
     }
 
-    private void addList(Map<UUID, Path> uuidToPathMap, Path path, Updatable updatable) throws IOException {
-        ((DataFile) updatable).load(path);
-        add(uuidToPathMap, path, updatable);
+    private void add(Map<UUID, Path> uuidToPathMap, Path path, LibraryIndex.Entry entry) {
+        if (uuidToPathMap.containsKey(entry.mID)) {
+            ignoreMap.computeIfAbsent(uuidToPathMap.get(entry.mID), k -> new ArrayList<>()).add(path);
+        } else {
+            uuidToPathMap.put(entry.mID, path);
+            locations.put(entry.mID, path);
+            for (UUID id : entry.mContained) {
+                locations.put(id, path);
+            }
+        }
     }
 
-    private void add(Map<UUID, Path> uuidToPathMap, Path path, Updatable updatable) {
-        UUID id = updatable.getID();
-        if (uuidToPathMap.containsKey(id)) {
-            ignoreMap.computeIfAbsent(uuidToPathMap.get(id), k -> new ArrayList<>()).add(path);
+    private static Updatable parse(Path path) throws IOException {
+        String ext = PathUtils.getExtension(path.getFileName());
+        if (FileType.SHEET.matchExtension(ext)) {
+            return new GURPSCharacter(path);
+        }
+        if (FileType.TEMPLATE.matchExtension(ext)) {
+            return new Template(path);
+        }
+        DataFile list;
+        if (FileType.ADVANTAGE.matchExtension(ext)) {
+            list = new AdvantageList();
+        } else if (FileType.ADVANTAGE_MODIFIER.matchExtension(ext)) {
+            list = new AdvantageModifierList();
+        } else if (FileType.EQUIPMENT.matchExtension(ext)) {
+            list = new EquipmentList();
+        } else if (FileType.EQUIPMENT_MODIFIER.matchExtension(ext)) {
+            list = new EquipmentModifierList();
+        } else if (FileType.SKILL.matchExtension(ext)) {
+            list = new SkillList();
+        } else if (FileType.SPELL.matchExtension(ext)) {
+            list = new SpellList();
+        } else if (FileType.NOTE.matchExtension(ext)) {
+            list = new NoteList();
         } else {
-            uuidToPathMap.put(id, path);
-            updatables.put(updatable.getID(), updatable);
-            updatable.getContainedUpdatables(updatables);
+            return null;
         }
+        list.load(path);
+        return (Updatable) list;
     }
 
-    private boolean shouldSkip(Path path) {
+    private static boolean shouldSkip(Path path) {
         return path.getFileName().toString().startsWith(".");
     }
+
+    /**
+     * Scans a directory, forking a sub-task for each sub-directory and for each file that needs to
+     * be parsed. The results are returned in the order a sequential depth-first walk would produce.
+     */
+    private static class ScanTask extends RecursiveTask<Map<Path, LibraryIndex.Entry>> {
+        private static final long         serialVersionUID = 1L;
+        private              LibraryIndex mIndex;
+        private              Path         mPath;
+
+        ScanTask(LibraryIndex index, Path path) {
+            mIndex = index;
+            mPath = path;
+        }
+
+        @Override
+        protected Map<Path, LibraryIndex.Entry> compute() {
+            Map<Path, LibraryIndex.Entry> result = new LinkedHashMap<>();
+            try {
+                if (Files.isDirectory(mPath)) {
+                    if (!shouldSkip(mPath)) {
+                        List<Path> paths = new ArrayList<>();
+                        try (DirectoryStream<Path> stream = Files.newDirectoryStream(mPath)) {
+                            for (Path path : stream) {
+                                paths.add(path);
+                            }
+                        }
+                        Collections.sort(paths);
+                        List<ScanTask> tasks = new ArrayList<>(paths.size());
+                        for (Path path : paths) {
+                            ScanTask task = new ScanTask(mIndex, path);
+                            task.fork();
+                            tasks.add(task);
+                        }
+                        for (ScanTask task : tasks) {
+                            result.putAll(task.join());
+                        }
+                    }
+                } else if (!shouldSkip(mPath)) {
+                    LibraryIndex.Entry entry = mIndex.get(mPath);
+                    if (entry == null) {
+                        Updatable updatable = parse(mPath);
+                        if (updatable != null) {
+                            Map<UUID, Updatable> contained = new LinkedHashMap<>();
+                            updatable.getContainedUpdatables(contained);
+                            entry = mIndex.put(mPath, updatable.getID(), new ArrayList<>(contained.keySet()));
+                        }
+                    }
+                    if (entry != null) {
+                        result.put(mPath, entry);
+                    }
+                }
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+            return result;
+        }
+    }
 }
@@ -16,13 +16,25 @@ import com.trollworks.gcs.ui.image.Images;
 import com.trollworks.gcs.ui.widget.tree.TreeContainerRow;
 import com.trollworks.gcs.ui.widget.tree.TreeRow;
 
+import java.nio.file.Path;
+
 /** A {@link TreeRow} that represents a directory in the library explorer. */
 public class LibraryDirectoryRow extends TreeContainerRow implements LibraryExplorerRow {
     private String mName;
+    private Path   mPath;
 
-    /** @param name The name of the directory. */
-    public LibraryDirectoryRow(String name) {
+    /**
+     * @param name The name of the directory.
+     * @param path The normalized, absolute {@link Path} of the directory.
+     */
+    public LibraryDirectoryRow(String name, Path path) {
         mName = name;
+        mPath = path;
+    }
+
+    /** @return The {@link Path}. */
+    public Path getPath() {
+        return mPath;
     }
 
     @Override
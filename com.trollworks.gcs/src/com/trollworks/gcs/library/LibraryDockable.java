@@ -29,6 +29,7 @@ import com.trollworks.gcs.ui.widget.outline.ListRow;
 import com.trollworks.gcs.ui.widget.outline.OutlineModel;
 import com.trollworks.gcs.ui.widget.outline.Row;
 import com.trollworks.gcs.ui.widget.outline.RowFilter;
+import com.trollworks.gcs.ui.widget.outline.RowIterator;
 import com.trollworks.gcs.utility.I18n;
 import com.trollworks.gcs.utility.PrintProxy;
 import com.trollworks.gcs.utility.notification.BatchNotifierTarget;
@@ -37,6 +38,7 @@ import com.trollworks.gcs.utility.text.Text;
 import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.Font;
 import java.awt.KeyboardFocusManager;
 import java.awt.dnd.DropTarget;
@@ -50,19 +52,21 @@ import javax.swing.event.DocumentListener;
 
 /** A list from a library. */
 public abstract class LibraryDockable extends DataFileDockable implements RowFilter, DocumentListener, BatchNotifierTarget, JumpToSearchTarget, RetargetableFocus {
-    private Toolbar           mToolbar;
-    private JComboBox<Scales> mScaleCombo;
-    private JTextField        mFilterField;
-    private JComboBox<String> mCategoryCombo;
-    private IconButton        mLockButton;
-    private JScrollPane       mScroller;
-    private ListOutline       mOutline;
+    private Toolbar            mToolbar;
+    private JComboBox<Scales>  mScaleCombo;
+    private JTextField         mFilterField;
+    private JComboBox<String>  mCategoryCombo;
+    private IconButton         mLockButton;
+    private JScrollPane        mScroller;
+    private ListOutline        mOutline;
+    private LibrarySearchIndex mSearchIndex = new LibrarySearchIndex();
 
     /** Creates a new {@link LibraryDockable}. */
     public LibraryDockable(ListFile file) {
         super(file);
         mOutline = createOutline();
         mOutline.setDynamicRowHeight(true);
+        mOutline.setVirtualized(true);
         OutlineModel outlineModel = mOutline.getModel();
         outlineModel.applySortConfig(outlineModel.getSortConfig());
         outlineModel.setRowFilter(this);
@@ -177,6 +181,7 @@ public abstract class LibraryDockable extends DataFileDockable implements RowFil
             mCategoryCombo.revalidate();
             mCategoryCombo.repaint();
             if (mOutline != null) {
+                updateSearchCriteria();
                 mOutline.reapplyRowFilter();
             }
         });
@@ -199,23 +204,15 @@ public abstract class LibraryDockable extends DataFileDockable implements RowFil
 
     @Override
     public boolean isRowFiltered(Row row) {
-        boolean filtered = false;
-        if (row instanceof ListRow) {
-            ListRow listRow = (ListRow) row;
-            if (mCategoryCombo.getSelectedIndex() != 0) {
-                String selectedItem = (String) mCategoryCombo.getSelectedItem();
-                if (selectedItem != null) {
-                    filtered = !listRow.getCategories().contains(selectedItem);
-                }
-            }
-            if (!filtered) {
-                String filter = mFilterField.getText();
-                if (!filter.isEmpty()) {
-                    filtered = !listRow.contains(filter.toLowerCase(), true);
-                }
-            }
+        return row instanceof ListRow && !mSearchIndex.matches((ListRow) row);
+    }
+
+    private void updateSearchCriteria() {
+        String category = null;
+        if (mCategoryCombo.getSelectedIndex() != 0) {
+            category = (String) mCategoryCombo.getSelectedItem();
         }
-        return filtered;
+        mSearchIndex.setCriteria(mFilterField.getText(), category);
     }
 
     @Override
@@ -234,6 +231,7 @@ public abstract class LibraryDockable extends DataFileDockable implements RowFil
     }
 
     private void documentChanged() {
+        updateSearchCriteria();
         mOutline.reapplyRowFilter();
     }
 
@@ -263,6 +261,33 @@ public abstract class LibraryDockable extends DataFileDockable implements RowFil
         }
     }
 
+    /**
+     * Selects a row and scrolls it into view, opening its parents and clearing the filter if
+     * necessary.
+     *
+     * @param id The ID of the row to select, as a string.
+     * @return {@code true} if the row was found.
+     */
+    public boolean selectRow(String id) {
+        OutlineModel model = mOutline.getModel();
+        for (ListRow row : new RowIterator<ListRow>(model)) {
+            if (row.getID().toString().equals(id)) {
+                for (Row parent = row.getParent(); parent != null; parent = parent.getParent()) {
+                    parent.setOpen(true);
+                }
+                if (model.isRowFiltered(row)) {
+                    mFilterField.setText("");
+                    mCategoryCombo.setSelectedIndex(0);
+                }
+                model.select(row, false);
+                EventQueue.invokeLater(mOutline::scrollSelectionIntoView);
+                mOutline.requestFocus();
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public boolean isJumpToSearchAvailable() {
         return mFilterField.isEnabled() && mFilterField != KeyboardFocusManager.getCurrentKeyboardFocusManager().getPermanentFocusOwner();
@@ -69,8 +69,11 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import javax.swing.Icon;
@@ -79,9 +82,10 @@ import javax.swing.ListCellRenderer;
 
 /** A list of available library files. */
 public class LibraryExplorerDockable extends Dockable implements SearchTarget, FieldAccessor, IconAccessor, Openable, Deletable {
-    private Search    mSearch;
-    private TreePanel mTreePanel;
-    private Notifier  mNotifier;
+    private static final int       MAX_ROW_HITS = 100;
+    private              Search    mSearch;
+    private              TreePanel mTreePanel;
+    private              Notifier  mNotifier;
 
     public static LibraryExplorerDockable get() {
         for (Dockable dockable : Workspace.get().getDock().getDockables()) {
@@ -97,7 +101,8 @@ public class LibraryExplorerDockable extends Dockable implements SearchTarget, F
         super(new BorderLayout());
         mNotifier = new Notifier();
         TreeRoot root = new TreeRoot(mNotifier);
-        fillTree(LibraryUpdater.collectFiles(), root);
+        fillRoot(LibraryUpdater.collectFiles(), root);
+        LibrarySearch.INSTANCE.refresh();
         mTreePanel = new TreePanel(root);
         mTreePanel.setShowHeader(false);
         mTreePanel.addColumn(new TextTreeColumn(I18n.Text("Library Explorer"), this, this));
@@ -156,13 +161,24 @@ public class LibraryExplorerDockable extends Dockable implements SearchTarget, F
         return ((LibraryExplorerRow) row).getIcon();
     }
 
-    private void fillTree(List<?> lists, TreeContainerRow parent) {
+    private static void fillRoot(List<?> lists, TreeRoot root) {
+        int count = Math.min(lists.size() - 1, Library.LIBRARIES.size());
+        for (int i = 0; i < count; i++) {
+            List<?>             subList = (List<?>) lists.get(i + 1);
+            LibraryDirectoryRow dir     = new LibraryDirectoryRow((String) subList.get(0), Library.LIBRARIES.get(i).getPath().normalize().toAbsolutePath());
+            fillTree(subList, dir);
+            root.addRow(dir);
+        }
+    }
+
+    private static void fillTree(List<?> lists, LibraryDirectoryRow parent) {
         int count = lists.size();
         for (int i = 1; i < count; i++) {
             Object entry = lists.get(i);
             if (entry instanceof List<?>) {
                 List<?>             subList = (List<?>) entry;
-                LibraryDirectoryRow dir     = new LibraryDirectoryRow((String) subList.get(0));
+                String              name    = (String) subList.get(0);
+                LibraryDirectoryRow dir     = new LibraryDirectoryRow(name, parent.getPath().resolve(name));
                 fillTree(subList, dir);
                 parent.addRow(dir);
             } else {
@@ -172,20 +188,94 @@ public class LibraryExplorerDockable extends Dockable implements SearchTarget, F
     }
 
     public void refresh() {
-        TreeRoot    root     = mTreePanel.getRoot();
-        Set<String> selected = new HashSet<>();
+        refresh(null);
+    }
+
+    /**
+     * Refreshes the contents of the tree.
+     *
+     * @param dirs The directories whose contents have changed. Only the affected portions of the
+     *             tree will be rebuilt. Pass in {@code null} to rebuild the entire tree.
+     */
+    public void refresh(Set<Path> dirs) {
+        TreeRoot                 root     = mTreePanel.getRoot();
+        Set<LibraryDirectoryRow> targets  = dirs != null ? collectRefreshTargets(root, dirs) : null;
+        Set<String>              selected = new HashSet<>();
         for (TreeRow row : mTreePanel.getExplicitlySelectedRows()) {
             selected.add(((LibraryExplorerRow) row).getSelectionKey());
         }
         Set<String> open = collectOpenRowKeys();
         mNotifier.startBatch();
-        root.removeRow(new ArrayList<>(root.getChildren()));
-        fillTree(LibraryUpdater.collectFiles(), root);
+        if (targets == null) {
+            root.removeRow(new ArrayList<>(root.getChildren()));
+            fillRoot(LibraryUpdater.collectFiles(), root);
+            LibrarySearch.INSTANCE.refresh();
+        } else {
+            for (LibraryDirectoryRow target : targets) {
+                target.removeRow(new ArrayList<>(target.getChildren()));
+                fillTree(LibraryUpdater.collectFiles(target.getName(), target.getPath()), target);
+                // Directories without any library files aren't shown, so prune any that are now
+                // empty. The top-level library rows are always kept.
+                TreeContainerRow row = target;
+                while (row.getChildCount() == 0 && row.getParent() instanceof LibraryDirectoryRow) {
+                    TreeContainerRow parent = row.getParent();
+                    parent.removeRow(row);
+                    row = parent;
+                }
+            }
+        }
         mNotifier.endBatch();
         mTreePanel.setOpen(true, collectRowsToOpen(root, open, null));
         mTreePanel.select(collectRows(root, selected, null));
     }
 
+    /**
+     * @return The directory rows that need to be rebuilt to reflect changes within the specified
+     *         directories, or {@code null} if the whole tree needs to be rebuilt.
+     */
+    private static Set<LibraryDirectoryRow> collectRefreshTargets(TreeRoot root, Set<Path> dirs) {
+        Map<Path, LibraryDirectoryRow> rows = new HashMap<>();
+        collectDirectoryRows(root, rows);
+        Set<LibraryDirectoryRow> targets = new HashSet<>();
+        for (Path dir : dirs) {
+            // A directory that isn't shown (because it was empty) or that no longer exists is
+            // handled by rebuilding its nearest displayed ancestor.
+            LibraryDirectoryRow target = null;
+            for (Path path = dir; path != null && target == null; path = path.getParent()) {
+                target = rows.get(path);
+                if (target != null && !Files.isDirectory(path) && target.getParent() instanceof LibraryDirectoryRow) {
+                    target = null;
+                }
+            }
+            if (target == null) {
+                return null;
+            }
+            targets.add(target);
+        }
+        // Drop any targets that are contained within another target
+        Set<LibraryDirectoryRow> result = new LinkedHashSet<>();
+        for (LibraryDirectoryRow target : targets) {
+            boolean covered = false;
+            for (TreeContainerRow parent = target.getParent(); parent != null && !covered; parent = parent.getParent()) {
+                covered = targets.contains(parent);
+            }
+            if (!covered) {
+                result.add(target);
+            }
+        }
+        return result;
+    }
+
+    private static void collectDirectoryRows(TreeContainerRow parent, Map<Path, LibraryDirectoryRow> rows) {
+        for (TreeRow row : parent.getChildren()) {
+            if (row instanceof LibraryDirectoryRow) {
+                LibraryDirectoryRow dir = (LibraryDirectoryRow) row;
+                rows.put(dir.getPath(), dir);
+                collectDirectoryRows(dir, rows);
+            }
+        }
+    }
+
     private Set<String> collectOpenRowKeys() {
         Set<String> open = new HashSet<>();
         for (TreeRow row : new TreeRowViewIterator(mTreePanel, mTreePanel.getRoot().getChildren())) {
@@ -279,33 +369,7 @@ public class LibraryExplorerDockable extends Dockable implements SearchTarget, F
         FileProxy proxy = (FileProxy) getDockableFor(path);
         if (proxy == null) {
             // If it wasn't, load it and put it into the dock
-            try {
-                String ext = PathUtils.getExtension(path);
-                if (FileType.ADVANTAGE.matchExtension(ext)) {
-                    proxy = openAdvantageList(path);
-                } else if (FileType.ADVANTAGE_MODIFIER.matchExtension(ext)) {
-                    proxy = openAdvantageModifierList(path);
-                } else if (FileType.EQUIPMENT.matchExtension(ext)) {
-                    proxy = openEquipmentList(path);
-                } else if (FileType.EQUIPMENT_MODIFIER.matchExtension(ext)) {
-                    proxy = openEquipmentModifierList(path);
-                } else if (FileType.SKILL.matchExtension(ext)) {
-                    proxy = openSkillList(path);
-                } else if (FileType.SPELL.matchExtension(ext)) {
-                    proxy = openSpellList(path);
-                } else if (FileType.NOTE.matchExtension(ext)) {
-                    proxy = openNoteList(path);
-                } else if (FileType.SHEET.matchExtension(ext)) {
-                    proxy = dockSheet(new SheetDockable(new GURPSCharacter(path)));
-                } else if (FileType.TEMPLATE.matchExtension(ext)) {
-                    proxy = dockTemplate(new TemplateDockable(new Template(path)));
-                } else if (FileType.PDF.matchExtension(ext)) {
-                    PDFServer.showPDF(path, 0);
-                }
-            } catch (Throwable throwable) {
-                StdFileDialog.showCannotOpenMsg(this, PathUtils.getLeafName(path, true), throwable);
-                proxy = null;
-            }
+            proxy = load(path, true);
         } else {
             Dockable dockable = (Dockable) proxy;
             dockable.getDockContainer().setCurrentDockable(dockable);
@@ -319,52 +383,95 @@ public class LibraryExplorerDockable extends Dockable implements SearchTarget, F
         return proxy;
     }
 
-    private FileProxy openAdvantageList(Path path) throws IOException {
+    /**
+     * Opens a file without adding it to the recent files list and without locking it if it is a
+     * library list. Used for contents recovered into a temporary file.
+     *
+     * @param path The file to open.
+     * @return The {@link FileProxy} that was opened, or {@code null}.
+     */
+    public FileProxy openUnrecorded(Path path) {
+        return load(path, false);
+    }
+
+    private FileProxy load(Path path, boolean lockLists) {
+        FileProxy proxy = null;
+        try {
+            String ext = PathUtils.getExtension(path);
+            if (FileType.ADVANTAGE.matchExtension(ext)) {
+                proxy = openAdvantageList(path, lockLists);
+            } else if (FileType.ADVANTAGE_MODIFIER.matchExtension(ext)) {
+                proxy = openAdvantageModifierList(path, lockLists);
+            } else if (FileType.EQUIPMENT.matchExtension(ext)) {
+                proxy = openEquipmentList(path, lockLists);
+            } else if (FileType.EQUIPMENT_MODIFIER.matchExtension(ext)) {
+                proxy = openEquipmentModifierList(path, lockLists);
+            } else if (FileType.SKILL.matchExtension(ext)) {
+                proxy = openSkillList(path, lockLists);
+            } else if (FileType.SPELL.matchExtension(ext)) {
+                proxy = openSpellList(path, lockLists);
+            } else if (FileType.NOTE.matchExtension(ext)) {
+                proxy = openNoteList(path, lockLists);
+            } else if (FileType.SHEET.matchExtension(ext)) {
+                proxy = dockSheet(new SheetDockable(new GURPSCharacter(path)));
+            } else if (FileType.TEMPLATE.matchExtension(ext)) {
+                proxy = dockTemplate(new TemplateDockable(new Template(path)));
+            } else if (FileType.PDF.matchExtension(ext)) {
+                PDFServer.showPDF(path, 0);
+            }
+        } catch (Throwable throwable) {
+            StdFileDialog.showCannotOpenMsg(this, PathUtils.getLeafName(path, true), throwable);
+            proxy = null;
+        }
+        return proxy;
+    }
+
+    private FileProxy openAdvantageList(Path path, boolean locked) throws IOException {
         AdvantageList list = new AdvantageList();
         list.load(path);
-        list.getModel().setLocked(true);
+        list.getModel().setLocked(locked);
         return dockLibrary(new AdvantagesDockable(list));
     }
 
-    private FileProxy openAdvantageModifierList(Path path) throws IOException {
+    private FileProxy openAdvantageModifierList(Path path, boolean locked) throws IOException {
         AdvantageModifierList list = new AdvantageModifierList();
         list.load(path);
-        list.getModel().setLocked(true);
+        list.getModel().setLocked(locked);
         return dockLibrary(new AdvantageModifiersDockable(list));
     }
 
-    private FileProxy openEquipmentList(Path path) throws IOException {
+    private FileProxy openEquipmentList(Path path, boolean locked) throws IOException {
         EquipmentList list = new EquipmentList();
         list.load(path);
-        list.getModel().setLocked(true);
+        list.getModel().setLocked(locked);
         return dockLibrary(new EquipmentDockable(list));
     }
 
-    private FileProxy openEquipmentModifierList(Path path) throws IOException {
+    private FileProxy openEquipmentModifierList(Path path, boolean locked) throws IOException {
         EquipmentModifierList list = new EquipmentModifierList();
         list.load(path);
-        list.getModel().setLocked(true);
+        list.getModel().setLocked(locked);
         return dockLibrary(new EquipmentModifiersDockable(list));
     }
 
-    private FileProxy openSkillList(Path path) throws IOException {
+    private FileProxy openSkillList(Path path, boolean locked) throws IOException {
         SkillList list = new SkillList();
         list.load(path);
-        list.getModel().setLocked(true);
+        list.getModel().setLocked(locked);
         return dockLibrary(new SkillsDockable(list));
     }
 
-    private FileProxy openSpellList(Path path) throws IOException {
+    private FileProxy openSpellList(Path path, boolean locked) throws IOException {
         SpellList list = new SpellList();
         list.load(path);
-        list.getModel().setLocked(true);
+        list.getModel().setLocked(locked);
         return dockLibrary(new SpellsDockable(list));
     }
 
-    private FileProxy openNoteList(Path path) throws IOException {
+    private FileProxy openNoteList(Path path, boolean locked) throws IOException {
         NoteList list = new NoteList();
         list.load(path);
-        list.getModel().setLocked(true);
+        list.getModel().setLocked(locked);
         return dockLibrary(new NotesDockable(list));
     }
 
@@ -488,6 +595,7 @@ public class LibraryExplorerDockable extends Dockable implements SearchTarget, F
         ArrayList<Object> list = new ArrayList<>();
         filter = filter.toLowerCase();
         collect(mTreePanel.getRoot(), filter, list);
+        list.addAll(LibrarySearch.INSTANCE.search(filter, MAX_ROW_HITS));
         return list;
     }
 
@@ -506,12 +614,22 @@ public class LibraryExplorerDockable extends Dockable implements SearchTarget, F
 
     @Override
     public void searchSelect(List<Object> selection) {
-        List<TreeRow> list = new ArrayList<>();
+        List<TreeRow>     list = new ArrayList<>();
+        LibrarySearch.Hit hit  = null;
         for (Object one : selection) {
             if (one instanceof TreeRow) {
                 list.add((TreeRow) one);
-
+            } else if (hit == null && one instanceof LibrarySearch.Hit) {
+                hit = (LibrarySearch.Hit) one;
+            }
+        }
+        if (list.isEmpty() && hit != null) {
+            // Rows within files can only be shown one at a time, so jump to the first one
+            FileProxy proxy = open(hit.getPath());
+            if (proxy instanceof LibraryDockable) {
+                ((LibraryDockable) proxy).selectRow(hit.getID());
             }
+            return;
         }
         mTreePanel.setParentsOpen(list);
         mTreePanel.select(list);
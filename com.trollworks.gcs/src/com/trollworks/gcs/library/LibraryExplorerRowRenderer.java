@@ -17,7 +17,7 @@ import java.awt.Component;
 import javax.swing.DefaultListCellRenderer;
 import javax.swing.JList;
 
-/** An item renderer for {@link LibraryExplorerRow}s. */
+/** An item renderer for {@link LibraryExplorerRow}s and {@link LibrarySearch.Hit}s. */
 public class LibraryExplorerRowRenderer extends DefaultListCellRenderer {
     @Override
     public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
@@ -27,6 +27,10 @@ public class LibraryExplorerRowRenderer extends DefaultListCellRenderer {
             LibraryExplorerRow row = (LibraryExplorerRow) value;
             title = row.getName();
             icon = row.getIcon();
+        } else if (value instanceof LibrarySearch.Hit) {
+            LibrarySearch.Hit hit = (LibrarySearch.Hit) value;
+            title = hit.toString();
+            icon = hit.getIcon();
         } else {
             title = value.toString();
             icon = null;
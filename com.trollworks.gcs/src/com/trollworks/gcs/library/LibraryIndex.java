@@ -0,0 +1,204 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.library;
+
+import com.trollworks.gcs.utility.Log;
+import com.trollworks.gcs.utility.Platform;
+import com.trollworks.gcs.utility.SafeFileUpdater;
+import com.trollworks.gcs.utility.json.Json;
+import com.trollworks.gcs.utility.json.JsonArray;
+import com.trollworks.gcs.utility.json.JsonMap;
+import com.trollworks.gcs.utility.json.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent record of the {@link UUID}s found in each library file, keyed by path and validated
+ * by modification time and size, so that unchanged files don't need to be parsed again to find
+ * them.
+ */
+class LibraryIndex {
+    private static final int                    CURRENT_VERSION = 1;
+    private static final String                 VERSION         = "version";
+    private static final String                 FILES           = "files";
+    private static final String                 MODIFIED        = "modified";
+    private static final String                 SIZE            = "size";
+    private static final String                 ID              = "id";
+    private static final String                 CONTAINED       = "contained";
+    private              Path                   mPath;
+    private              Map<String, Entry>     mEntries        = new ConcurrentHashMap<>();
+    private              Set<String>            mSeen           = ConcurrentHashMap.newKeySet();
+    private              boolean                mModified;
+
+    /** @return The default location of the index. */
+    static Path getDefaultPath() {
+        return getCacheDir().resolve("library_index.json");
+    }
+
+    /** @return The directory where data derived from the libraries may be cached. */
+    static Path getCacheDir() {
+        String home = System.getProperty("user.home", ".");
+        Path   path;
+        switch (Platform.getPlatform()) {
+        case MAC -> path = Paths.get(home, "Library", "Caches", "GCS");
+        case WINDOWS -> {
+            String localAppData = System.getenv("LOCALAPPDATA");
+            path = Paths.get(localAppData != null ? localAppData : home, "GCS");
+        }
+        default -> path = Paths.get(home, ".cache", "gcs");
+        }
+        return path.normalize().toAbsolutePath();
+    }
+
+    /**
+     * Creates a new index, loading any previously saved data. A missing or unreadable index simply
+     * results in an empty one.
+     *
+     * @param path The location of the index.
+     */
+    LibraryIndex(Path path) {
+        mPath = path;
+        if (Files.isReadable(path) && Files.isRegularFile(path)) {
+            try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                JsonMap m = Json.asMap(Json.parse(in));
+                if (m.getInt(VERSION) == CURRENT_VERSION) {
+                    JsonMap files = m.getMap(FILES);
+                    for (String key : files.keySet()) {
+                        JsonMap   fm        = files.getMap(key);
+                        JsonArray array     = fm.getArray(CONTAINED);
+                        int       count     = array.size();
+                        List<UUID> contained = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            contained.add(UUID.fromString(array.getString(i)));
+                        }
+                        mEntries.put(key, new Entry(fm.getLong(MODIFIED), fm.getLong(SIZE), UUID.fromString(fm.getString(ID)), contained));
+                    }
+                }
+            } catch (Exception exception) {
+                Log.error(exception);
+                mEntries.clear();
+            }
+        }
+    }
+
+    /**
+     * @param path The file to look for.
+     * @return The entry for the file, or {@code null} if there isn't one or the file has changed
+     *         since it was recorded.
+     */
+    Entry get(Path path) throws IOException {
+        String key = path.toString();
+        mSeen.add(key);
+        Entry entry = mEntries.get(key);
+        if (entry != null && (entry.mModified != Files.getLastModifiedTime(path).toMillis() || entry.mSize != Files.size(path))) {
+            entry = null;
+        }
+        return entry;
+    }
+
+    /**
+     * Records the {@link UUID}s found in a file.
+     *
+     * @param path      The file.
+     * @param id        The {@link UUID} of the file itself.
+     * @param contained The {@link UUID}s of the objects contained within the file, in the order
+     *                  they were found.
+     * @return The new entry.
+     */
+    Entry put(Path path, UUID id, List<UUID> contained) throws IOException {
+        String key   = path.toString();
+        Entry  entry = new Entry(Files.getLastModifiedTime(path).toMillis(), Files.size(path), id, contained);
+        mSeen.add(key);
+        mEntries.put(key, entry);
+        mModified = true;
+        return entry;
+    }
+
+    /** Writes the index out, dropping any files that weren't looked at since it was loaded. */
+    void save() {
+        Set<String> stale = new HashSet<>(mEntries.keySet());
+        stale.removeAll(mSeen);
+        if (!stale.isEmpty()) {
+            mEntries.keySet().removeAll(stale);
+            mModified = true;
+        }
+        if (mModified) {
+            try {
+                SafeFileUpdater trans = new SafeFileUpdater();
+                trans.begin();
+                try {
+                    Files.createDirectories(mPath.getParent());
+                    File file = trans.getTransactionFile(mPath.toFile());
+                    try (JsonWriter w = new JsonWriter(Files.newOutputStream(file.toPath()), "")) {
+                        w.startMap();
+                        w.keyValue(VERSION, CURRENT_VERSION);
+                        w.key(FILES);
+                        w.startMap();
+                        for (Map.Entry<String, Entry> one : mEntries.entrySet()) {
+                            Entry entry = one.getValue();
+                            w.key(one.getKey());
+                            w.startMap();
+                            w.keyValue(MODIFIED, entry.mModified);
+                            w.keyValue(SIZE, entry.mSize);
+                            w.keyValue(ID, entry.mID.toString());
+                            w.key(CONTAINED);
+                            w.startArray();
+                            for (UUID id : entry.mContained) {
+                                w.value(id.toString());
+                            }
+                            w.endArray();
+                            w.endMap();
+                        }
+                        w.endMap();
+                        w.endMap();
+                    }
+                } catch (IOException ioe) {
+                    trans.abort();
+                    throw ioe;
+                }
+                trans.commit();
+                mModified = false;
+            } catch (Exception exception) {
+                Log.error(exception);
+            }
+        }
+    }
+
+    /** The {@link UUID}s found in a single file. */
+    static class Entry {
+        long       mModified;
+        long       mSize;
+        UUID       mID;
+        List<UUID> mContained;
+
+        Entry(long modified, long size, UUID id, List<UUID> contained) {
+            mModified = modified;
+            mSize = size;
+            mID = id;
+            mContained = Collections.unmodifiableList(contained);
+        }
+    }
+}
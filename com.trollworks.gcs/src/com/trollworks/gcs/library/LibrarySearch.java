@@ -0,0 +1,573 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.library;
+
+import com.trollworks.gcs.ui.RetinaIcon;
+import com.trollworks.gcs.utility.FileType;
+import com.trollworks.gcs.utility.Log;
+import com.trollworks.gcs.utility.PathUtils;
+import com.trollworks.gcs.utility.SafeFileUpdater;
+import com.trollworks.gcs.utility.json.Json;
+import com.trollworks.gcs.utility.json.JsonArray;
+import com.trollworks.gcs.utility.json.JsonMap;
+import com.trollworks.gcs.utility.json.JsonReader;
+import com.trollworks.gcs.utility.json.JsonWriter;
+import com.trollworks.gcs.utility.text.NumericComparator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A full-text index of the rows within every library file, whether or not the file is open. The
+ * index is kept in memory as a map from each word to the rows containing it, is built and updated
+ * on a background thread, and is persisted between runs so that only files that have changed since
+ * need to be read again. Changes reported by the {@link LibraryWatcher} are picked up as they
+ * happen.
+ */
+public class LibrarySearch {
+    public static final  LibrarySearch                   INSTANCE              = new LibrarySearch();
+    private static final int                             CURRENT_VERSION       = 1;
+    private static final int                             NAME_WEIGHT           = 8;
+    private static final int                             SPECIALIZATION_WEIGHT = 6;
+    private static final int                             CATEGORY_WEIGHT       = 4;
+    private static final int                             REFERENCE_WEIGHT      = 3;
+    private static final int                             NOTES_WEIGHT          = 1;
+    private static final int                             MAX_NAME_LENGTH       = 80;
+    private static final String                          VERSION               = "version";
+    private static final String                          FILES                 = "files";
+    private static final String                          MODIFIED              = "modified";
+    private static final String                          SIZE                  = "size";
+    private static final String                          ROWS                  = "rows";
+    private static final String                          CHILDREN              = "children";
+    private static final String                          ID                    = "id";
+    private static final String                          NAME                  = "name";
+    private static final String                          DESCRIPTION           = "description";
+    private static final String                          TEXT                  = "text";
+    private static final String                          SPECIALIZATION        = "specialization";
+    private static final String                          CATEGORIES            = "categories";
+    private static final String                          NOTES                 = "notes";
+    private static final String                          REFERENCE             = "reference";
+    private static final FileType[]                      FILE_TYPES            = {FileType.ADVANTAGE, FileType.ADVANTAGE_MODIFIER, FileType.EQUIPMENT, FileType.EQUIPMENT_MODIFIER, FileType.SKILL, FileType.SPELL, FileType.NOTE};
+    private              ExecutorService                 mQueue;
+    private              Path                            mPath;
+    private              Map<String, FileEntry>          mFiles;
+    private volatile     NavigableMap<String, Posting[]> mWords;
+
+    private LibrarySearch() {
+        mQueue = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Library Search Indexer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        mPath = LibraryIndex.getCacheDir().resolve("library_search.json");
+        mFiles = new HashMap<>();
+        mWords = Collections.emptyNavigableMap();
+        mQueue.submit(this::load);
+        LibraryWatcher.INSTANCE.addModificationListener(this::update);
+    }
+
+    /**
+     * Re-examines every file in the libraries on a background thread, reading only those that have
+     * changed since they were last indexed.
+     */
+    public void refresh() {
+        mQueue.submit(() -> {
+            Set<String> seen    = new HashSet<>();
+            boolean     changed = false;
+            for (Library library : Library.LIBRARIES) {
+                changed |= scan(library.getPath(), seen);
+            }
+            changed |= mFiles.keySet().retainAll(seen);
+            if (changed) {
+                publish();
+            }
+        });
+    }
+
+    /**
+     * Re-indexes the specified files on a background thread.
+     *
+     * @param paths The files that were created, deleted or modified.
+     */
+    public void update(Set<Path> paths) {
+        Set<Path> copy = new HashSet<>(paths);
+        mQueue.submit(() -> {
+            boolean changed = false;
+            for (Path path : copy) {
+                path = path.normalize().toAbsolutePath();
+                if (Files.isRegularFile(path) && isIndexable(path) && isInLibrary(path)) {
+                    changed |= index(path);
+                } else {
+                    changed |= mFiles.remove(path.toString()) != null;
+                }
+            }
+            if (changed) {
+                publish();
+            }
+        });
+    }
+
+    /**
+     * @param text The text to search for. Each word must match the start of a word within a row.
+     * @param max  The maximum number of results to return.
+     * @return The matching rows, best matches first.
+     */
+    public List<Hit> search(String text, int max) {
+        NavigableMap<String, Posting[]> words  = mWords;
+        Map<Hit, Integer>               scores = null;
+        for (String word : tokenize(text)) {
+            Map<Hit, Integer> wordScores = new HashMap<>();
+            for (Map.Entry<String, Posting[]> entry : words.subMap(word, true, word + Character.MAX_VALUE, false).entrySet()) {
+                int bonus = entry.getKey().length() == word.length() ? 1 : 0;
+                for (Posting posting : entry.getValue()) {
+                    wordScores.merge(posting.mHit, Integer.valueOf(posting.mWeight + bonus), (a, b) -> a.intValue() >= b.intValue() ? a : b);
+                }
+            }
+            if (scores == null) {
+                scores = wordScores;
+            } else {
+                scores.keySet().retainAll(wordScores.keySet());
+                scores.replaceAll((hit, score) -> Integer.valueOf(score.intValue() + wordScores.get(hit).intValue()));
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        if (scores == null || scores.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Map.Entry<Hit, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort((e1, e2) -> {
+            int result = Integer.compare(e2.getValue().intValue(), e1.getValue().intValue());
+            if (result == 0) {
+                result = NumericComparator.caselessCompareStrings(e1.getKey().mName, e2.getKey().mName);
+            }
+            return result;
+        });
+        int       count = Math.min(max, ranked.size());
+        List<Hit> hits  = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(ranked.get(i).getKey());
+        }
+        return hits;
+    }
+
+    private void load() {
+        if (Files.isReadable(mPath) && Files.isRegularFile(mPath)) {
+            try (BufferedReader in = Files.newBufferedReader(mPath, StandardCharsets.UTF_8)) {
+                JsonMap m = Json.asMap(Json.parse(in));
+                if (m.getInt(VERSION) == CURRENT_VERSION) {
+                    JsonMap files = m.getMap(FILES);
+                    for (String key : files.keySet()) {
+                        JsonMap   fm    = files.getMap(key);
+                        JsonArray array = fm.getArray(ROWS);
+                        int       count = array.size();
+                        List<Doc> docs  = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            docs.add(new Doc(array.getMap(i)));
+                        }
+                        mFiles.put(key, new FileEntry(fm.getLong(MODIFIED), fm.getLong(SIZE), docs));
+                    }
+                }
+            } catch (Exception exception) {
+                Log.error(exception);
+                mFiles.clear();
+            }
+        }
+        buildWords();
+    }
+
+    private boolean scan(Path dir, Set<String> seen) {
+        boolean changed = false;
+        // Only use directory streams for listings; see the note in LibraryCollector.
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                if (path.getFileName().toString().startsWith(".")) {
+                    continue;
+                }
+                if (Files.isDirectory(path)) {
+                    changed |= scan(path, seen);
+                } else if (isIndexable(path)) {
+                    path = path.normalize().toAbsolutePath();
+                    seen.add(path.toString());
+                    changed |= index(path);
+                }
+            }
+        } catch (IOException ioe) {
+            Log.error(ioe);
+        }
+        return changed;
+    }
+
+    private static boolean isIndexable(Path path) {
+        String ext = PathUtils.getExtension(path.getFileName());
+        for (FileType one : FILE_TYPES) {
+            if (one.matchExtension(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isInLibrary(Path path) {
+        for (Library library : Library.LIBRARIES) {
+            if (path.startsWith(library.getPath().normalize().toAbsolutePath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return {@code true} if the file's entry was added or replaced. */
+    private boolean index(Path path) {
+        String key = path.toString();
+        try {
+            long      modified = Files.getLastModifiedTime(path).toMillis();
+            long      size     = Files.size(path);
+            FileEntry entry    = mFiles.get(key);
+            if (entry != null && entry.mModified == modified && entry.mSize == size) {
+                return false;
+            }
+            List<Doc> docs = new ArrayList<>();
+            try (JsonReader in = new JsonReader(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+                collectDocs(in, docs);
+            } catch (Exception exception) {
+                // Unreadable files are recorded as empty, so that they aren't retried until they
+                // change.
+                Log.error(exception);
+                docs.clear();
+            }
+            mFiles.put(key, new FileEntry(modified, size, docs));
+            return true;
+        } catch (IOException ioe) {
+            Log.error(ioe);
+            return mFiles.remove(key) != null;
+        }
+    }
+
+    /**
+     * Streams through a library file, pulling out just the fields that are indexed, so that no
+     * {@link JsonMap} needs to be built for the rows.
+     */
+    private static void collectDocs(JsonReader r, List<Doc> docs) throws IOException {
+        if (r.peek() != JsonReader.Kind.MAP) {
+            return;
+        }
+        r.beginMap();
+        while (r.hasNext()) {
+            if (ROWS.equals(r.nextKey())) {
+                collectRowDocs(r, docs);
+            } else {
+                r.skipValue();
+            }
+        }
+        r.endMap();
+    }
+
+    private static void collectRowDocs(JsonReader r, List<Doc> docs) throws IOException {
+        if (r.peek() != JsonReader.Kind.ARRAY) {
+            r.skipValue();
+            return;
+        }
+        r.beginArray();
+        while (r.hasNext()) {
+            if (r.peek() == JsonReader.Kind.MAP) {
+                collectRowDoc(r, docs);
+            } else {
+                r.skipValue();
+            }
+        }
+        r.endArray();
+    }
+
+    private static void collectRowDoc(JsonReader r, List<Doc> docs) throws IOException {
+        String       id             = "";
+        String       name           = "";
+        String       description    = "";
+        String       text           = "";
+        String       specialization = "";
+        String       notes          = "";
+        String       reference      = "";
+        List<String> categories     = new ArrayList<>();
+        List<Doc>    children       = new ArrayList<>();
+        r.beginMap();
+        while (r.hasNext()) {
+            switch (r.nextKey()) {
+            case ID -> id = readString(r);
+            case NAME -> name = readString(r);
+            case DESCRIPTION -> description = readString(r);
+            case TEXT -> text = readString(r);
+            case SPECIALIZATION -> specialization = readString(r);
+            case NOTES -> notes = readString(r);
+            case REFERENCE -> reference = readString(r);
+            case CATEGORIES -> {
+                if (r.peek() == JsonReader.Kind.ARRAY) {
+                    r.beginArray();
+                    while (r.hasNext()) {
+                        categories.add(readString(r));
+                    }
+                    r.endArray();
+                } else {
+                    r.skipValue();
+                }
+            }
+            case CHILDREN -> collectRowDocs(r, children);
+            default -> r.skipValue();
+            }
+        }
+        r.endMap();
+        if (name.isBlank()) {
+            name = description;
+        }
+        if (name.isBlank()) {
+            name = text.strip().lines().findFirst().orElse("");
+            if (name.length() > MAX_NAME_LENGTH) {
+                name = name.substring(0, MAX_NAME_LENGTH) + "…";
+            }
+        }
+        if (!text.isEmpty()) {
+            notes = notes.isEmpty() ? text : notes + "\n" + text;
+        }
+        docs.add(new Doc(id, name, specialization, categories, notes, reference));
+        docs.addAll(children);
+    }
+
+    private static String readString(JsonReader r) throws IOException {
+        JsonReader.Kind kind = r.peek();
+        if (kind == JsonReader.Kind.MAP || kind == JsonReader.Kind.ARRAY) {
+            r.skipValue();
+            return "";
+        }
+        return r.nextString();
+    }
+
+    private void publish() {
+        buildWords();
+        save();
+    }
+
+    private void buildWords() {
+        Map<String, List<Posting>> words = new HashMap<>();
+        for (Map.Entry<String, FileEntry> file : mFiles.entrySet()) {
+            Path path = Paths.get(file.getKey());
+            for (Doc doc : file.getValue().mDocs) {
+                Hit                  hit     = new Hit(path, doc.mID, doc.mName);
+                Map<String, Integer> weights = new HashMap<>();
+                addWords(weights, doc.mName, NAME_WEIGHT);
+                addWords(weights, doc.mSpecialization, SPECIALIZATION_WEIGHT);
+                for (String category : doc.mCategories) {
+                    addWords(weights, category, CATEGORY_WEIGHT);
+                }
+                addWords(weights, doc.mReference, REFERENCE_WEIGHT);
+                addWords(weights, doc.mNotes, NOTES_WEIGHT);
+                for (Map.Entry<String, Integer> one : weights.entrySet()) {
+                    words.computeIfAbsent(one.getKey(), k -> new ArrayList<>()).add(new Posting(hit, one.getValue().intValue()));
+                }
+            }
+        }
+        NavigableMap<String, Posting[]> map = new TreeMap<>();
+        for (Map.Entry<String, List<Posting>> one : words.entrySet()) {
+            map.put(one.getKey(), one.getValue().toArray(new Posting[0]));
+        }
+        mWords = Collections.unmodifiableNavigableMap(map);
+    }
+
+    private static void addWords(Map<String, Integer> weights, String text, int weight) {
+        for (String word : tokenize(text)) {
+            weights.merge(word, Integer.valueOf(weight), (a, b) -> a.intValue() >= b.intValue() ? a : b);
+        }
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String>  words  = new ArrayList<>();
+        StringBuilder buffer = new StringBuilder();
+        int           length = text.length();
+        for (int i = 0; i <= length; i++) {
+            char ch = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(ch)) {
+                buffer.append(Character.toLowerCase(ch));
+            } else if (!buffer.isEmpty()) {
+                words.add(buffer.toString());
+                buffer.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    private void save() {
+        try {
+            SafeFileUpdater trans = new SafeFileUpdater();
+            trans.begin();
+            try {
+                Files.createDirectories(mPath.getParent());
+                File file = trans.getTransactionFile(mPath.toFile());
+                try (JsonWriter w = new JsonWriter(Files.newOutputStream(file.toPath()), "")) {
+                    w.startMap();
+                    w.keyValue(VERSION, CURRENT_VERSION);
+                    w.key(FILES);
+                    w.startMap();
+                    for (Map.Entry<String, FileEntry> one : mFiles.entrySet()) {
+                        FileEntry entry = one.getValue();
+                        w.key(one.getKey());
+                        w.startMap();
+                        w.keyValue(MODIFIED, entry.mModified);
+                        w.keyValue(SIZE, entry.mSize);
+                        w.key(ROWS);
+                        w.startArray();
+                        for (Doc doc : entry.mDocs) {
+                            doc.save(w);
+                        }
+                        w.endArray();
+                        w.endMap();
+                    }
+                    w.endMap();
+                    w.endMap();
+                }
+            } catch (IOException ioe) {
+                trans.abort();
+                throw ioe;
+            }
+            trans.commit();
+        } catch (Exception exception) {
+            Log.error(exception);
+        }
+    }
+
+    /** A row found by a search. */
+    public static class Hit {
+        private Path   mPath;
+        private String mID;
+        private String mName;
+
+        Hit(Path path, String id, String name) {
+            mPath = path;
+            mID = id;
+            mName = name;
+        }
+
+        /** @return The library file containing the row. */
+        public Path getPath() {
+            return mPath;
+        }
+
+        /** @return The ID of the row. */
+        public String getID() {
+            return mID;
+        }
+
+        /** @return The name of the row. */
+        public String getName() {
+            return mName;
+        }
+
+        /** @return The icon for the type of file the row is in. */
+        public RetinaIcon getIcon() {
+            return FileType.getIconForFileName(mPath.getFileName().toString());
+        }
+
+        @Override
+        public String toString() {
+            return mName + " (" + PathUtils.getLeafName(mPath, false) + ")";
+        }
+    }
+
+    private static class Posting {
+        Hit mHit;
+        int mWeight;
+
+        Posting(Hit hit, int weight) {
+            mHit = hit;
+            mWeight = weight;
+        }
+    }
+
+    private static class FileEntry {
+        long      mModified;
+        long      mSize;
+        List<Doc> mDocs;
+
+        FileEntry(long modified, long size, List<Doc> docs) {
+            mModified = modified;
+            mSize = size;
+            mDocs = docs;
+        }
+    }
+
+    /** The searchable text of a single row. */
+    private static class Doc {
+        String       mID;
+        String       mName;
+        String       mSpecialization;
+        List<String> mCategories;
+        String       mNotes;
+        String       mReference;
+
+        Doc(String id, String name, String specialization, List<String> categories, String notes, String reference) {
+            mID = id;
+            mName = name;
+            mSpecialization = specialization;
+            mCategories = categories;
+            mNotes = notes;
+            mReference = reference;
+        }
+
+        Doc(JsonMap m) {
+            mID = m.getStringWithDefault(ID, "");
+            mName = m.getStringWithDefault(NAME, "");
+            mSpecialization = m.getStringWithDefault(SPECIALIZATION, "");
+            mNotes = m.getStringWithDefault(NOTES, "");
+            mReference = m.getStringWithDefault(REFERENCE, "");
+            JsonArray array = m.getArray(CATEGORIES);
+            int       count = array.size();
+            mCategories = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                mCategories.add(array.getString(i));
+            }
+        }
+
+        void save(JsonWriter w) throws IOException {
+            w.startMap();
+            w.keyValue(ID, mID);
+            w.keyValue(NAME, mName);
+            w.keyValueNot(SPECIALIZATION, mSpecialization, "");
+            if (!mCategories.isEmpty()) {
+                w.key(CATEGORIES);
+                w.startArray();
+                for (String category : mCategories) {
+                    w.value(category);
+                }
+                w.endArray();
+            }
+            w.keyValueNot(NOTES, mNotes, "");
+            w.keyValueNot(REFERENCE, mReference, "");
+            w.endMap();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.library;
+
+import com.trollworks.gcs.ui.widget.outline.ListRow;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Remembers which rows of a library match the current filter text, so that asking whether a row
+ * is filtered doesn't require searching it again. When the filter text grows, rows that already
+ * failed to match are known to still fail, so only the rows that matched before are searched
+ * again. Categories are checked directly, as that is just a set lookup.
+ */
+class LibrarySearchIndex {
+    private Map<ListRow, Result> mResults = new IdentityHashMap<>();
+    private String               mText    = "";
+    private String               mCategory;
+
+    /**
+     * Sets the criteria rows must match.
+     *
+     * @param text     The text to search for, or an empty string to match all rows.
+     * @param category The category to require, or {@code null} to match all rows.
+     */
+    void setCriteria(String text, String category) {
+        text = text.toLowerCase();
+        if (!text.contains(mText)) {
+            mResults.clear();
+        } else if (!text.equals(mText)) {
+            // Narrowing: rows that didn't match before still won't, so only keep those results.
+            mResults.values().removeIf(result -> result.mMatches);
+        }
+        mText = text;
+        mCategory = category;
+    }
+
+    /**
+     * @param row The row to check.
+     * @return {@code true} if the row matches the current criteria.
+     */
+    boolean matches(ListRow row) {
+        if (mCategory != null && !row.getCategories().contains(mCategory)) {
+            return false;
+        }
+        if (mText.isEmpty()) {
+            return true;
+        }
+        // The row's search text is cached until it changes, so the equality check is usually
+        // satisfied by identity alone.
+        String searchText = row.getSearchText();
+        Result result     = mResults.get(row);
+        if (result == null || !result.mSearchText.equals(searchText)) {
+            result = new Result(searchText, searchText.contains(mText));
+            mResults.put(row, result);
+        }
+        return result.mMatches;
+    }
+
+    private static class Result {
+        String  mSearchText;
+        boolean mMatches;
+
+        Result(String searchText, boolean matches) {
+            mSearchText = searchText;
+            mMatches = matches;
+        }
+    }
+}
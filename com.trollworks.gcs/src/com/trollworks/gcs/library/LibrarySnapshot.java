@@ -0,0 +1,476 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.library;
+
+import com.trollworks.gcs.utility.Log;
+import com.trollworks.gcs.utility.SafeFileUpdater;
+import com.trollworks.gcs.utility.json.Json;
+import com.trollworks.gcs.utility.json.JsonArray;
+import com.trollworks.gcs.utility.json.JsonMap;
+import com.trollworks.gcs.utility.json.JsonNull;
+import com.trollworks.gcs.utility.json.JsonReader;
+import com.trollworks.gcs.utility.task.Tasks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A binary snapshot of the contents of a list file, kept in the cache directory so that re-opening
+ * an unchanged file doesn't require parsing its JSON again. The snapshot holds the tokens read from
+ * the JSON, in order, and is read back through a {@link JsonReader}, so loading from it doesn't
+ * build a tree either. Each snapshot records the path, size, modification time and JSON version it
+ * was made from, and is ignored once any of them no longer match. Every distinct string is stored
+ * once and shared by all of its uses when read back.
+ */
+public class LibrarySnapshot {
+    private static final int     MAGIC           = 0x47435353;
+    private static final int     FORMAT_VERSION  = 2;
+    private static final byte    TYPE_NULL       = 0;
+    private static final byte    TYPE_FALSE      = 1;
+    private static final byte    TYPE_TRUE       = 2;
+    private static final byte    TYPE_INT        = 3;
+    private static final byte    TYPE_LONG       = 4;
+    private static final byte    TYPE_DOUBLE     = 5;
+    private static final byte    TYPE_STRING     = 6;
+    private static final byte    TYPE_MAP        = 7;
+    private static final byte    TYPE_ARRAY      = 8;
+    private static final byte    TYPE_NEW_STRING = 9;
+    private static final byte    TYPE_END        = 10;
+    private static       boolean EVICTION_STARTED;
+    private              Path    mPath;
+    private              Path    mSnapshotPath;
+    private              int     mJSONVersion;
+    private              long    mSize;
+    private              long    mModified;
+    private              Encoder mEncoder;
+
+    /**
+     * Captures the current size and modification time of a file. These should be captured before
+     * the file is parsed, so that a change made while it is being read invalidates the snapshot.
+     *
+     * @param path        The file the snapshot is for.
+     * @param jsonVersion The JSON version the file will be loaded with.
+     */
+    public LibrarySnapshot(Path path, int jsonVersion) throws IOException {
+        mPath = path.normalize().toAbsolutePath();
+        mSnapshotPath = getSnapshotDir().resolve(UUID.nameUUIDFromBytes(mPath.toString().getBytes(StandardCharsets.UTF_8)) + ".snapshot");
+        mJSONVersion = jsonVersion;
+        BasicFileAttributes attrs = Files.readAttributes(mPath, BasicFileAttributes.class);
+        mSize = attrs.size();
+        mModified = attrs.lastModifiedTime().toMillis();
+    }
+
+    private static Path getSnapshotDir() {
+        return LibraryIndex.getCacheDir().resolve("snapshots");
+    }
+
+    /**
+     * @return A reader of the file's contents, or {@code null} if there is no up-to-date snapshot
+     *         of it.
+     */
+    public JsonReader reader() {
+        startEviction();
+        if (!Files.isRegularFile(mSnapshotPath)) {
+            return null;
+        }
+        try {
+            // The file is read onto the heap rather than mapped, since a mapping would keep it from
+            // being replaced on Windows until the buffer is garbage collected.
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(mSnapshotPath));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || buffer.getInt() != mJSONVersion || buffer.getLong() != mSize || buffer.getLong() != mModified || !mPath.toString().equals(readString(buffer))) {
+                return null;
+            }
+            return new SnapshotReader(buffer);
+        } catch (Exception exception) {
+            // A damaged snapshot is ignored, and will be replaced once the file has been parsed.
+            Log.error(exception);
+            return null;
+        }
+    }
+
+    /** @return The file's contents, or {@code null} if there is no up-to-date snapshot of it. */
+    public JsonMap read() {
+        JsonReader in = reader();
+        if (in == null) {
+            return null;
+        }
+        try (in) {
+            Object value = in.nextValue();
+            return value instanceof JsonMap ? (JsonMap) value : null;
+        } catch (Exception exception) {
+            Log.error(exception);
+            return null;
+        }
+    }
+
+    /**
+     * @return A {@link JsonReader.Recorder} to give to the reader of the file's JSON. Once the
+     *         contents have been read in full, {@link #write()} saves what it recorded.
+     */
+    public JsonReader.Recorder recorder() {
+        mEncoder = new Encoder();
+        return mEncoder;
+    }
+
+    /** Saves the contents passed to the {@link #recorder()}. */
+    public void write() {
+        if (mEncoder == null) {
+            return;
+        }
+        try {
+            SafeFileUpdater trans = new SafeFileUpdater();
+            trans.begin();
+            try {
+                Files.createDirectories(mSnapshotPath.getParent());
+                File file = trans.getTransactionFile(mSnapshotPath.toFile());
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeInt(mJSONVersion);
+                    out.writeLong(mSize);
+                    out.writeLong(mModified);
+                    writeString(out, mPath.toString());
+                    mEncoder.mBytes.writeTo(out);
+                }
+            } catch (IOException ioe) {
+                trans.abort();
+                throw ioe;
+            }
+            trans.commit();
+        } catch (Exception exception) {
+            Log.error(exception);
+        }
+        mEncoder = null;
+    }
+
+    private static synchronized void startEviction() {
+        if (!EVICTION_STARTED) {
+            EVICTION_STARTED = true;
+            Tasks.callOnBackgroundThread(LibrarySnapshot::evictOrphans);
+        }
+    }
+
+    /** Removes the snapshots of files that no longer exist, along with any that can't be read. */
+    static void evictOrphans() {
+        Path dir = getSnapshotDir();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.snapshot")) {
+            for (Path snapshot : stream) {
+                Path source = readSourcePath(snapshot);
+                if (source == null || !Files.exists(source)) {
+                    Files.deleteIfExists(snapshot);
+                }
+            }
+        } catch (Exception exception) {
+            Log.error(exception);
+        }
+    }
+
+    private static Path readSourcePath(Path snapshot) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            in.readInt(); // JSON version
+            in.readLong(); // size
+            in.readLong(); // modification time
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return Paths.get(new String(bytes, StandardCharsets.UTF_8));
+        } catch (Exception exception) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Encodes the tokens read from a file's JSON. */
+    private static class Encoder implements JsonReader.Recorder {
+        private ByteArrayOutputStream mBytes   = new ByteArrayOutputStream();
+        private DataOutputStream      mOut     = new DataOutputStream(mBytes);
+        private Map<String, Integer>  mIndexes = new HashMap<>();
+
+        @Override
+        public void beginMap() throws IOException {
+            mOut.writeByte(TYPE_MAP);
+        }
+
+        @Override
+        public void endMap() throws IOException {
+            mOut.writeByte(TYPE_END);
+        }
+
+        @Override
+        public void beginArray() throws IOException {
+            mOut.writeByte(TYPE_ARRAY);
+        }
+
+        @Override
+        public void endArray() throws IOException {
+            mOut.writeByte(TYPE_END);
+        }
+
+        @Override
+        public void key(String key) throws IOException {
+            writeStringValue(key);
+        }
+
+        @Override
+        public void value(Object value) throws IOException {
+            if (value instanceof String) {
+                writeStringValue((String) value);
+            } else if (value instanceof Boolean) {
+                mOut.writeByte(((Boolean) value).booleanValue() ? TYPE_TRUE : TYPE_FALSE);
+            } else if (value instanceof Integer) {
+                mOut.writeByte(TYPE_INT);
+                mOut.writeInt(((Integer) value).intValue());
+            } else if (value instanceof Long) {
+                mOut.writeByte(TYPE_LONG);
+                mOut.writeLong(((Long) value).longValue());
+            } else if (value instanceof Double) {
+                mOut.writeByte(TYPE_DOUBLE);
+                mOut.writeDouble(((Double) value).doubleValue());
+            } else if (value == null || JsonNull.INSTANCE.equals(value)) {
+                mOut.writeByte(TYPE_NULL);
+            } else {
+                throw new IOException("unexpected value type: " + value.getClass().getName());
+            }
+        }
+
+        private void writeStringValue(String str) throws IOException {
+            Integer index = mIndexes.get(str);
+            if (index != null) {
+                mOut.writeByte(TYPE_STRING);
+                mOut.writeInt(index.intValue());
+            } else {
+                mIndexes.put(str, Integer.valueOf(mIndexes.size()));
+                mOut.writeByte(TYPE_NEW_STRING);
+                writeString(mOut, str);
+            }
+        }
+    }
+
+    /** Reads the tokens of a snapshot in place of JSON text. */
+    private static class SnapshotReader extends JsonReader {
+        private ByteBuffer   mBuffer;
+        private List<String> mStrings = new ArrayList<>();
+
+        SnapshotReader(ByteBuffer buffer) {
+            super(Reader.nullReader());
+            mBuffer = buffer;
+        }
+
+        @Override
+        public void setRecorder(Recorder recorder) {
+            throw new UnsupportedOperationException("snapshots are not recorded");
+        }
+
+        @Override
+        public Kind peek() throws IOException {
+            return switch (peekType()) {
+                case TYPE_MAP -> Kind.MAP;
+                case TYPE_ARRAY -> Kind.ARRAY;
+                case TYPE_STRING, TYPE_NEW_STRING -> Kind.STRING;
+                case TYPE_INT, TYPE_LONG, TYPE_DOUBLE -> Kind.NUMBER;
+                case TYPE_FALSE, TYPE_TRUE -> Kind.BOOLEAN;
+                case TYPE_NULL -> Kind.NULL;
+                default -> throw new IOException("expected a value in snapshot");
+            };
+        }
+
+        @Override
+        public boolean hasNext() throws IOException {
+            return peekType() != TYPE_END;
+        }
+
+        @Override
+        public void beginMap() throws IOException {
+            consume(TYPE_MAP);
+        }
+
+        @Override
+        public void endMap() throws IOException {
+            consume(TYPE_END);
+        }
+
+        @Override
+        public void beginArray() throws IOException {
+            consume(TYPE_ARRAY);
+        }
+
+        @Override
+        public void endArray() throws IOException {
+            consume(TYPE_END);
+        }
+
+        @Override
+        public String nextKey() throws IOException {
+            Object key = nextScalar();
+            if (key instanceof String) {
+                return (String) key;
+            }
+            throw new IOException("expected a key in snapshot");
+        }
+
+        @Override
+        public String nextString() throws IOException {
+            Object value = nextScalar();
+            return JsonNull.INSTANCE.equals(value) ? "" : value.toString();
+        }
+
+        @Override
+        public int nextInt() throws IOException {
+            return Json.asInt(nextScalar());
+        }
+
+        @Override
+        public long nextLong() throws IOException {
+            return Json.asLong(nextScalar());
+        }
+
+        @Override
+        public double nextDouble() throws IOException {
+            return Json.asDouble(nextScalar());
+        }
+
+        @Override
+        public boolean nextBoolean() throws IOException {
+            return Json.asBoolean(nextScalar());
+        }
+
+        @Override
+        public void skipValue() throws IOException {
+            switch (peek()) {
+            case MAP -> {
+                beginMap();
+                while (hasNext()) {
+                    nextKey();
+                    skipValue();
+                }
+                endMap();
+            }
+            case ARRAY -> {
+                beginArray();
+                while (hasNext()) {
+                    skipValue();
+                }
+                endArray();
+            }
+            default -> nextScalar();
+            }
+        }
+
+        @Override
+        public Object nextValue() throws IOException {
+            switch (peek()) {
+            case MAP -> {
+                JsonMap map = new JsonMap();
+                beginMap();
+                while (hasNext()) {
+                    String key = nextKey();
+                    map.put(key, nextValue());
+                }
+                endMap();
+                return map;
+            }
+            case ARRAY -> {
+                JsonArray array = new JsonArray();
+                beginArray();
+                while (hasNext()) {
+                    array.put(nextValue());
+                }
+                endArray();
+                return array;
+            }
+            default -> {
+                return nextScalar();
+            }
+            }
+        }
+
+        @Override
+        public void close() {
+            mBuffer = null;
+        }
+
+        private byte peekType() throws IOException {
+            if (!mBuffer.hasRemaining()) {
+                throw new IOException("unexpected end of snapshot");
+            }
+            return mBuffer.get(mBuffer.position());
+        }
+
+        private void consume(byte type) throws IOException {
+            if (peekType() != type) {
+                throw new IOException("invalid snapshot structure");
+            }
+            mBuffer.get();
+        }
+
+        private Object nextScalar() throws IOException {
+            byte type = peekType();
+            mBuffer.get();
+            switch (type) {
+            case TYPE_NULL:
+                return JsonNull.INSTANCE;
+            case TYPE_FALSE:
+                return Boolean.FALSE;
+            case TYPE_TRUE:
+                return Boolean.TRUE;
+            case TYPE_INT:
+                return Integer.valueOf(mBuffer.getInt());
+            case TYPE_LONG:
+                return Long.valueOf(mBuffer.getLong());
+            case TYPE_DOUBLE:
+                return Double.valueOf(mBuffer.getDouble());
+            case TYPE_STRING:
+                return mStrings.get(mBuffer.getInt());
+            case TYPE_NEW_STRING:
+                String str = readString(mBuffer);
+                mStrings.add(str);
+                return str;
+            default:
+                throw new IOException("invalid snapshot value type: " + type);
+            }
+        }
+    }
+}
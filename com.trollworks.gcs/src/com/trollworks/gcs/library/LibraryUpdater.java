@@ -78,6 +78,32 @@ public class LibraryUpdater implements Runnable {
         }
     }
 
+    /**
+     * Collects the files within a single directory of a library, updating the watched directories
+     * for that part of the tree only.
+     *
+     * @param name The name to give the directory in the results.
+     * @param dir  The directory to scan.
+     * @return The directory's contents, in the same form as an entry from {@link #collectFiles()}.
+     */
+    public static List<Object> collectFiles(String name, Path dir) {
+        FutureTask<List<Object>> task = new FutureTask<>(() -> {
+            Set<Path>    dirs = new HashSet<>();
+            List<Object> list = LibraryCollector.list(name, dir, dirs);
+            LibraryWatcher.INSTANCE.watchDirs(dir, dirs);
+            return list;
+        });
+        QUEUE.submit(task);
+        try {
+            return task.get();
+        } catch (Exception exception) {
+            Log.error(exception);
+            List<Object> list = new ArrayList<>();
+            list.add(name);
+            return list;
+        }
+    }
+
     public static final void download(Library library, Release release) {
         LibraryUpdater lib = new LibraryUpdater(library, release);
         if (GraphicsEnvironment.isHeadless()) {
@@ -15,22 +15,39 @@ import com.trollworks.gcs.utility.Log;
 
 import java.io.IOException;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import javax.swing.SwingUtilities;
 
+/**
+ * Watches the library directories for changes. Events are coalesced until the file system has been
+ * quiet for a short period, so that bursts of changes (e.g. unzipping or syncing a library) result
+ * in a single update of just the directories that actually changed.
+ */
 public class LibraryWatcher implements Runnable {
-    public static final LibraryWatcher      INSTANCE = new LibraryWatcher();
-    private             WatchService        mWatcher;
-    private             Map<Path, WatchKey> mPathKeyMap;
+    public static final  LibraryWatcher            INSTANCE         = new LibraryWatcher();
+    private static final long                      QUIET_MILLIS     = 250;
+    private static final long                      MAX_DELAY_MILLIS = 2000;
+    private              WatchService              mWatcher;
+    private              Map<Path, WatchKey>       mPathKeyMap;
+    private              List<Consumer<Set<Path>>> mModificationListeners;
 
     private LibraryWatcher() {
         mPathKeyMap = new HashMap<>();
+        mModificationListeners = new CopyOnWriteArrayList<>();
         try {
             mWatcher = FileSystems.getDefault().newWatchService();
             Thread thread = new Thread(this, "Library Watcher");
@@ -41,52 +58,98 @@ public class LibraryWatcher implements Runnable {
         }
     }
 
+    /**
+     * @param listener A listener that will be called on the event dispatch thread with the set of
+     *                 files that were created, deleted or modified.
+     */
+    public void addModificationListener(Consumer<Set<Path>> listener) {
+        mModificationListeners.add(listener);
+    }
+
+    /** @param listener The listener to remove. */
+    public void removeModificationListener(Consumer<Set<Path>> listener) {
+        mModificationListeners.remove(listener);
+    }
+
     public void run() {
         if (mWatcher == null) {
             return;
         }
         while (true) {
-            WatchKey key;
+            Set<Path> changedDirs   = new HashSet<>();
+            Set<Path> modifiedFiles = new HashSet<>();
+            boolean   overflow;
             try {
-                key = mWatcher.take();
-                key.pollEvents();
-                key.reset();
+                overflow = process(mWatcher.take(), changedDirs, modifiedFiles);
+                long deadline = System.currentTimeMillis() + MAX_DELAY_MILLIS;
                 while (true) {
-                    key = mWatcher.poll();
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    WatchKey key = mWatcher.poll(Math.min(QUIET_MILLIS, remaining), TimeUnit.MILLISECONDS);
                     if (key == null) {
                         break;
                     }
-                    key.pollEvents();
-                    key.reset();
+                    overflow |= process(key, changedDirs, modifiedFiles);
                 }
             } catch (InterruptedException iex) {
                 return;
             }
-            SwingUtilities.invokeLater(() -> {
-                LibraryExplorerDockable explorer = LibraryExplorerDockable.get();
-                if (explorer != null) {
-                    explorer.refresh();
+            Set<Path> dirs = overflow ? null : changedDirs;
+            if (overflow || !changedDirs.isEmpty() || !modifiedFiles.isEmpty()) {
+                SwingUtilities.invokeLater(() -> {
+                    if (!modifiedFiles.isEmpty()) {
+                        for (Consumer<Set<Path>> listener : mModificationListeners) {
+                            listener.accept(modifiedFiles);
+                        }
+                    }
+                    if (dirs == null || !dirs.isEmpty()) {
+                        LibraryExplorerDockable explorer = LibraryExplorerDockable.get();
+                        if (explorer != null) {
+                            explorer.refresh(dirs);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private static boolean process(WatchKey key, Set<Path> changedDirs, Set<Path> modifiedFiles) {
+        boolean overflow = false;
+        Path    dir      = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            WatchEvent.Kind<?> kind = event.kind();
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else {
+                Path path = dir.resolve((Path) event.context());
+                if (kind != StandardWatchEventKinds.ENTRY_MODIFY) {
+                    changedDirs.add(dir);
                 }
-            });
+                // Directories report modification when their contents change, which is already
+                // covered by the events for the contents themselves.
+                if (!Files.isDirectory(path)) {
+                    modifiedFiles.add(path);
+                }
+            }
         }
+        key.reset();
+        return overflow;
     }
 
-    public void watchDirs(Set<Path> dirs) {
+    public synchronized void watchDirs(Set<Path> dirs) {
         if (mWatcher == null) {
             return;
         }
         Map<Path, WatchKey> keep = new HashMap<>();
         for (Path p : dirs) {
-            WatchKey key = mPathKeyMap.get(p);
+            WatchKey key = mPathKeyMap.remove(p);
             if (key == null) {
-                try {
-                    keep.put(p, p.register(mWatcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE));
-                } catch (IOException exception) {
-                    Log.error(exception);
-                }
-            } else {
+                key = register(p);
+            }
+            if (key != null) {
                 keep.put(p, key);
-                mPathKeyMap.remove(p);
             }
         }
         for (WatchKey watchKey : mPathKeyMap.values()) {
@@ -94,4 +157,42 @@ public class LibraryWatcher implements Runnable {
         }
         mPathKeyMap = keep;
     }
+
+    /**
+     * Replaces the set of watched directories at or below a given directory, leaving the others
+     * alone.
+     *
+     * @param root The directory whose subtree was re-scanned.
+     * @param dirs The directories now present within the subtree.
+     */
+    public synchronized void watchDirs(Path root, Set<Path> dirs) {
+        if (mWatcher == null) {
+            return;
+        }
+        Iterator<Map.Entry<Path, WatchKey>> iterator = mPathKeyMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, WatchKey> entry = iterator.next();
+            if (entry.getKey().startsWith(root) && !dirs.contains(entry.getKey())) {
+                entry.getValue().cancel();
+                iterator.remove();
+            }
+        }
+        for (Path p : dirs) {
+            if (!mPathKeyMap.containsKey(p)) {
+                WatchKey key = register(p);
+                if (key != null) {
+                    mPathKeyMap.put(p, key);
+                }
+            }
+        }
+    }
+
+    private WatchKey register(Path dir) {
+        try {
+            return dir.register(mWatcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException exception) {
+            Log.error(exception);
+            return null;
+        }
+    }
 }
@@ -119,7 +119,7 @@ public class ExportToGURPSCalculatorCommand extends Command {
                                 image.delete();
                             }
                             try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-                                try (JsonWriter w = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), "\t")) {
+                                try (JsonWriter w = new JsonWriter(out, "\t")) {
                                     character.save(w, SaveType.NORMAL, false);
                                 }
                                 path = String.format("api/SaveCharacterRawFileGCS/%s/%s", id, key);
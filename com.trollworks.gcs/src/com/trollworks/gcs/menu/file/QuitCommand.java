@@ -11,6 +11,7 @@
 
 package com.trollworks.gcs.menu.file;
 
+import com.trollworks.gcs.datafile.DataFile;
 import com.trollworks.gcs.menu.Command;
 import com.trollworks.gcs.preferences.Preferences;
 import com.trollworks.gcs.ui.UIUtilities;
@@ -82,6 +83,7 @@ public class QuitCommand extends Command implements QuitHandler {
         } catch (Exception exception) {
             Log.error(exception);
         }
+        DataFile.waitForPendingSaves();
     }
 
     private static boolean closeFrames(boolean significant) {
@@ -45,7 +45,28 @@ public class SaveCommand extends Command {
 
     @Override
     public void actionPerformed(ActionEvent event) {
-        save(getTarget(Saveable.class));
+        saveInBackground(getTarget(Saveable.class));
+    }
+
+    /**
+     * Saves the file without blocking the user interface, if it already has a backing file.
+     * Otherwise, the user is asked where to save it, as with {@link #save(Saveable)}.
+     *
+     * @param saveable The {@link Saveable} to work on.
+     */
+    public static void saveInBackground(Saveable saveable) {
+        if (saveable != null) {
+            Path path = saveable.getBackingFile();
+            if (path != null) {
+                saveable.saveToInBackground(path, paths -> {
+                    for (Path one : paths) {
+                        Preferences.getInstance().addRecentFile(one);
+                    }
+                });
+            } else {
+                SaveAsCommand.saveAs(saveable);
+            }
+        }
     }
 
     /**
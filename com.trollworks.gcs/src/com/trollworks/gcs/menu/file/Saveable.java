@@ -16,6 +16,7 @@ import com.trollworks.gcs.utility.FileProxy;
 import com.trollworks.gcs.utility.FileType;
 
 import java.nio.file.Path;
+import java.util.function.Consumer;
 
 /**
  * Windows that want to participate in the standard {@link SaveCommand} and {@link SaveAsCommand}
@@ -44,4 +45,20 @@ public interface Saveable extends FileProxy {
      * @return The path(s) actually written to.
      */
     Path[] saveTo(Path path);
+
+    /**
+     * Called to save the contents to a path without blocking the caller, where supported. By
+     * default, this just calls {@link #saveTo(Path)}.
+     *
+     * @param path         The path to save to.
+     * @param onCompletion Called on the event dispatch thread with the path(s) actually written to.
+     */
+    default void saveToInBackground(Path path, Consumer<Path[]> onCompletion) {
+        onCompletion.accept(saveTo(path));
+    }
+
+    /** @return Whether a save started by {@link #saveToInBackground(Path, Consumer)} is running. */
+    default boolean isSaving() {
+        return false;
+    }
 }
@@ -43,7 +43,7 @@ public class UpdateCommand extends Command {
                 DataUpdater du      = new DataUpdater();
                 long        elapsed = System.currentTimeMillis() - start;
                 System.out.println(elapsed + "ms");
-                System.out.println(du.updatables.size() + " loaded objects");
+                System.out.println(du.locations.size() + " known objects");
                 System.out.println("ignored:");
                 List<Path> keys = new ArrayList<>(du.ignoreMap.keySet());
                 Collections.sort(keys);
@@ -284,7 +284,7 @@ public class AdvantageModifier extends Modifier {
     }
 
     @Override
-    public String getDataAsText(Column column) {
+    protected String computeDataAsText(Column column) {
         return AdvantageModifierColumnID.values()[column.getID()].getDataAsText(this);
     }
 
@@ -234,7 +234,7 @@ public class EquipmentModifier extends Modifier {
     }
 
     @Override
-    public String getDataAsText(Column column) {
+    protected String computeDataAsText(Column column) {
         return EquipmentModifierColumnID.values()[column.getID()].getDataAsText(this);
     }
 
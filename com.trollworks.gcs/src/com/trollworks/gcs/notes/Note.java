@@ -27,6 +27,7 @@ import com.trollworks.gcs.utility.json.JsonMap;
 import com.trollworks.gcs.utility.json.JsonWriter;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -173,11 +174,9 @@ public class Note extends ListRow implements HasSourceReference {
     }
 
     @Override
-    public boolean contains(String text, boolean lowerCaseOnly) {
-        if (getDescription().toLowerCase().contains(text)) {
-            return true;
-        }
-        return super.contains(text, lowerCaseOnly);
+    protected void fillWithSearchableText(List<String> text) {
+        text.add(getDescription());
+        super.fillWithSearchableText(text);
     }
 
     @Override
@@ -186,7 +185,7 @@ public class Note extends ListRow implements HasSourceReference {
     }
 
     @Override
-    public String getDataAsText(Column column) {
+    protected String computeDataAsText(Column column) {
         return NoteColumn.values()[column.getID()].getDataAsText(this);
     }
 
@@ -16,6 +16,7 @@ import com.trollworks.gcs.datafile.ListFile;
 import com.trollworks.gcs.datafile.LoadState;
 import com.trollworks.gcs.ui.RetinaIcon;
 import com.trollworks.gcs.ui.image.Images;
+import com.trollworks.gcs.ui.widget.outline.ListRow;
 import com.trollworks.gcs.ui.widget.outline.OutlineModel;
 import com.trollworks.gcs.utility.FileType;
 import com.trollworks.gcs.utility.Log;
@@ -51,20 +52,26 @@ public class NoteList extends ListFile {
     }
 
     @Override
-    protected void loadList(JsonArray a, LoadState state) throws IOException {
-        loadIntoModel(this, a, getModel(), state);
+    protected ListRow createRow(JsonMap m, LoadState state) throws IOException {
+        return createRow(this, m, state);
     }
 
     public static void loadIntoModel(DataFile file, JsonArray a, OutlineModel model, LoadState state) throws IOException {
         int count = a.size();
         for (int i = 0; i < count; i++) {
-            JsonMap m1   = a.getMap(i);
-            String  type = m1.getString(DataFile.KEY_TYPE);
-            if (Note.TAG_NOTE.equals(type) || Note.TAG_NOTE_CONTAINER.equals(type)) {
-                model.addRow(new Note(file, m1, state), true);
-            } else {
-                Log.warn("invalid note type: " + type);
+            ListRow row = createRow(file, a.getMap(i), state);
+            if (row != null) {
+                model.addRow(row, true);
             }
         }
     }
+
+    private static ListRow createRow(DataFile file, JsonMap m, LoadState state) throws IOException {
+        String type = m.getString(DataFile.KEY_TYPE);
+        if (Note.TAG_NOTE.equals(type) || Note.TAG_NOTE_CONTAINER.equals(type)) {
+            return new Note(file, m, state);
+        }
+        Log.warn("invalid note type: " + type);
+        return null;
+    }
 }
@@ -11,6 +11,7 @@
 
 package com.trollworks.gcs.pdfview;
 
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 import com.trollworks.gcs.utility.PathUtils;
@@ -27,15 +28,27 @@ import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class PDFServer {
     private static       HttpServer          SERVER;
@@ -43,6 +56,8 @@ public final class PDFServer {
     private static final Instant             RESOURCE_LAST_MODIFIED = Instant.now();
     private static final Map<String, byte[]> CACHE                  = new HashMap<>();
     private static       int                 PORT;
+    private static final int                 MAX_THREADS            = 4;
+    private static final int                 MAX_QUEUED_REQUESTS    = 64;
 
     private PDFServer() {
     }
@@ -51,6 +66,7 @@ public final class PDFServer {
         if (SERVER == null) {
             HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
             server.createContext("/", PDFServer::handleRequest);
+            server.setExecutor(createExecutor());
             server.start();
             SERVER = server;
             PORT = server.getAddress().getPort();
@@ -100,20 +116,7 @@ public final class PDFServer {
                     notFound(httpExchange);
                     return;
                 }
-                int expiresInSeconds = 12 * 60 * 60; // 12 hours
-                httpExchange.getResponseHeaders().add("Content-Type", contentType);
-                httpExchange.getResponseHeaders().add("Content-Length", Long.toString(size));
-                httpExchange.getResponseHeaders().add("Last-Modified", DATE_TIME_FORMATTER.format(instant));
-                httpExchange.getResponseHeaders().add("Expires", DATE_TIME_FORMATTER.format(Instant.now().plusSeconds(expiresInSeconds)));
-                httpExchange.getResponseHeaders().add("Cache-Control", "max-age=" + expiresInSeconds);
-                httpExchange.sendResponseHeaders(200, size);
-                if ("HEAD".equals(httpExchange.getRequestMethod())) {
-                    httpExchange.getResponseBody().close();
-                } else {
-                    try (OutputStream out = httpExchange.getResponseBody()) {
-                        Files.copy(p, out);
-                    }
-                }
+                servePDF(httpExchange, p, size, instant);
                 return;
             }
             String path = p.toString();
@@ -140,6 +143,10 @@ public final class PDFServer {
                 notFound(httpExchange);
                 return;
             }
+            if (isNotModified(httpExchange, null, RESOURCE_LAST_MODIFIED)) {
+                respondWithoutBody(httpExchange, 304);
+                return;
+            }
             int expiresInSeconds = 12 * 60 * 60; // 12 hours
             httpExchange.getResponseHeaders().add("Content-Type", contentType);
             httpExchange.getResponseHeaders().add("Content-Length", Integer.toString(data.length));
@@ -159,6 +166,169 @@ public final class PDFServer {
         }
     }
 
+    /**
+     * @return An executor with a bounded number of threads and a bounded queue. When both are
+     *         full, the server's dispatch thread handles the request itself, which slows down the
+     *         acceptance of new connections rather than dropping them.
+     */
+    private static ExecutorService createExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_QUEUED_REQUESTS), runnable -> {
+            Thread thread = new Thread(runnable, "PDF Server #" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static void servePDF(HttpExchange httpExchange, Path path, long size, Instant instant) throws IOException {
+        String  etag             = "\"" + Long.toHexString(size) + "-" + Long.toHexString(instant.toEpochMilli()) + "\"";
+        int     expiresInSeconds = 12 * 60 * 60; // 12 hours
+        Headers headers          = httpExchange.getResponseHeaders();
+        headers.add("Accept-Ranges", "bytes");
+        headers.add("ETag", etag);
+        headers.add("Last-Modified", DATE_TIME_FORMATTER.format(instant));
+        headers.add("Expires", DATE_TIME_FORMATTER.format(Instant.now().plusSeconds(expiresInSeconds)));
+        headers.add("Cache-Control", "max-age=" + expiresInSeconds);
+        if (isNotModified(httpExchange, etag, instant)) {
+            respondWithoutBody(httpExchange, 304);
+            return;
+        }
+        long   start = 0;
+        long   end   = size - 1;
+        int    code  = 200;
+        String range = httpExchange.getRequestHeaders().getFirst("Range");
+        if (range != null && isIfRangeSatisfied(httpExchange, etag, instant)) {
+            long[] bounds = parseRange(range, size);
+            if (bounds != null) {
+                if (bounds.length == 0) {
+                    headers.add("Content-Range", "bytes */" + size);
+                    respondWithoutBody(httpExchange, 416);
+                    return;
+                }
+                start = bounds[0];
+                end = bounds[1];
+                code = 206;
+                headers.add("Content-Range", "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+        long length = end - start + 1;
+        headers.add("Content-Type", "application/pdf");
+        headers.add("Content-Length", Long.toString(length));
+        if ("HEAD".equals(httpExchange.getRequestMethod()) || length == 0) {
+            respondWithoutBody(httpExchange, code);
+            return;
+        }
+        httpExchange.sendResponseHeaders(code, length);
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ); OutputStream out = httpExchange.getResponseBody()) {
+            WritableByteChannel channel = Channels.newChannel(out);
+            while (length > 0) {
+                long count = in.transferTo(start, length, channel);
+                if (count <= 0) {
+                    // The file was truncated out from under us
+                    break;
+                }
+                start += count;
+                length -= count;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the client's cached copy is still valid. An {@code If-None-Match}
+     *         header takes precedence over an {@code If-Modified-Since} header.
+     */
+    private static boolean isNotModified(HttpExchange httpExchange, String etag, Instant instant) {
+        Headers requestHeaders = httpExchange.getRequestHeaders();
+        String  ifNoneMatch    = requestHeaders.getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            return etag != null && matchesETag(ifNoneMatch, etag);
+        }
+        Instant since = parseDate(requestHeaders.getFirst("If-Modified-Since"));
+        return since != null && !instant.truncatedTo(ChronoUnit.SECONDS).isAfter(since);
+    }
+
+    /** @return {@code true} if the {@code Range} header should be honored. */
+    private static boolean isIfRangeSatisfied(HttpExchange httpExchange, String etag, Instant instant) {
+        String ifRange = httpExchange.getRequestHeaders().getFirst("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        Instant date = parseDate(ifRange);
+        return date != null && instant.truncatedTo(ChronoUnit.SECONDS).equals(date);
+    }
+
+    private static boolean matchesETag(String header, String etag) {
+        for (String one : header.split(",")) {
+            one = one.trim();
+            if (one.startsWith("W/")) {
+                one = one.substring(2);
+            }
+            if ("*".equals(one) || one.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Instant parseDate(String value) {
+        if (value != null) {
+            try {
+                return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            } catch (DateTimeParseException exception) {
+                // Ignore malformed dates, as if they weren't present
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses a {@code Range} header. Only a single byte range is supported; requests for multiple
+     * ranges are answered with the whole file, which the specification permits.
+     *
+     * @return The first and last byte positions, an empty array if the range can't be satisfied,
+     *         or {@code null} if the header should be ignored.
+     */
+    private static long[] parseRange(String header, long size) {
+        header = header.trim();
+        if (!header.startsWith("bytes=") || header.indexOf(',') != -1) {
+            return null;
+        }
+        String spec = header.substring(6).trim();
+        int    dash = spec.indexOf('-');
+        if (dash == -1) {
+            return null;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1).trim());
+                if (suffix <= 0) {
+                    return new long[0];
+                }
+                start = Math.max(size - suffix, 0);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash).trim());
+                String last = spec.substring(dash + 1).trim();
+                end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+                if (end < start) {
+                    return start < size && !last.isEmpty() ? null : new long[0];
+                }
+            }
+            if (start >= size) {
+                return new long[0];
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException exception) {
+            return null;
+        }
+    }
+
     private static String encodeQueryParam(String str) {
         StringBuilder buffer = new StringBuilder();
         byte[]        bytes  = str.getBytes(StandardCharsets.UTF_8);
@@ -218,4 +388,9 @@ public final class PDFServer {
             }
         }
     }
+
+    private static void respondWithoutBody(HttpExchange httpExchange, int code) throws IOException {
+        httpExchange.sendResponseHeaders(code, -1);
+        httpExchange.close();
+    }
 }
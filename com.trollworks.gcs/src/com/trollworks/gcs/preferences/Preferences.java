@@ -33,15 +33,14 @@ import com.trollworks.gcs.utility.json.JsonArray;
 import com.trollworks.gcs.utility.json.JsonMap;
 import com.trollworks.gcs.utility.json.JsonWriter;
 import com.trollworks.gcs.utility.notification.Notifier;
+import com.trollworks.gcs.utility.notification.NotifierTarget;
 import com.trollworks.gcs.utility.text.Enums;
 import com.trollworks.gcs.utility.units.LengthUnits;
 import com.trollworks.gcs.utility.units.WeightUnits;
 
 import java.awt.GraphicsEnvironment;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -155,6 +154,7 @@ public class Preferences {
 
     private static Preferences                      INSTANCE;
     private        Notifier                         mNotifier;
+    private        long                             mDisplayGeneration;
     private        UUID                             mID;
     private        Version                          mLastSeenGCSVersion;
     private        int                              mInitialPoints;
@@ -217,6 +217,17 @@ public class Preferences {
 
     private Preferences() {
         mNotifier = new Notifier();
+        mNotifier.add(new NotifierTarget() {
+            @Override
+            public int getNotificationPriority() {
+                return Integer.MAX_VALUE;
+            }
+
+            @Override
+            public void handleNotification(Object producer, String name, Object data) {
+                mDisplayGeneration++;
+            }
+        }, KEY_PREFIX);
         mID = UUID.randomUUID();
         mLastSeenGCSVersion = new Version(GCS.VERSION);
         Library.LIBRARIES.clear();
@@ -400,6 +411,14 @@ public class Preferences {
         return mNotifier;
     }
 
+    /**
+     * @return The display generation, which changes whenever a preference that may alter the values
+     *         displayed by rows has changed.
+     */
+    public long getDisplayGeneration() {
+        return mDisplayGeneration;
+    }
+
     public void startBatch() {
         mNotifier.startBatch();
     }
@@ -416,7 +435,7 @@ public class Preferences {
                 Path path = getPreferencesPath();
                 Files.createDirectories(path.getParent());
                 File file = trans.getTransactionFile(path.toFile());
-                try (JsonWriter w = new JsonWriter(new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8)), "\t")) {
+                try (JsonWriter w = new JsonWriter(Files.newOutputStream(file.toPath()), "\t")) {
                     w.startMap();
                     w.keyValue(VERSION, CURRENT_VERSION);
                     w.keyValue(ID, mID.toString());
@@ -103,8 +103,9 @@ public class AdvantagePrereq extends NameLevelPrereq {
         StringCriteria  nameCriteria  = getNameCriteria();
         IntegerCriteria levelCriteria = getLevelCriteria();
 
-        for (Advantage advantage : character.getAdvantagesIterator(false)) {
-            if (exclude != advantage && nameCriteria.matches(advantage.getName())) {
+        Iterable<Advantage> advantages = nameCriteria.isTypeIs() ? character.getAdvantagesNamed(nameCriteria.getQualifier()) : character.getAdvantagesIterator(false);
+        for (Advantage advantage : advantages) {
+            if (exclude != advantage && advantage.isEnabled() && nameCriteria.matches(advantage.getName())) {
                 String notes         = advantage.getNotes();
                 String modifierNotes = advantage.getModifierNotes();
 
@@ -134,6 +135,12 @@ public class AdvantagePrereq extends NameLevelPrereq {
         return satisfied;
     }
 
+    @Override
+    public void fillWithDependencies(Set<String> set) {
+        StringCriteria nameCriteria = getNameCriteria();
+        set.add(getDependencyKey(DEPENDS_ON_ADVANTAGE, nameCriteria.isTypeIs() ? nameCriteria.getQualifier() : null));
+    }
+
     @Override
     public void fillWithNameableKeys(Set<String> set) {
         super.fillWithNameableKeys(set);
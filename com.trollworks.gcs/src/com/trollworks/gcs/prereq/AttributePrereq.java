@@ -24,6 +24,7 @@ import com.trollworks.gcs.utility.text.Enums;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Set;
 
 /** A Attribute prerequisite. */
 public class AttributePrereq extends HasPrereq {
@@ -154,6 +155,11 @@ public class AttributePrereq extends HasPrereq {
         return mValueCompare;
     }
 
+    @Override
+    public void fillWithDependencies(Set<String> set) {
+        set.add(DEPENDS_ON_ATTRIBUTES);
+    }
+
     @Override
     public boolean satisfied(GURPSCharacter character, ListRow exclude, StringBuilder builder, String prefix) {
         boolean satisfied = mValueCompare.matches(getAttributeValue(character, mWhich) + getAttributeValue(character, mCombinedWith));
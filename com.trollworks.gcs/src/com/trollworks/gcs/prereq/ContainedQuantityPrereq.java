@@ -24,6 +24,7 @@ import com.trollworks.gcs.utility.json.JsonWriter;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Set;
 
 /** An equipment contained quantity prerequisite. */
 public class ContainedQuantityPrereq extends HasPrereq {
@@ -102,6 +103,11 @@ public class ContainedQuantityPrereq extends HasPrereq {
         return mQuantityCompare;
     }
 
+    @Override
+    public void fillWithDependencies(Set<String> set) {
+        set.add(DEPENDS_ON_CONTAINED);
+    }
+
     @Override
     public boolean satisfied(GURPSCharacter character, ListRow exclude, StringBuilder builder, String prefix) {
         boolean satisfied = false;
@@ -26,6 +26,7 @@ import com.trollworks.gcs.utility.units.WeightValue;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Set;
 
 /** An equipment contained weight prerequisite. */
 public class ContainedWeightPrereq extends HasPrereq {
@@ -104,6 +105,11 @@ public class ContainedWeightPrereq extends HasPrereq {
         return mWeightCompare;
     }
 
+    @Override
+    public void fillWithDependencies(Set<String> set) {
+        set.add(DEPENDS_ON_CONTAINED);
+    }
+
     @Override
     public boolean satisfied(GURPSCharacter character, ListRow exclude, StringBuilder builder, String prefix) {
         boolean satisfied = false;
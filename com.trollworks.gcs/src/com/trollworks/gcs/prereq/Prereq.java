@@ -24,8 +24,20 @@ import java.util.Set;
 
 /** The abstract base class prerequisite criteria and prerequisite lists. */
 public abstract class Prereq {
+    /** The dependency key for the character's attributes. */
+    public static final String     DEPENDS_ON_ATTRIBUTES = "attributes";
+    /** The dependency key for the character's tech level. */
+    public static final String     DEPENDS_ON_TECH_LEVEL = "tech_level";
+    /** The dependency key for the contents of the row being checked. */
+    public static final String     DEPENDS_ON_CONTAINED  = "contained";
+    /** The dependency category for advantages. */
+    public static final String     DEPENDS_ON_ADVANTAGE  = "advantage";
+    /** The dependency category for skills. */
+    public static final String     DEPENDS_ON_SKILL      = "skill";
+    /** The dependency category for spells. */
+    public static final String     DEPENDS_ON_SPELL      = "spell";
     /** The owning prerequisite list, if any. */
-    protected PrereqList mParent;
+    protected          PrereqList mParent;
 
     /**
      * Creates a new prerequisite.
@@ -96,6 +108,27 @@ public abstract class Prereq {
      */
     public abstract Prereq clone(PrereqList parent);
 
+    /**
+     * @param category One of the {@code DEPENDS_ON_*} categories, such as {@link
+     *                 #DEPENDS_ON_SKILL}.
+     * @param name     The name of the row being depended upon, or {@code null} for any row in the
+     *                 category.
+     * @return The dependency key.
+     */
+    public static String getDependencyKey(String category, String name) {
+        return category + ':' + (name != null ? name.toLowerCase() : "*");
+    }
+
+    /**
+     * Fills the set with the keys of the data this prerequisite reads when being checked, so that
+     * it only needs to be re-checked when some of that data changes.
+     *
+     * @param set The dependency keys.
+     */
+    public void fillWithDependencies(Set<String> set) {
+        // Do nothing by default
+    }
+
     /** @param set The nameable keys. */
     public void fillWithNameableKeys(Set<String> set) {
         // Do nothing by default
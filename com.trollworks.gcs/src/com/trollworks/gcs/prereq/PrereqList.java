@@ -265,6 +265,16 @@ public class PrereqList extends Prereq {
         return new PrereqList(parent, this);
     }
 
+    @Override
+    public void fillWithDependencies(Set<String> set) {
+        if (isWhenTLEnabled(mWhenTLCriteria)) {
+            set.add(DEPENDS_ON_TECH_LEVEL);
+        }
+        for (Prereq prereq : mPrereqs) {
+            prereq.fillWithDependencies(set);
+        }
+    }
+
     @Override
     public void fillWithNameableKeys(Set<String> set) {
         for (Prereq prereq : mPrereqs) {
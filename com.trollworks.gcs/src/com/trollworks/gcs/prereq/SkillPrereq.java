@@ -108,7 +108,8 @@ public class SkillPrereq extends NameLevelPrereq {
             techLevel = ((Skill) exclude).getTechLevel();
         }
 
-        for (Skill skill : character.getSkillsIterator()) {
+        Iterable<Skill> skills = nameCriteria.isTypeIs() ? character.getSkillsNamed(nameCriteria.getQualifier()) : character.getSkillsIterator();
+        for (Skill skill : skills) {
             if (exclude != skill && nameCriteria.matches(skill.getName()) && mSpecializationCriteria.matches(skill.getSpecialization())) {
                 satisfied = levelCriteria.matches(skill.getLevel());
                 if (satisfied && techLevel != null) {
@@ -141,6 +142,12 @@ public class SkillPrereq extends NameLevelPrereq {
         return satisfied;
     }
 
+    @Override
+    public void fillWithDependencies(Set<String> set) {
+        StringCriteria nameCriteria = getNameCriteria();
+        set.add(getDependencyKey(DEPENDS_ON_SKILL, nameCriteria.isTypeIs() ? nameCriteria.getQualifier() : null));
+    }
+
     @Override
     public void fillWithNameableKeys(Set<String> set) {
         super.fillWithNameableKeys(set);
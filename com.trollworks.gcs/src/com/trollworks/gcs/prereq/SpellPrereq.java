@@ -169,7 +169,8 @@ public class SpellPrereq extends HasPrereq {
             techLevel = ((Spell) exclude).getTechLevel();
         }
 
-        for (Spell spell : character.getSpellsIterator()) {
+        Iterable<Spell> spells = TAG_NAME.equals(mType) && mStringCriteria.isTypeIs() ? character.getSpellsNamed(mStringCriteria.getQualifier()) : character.getSpellsIterator();
+        for (Spell spell : spells) {
             if (exclude != spell && spell.getPoints() > 0) {
                 boolean ok;
 
@@ -222,6 +223,11 @@ public class SpellPrereq extends HasPrereq {
         return satisfied;
     }
 
+    @Override
+    public void fillWithDependencies(Set<String> set) {
+        set.add(getDependencyKey(DEPENDS_ON_SPELL, TAG_NAME.equals(mType) && mStringCriteria.isTypeIs() ? mStringCriteria.getQualifier() : null));
+    }
+
     @Override
     public void fillWithNameableKeys(Set<String> set) {
         if (!Objects.equals(mType, TAG_COLLEGE_COUNT)) {
@@ -479,8 +479,14 @@ public class Skill extends ListRow implements HasSourceReference {
      * @param notify Whether or not a notification should be issued on a change.
      */
     public void updateLevel(boolean notify) {
-        SkillLevel savedLevel = mLevel;
+        SkillLevel     savedLevel = mLevel;
+        GURPSCharacter character  = getCharacter();
         mLevel = calculateLevelSelf();
+        if (character != null) {
+            // The default we use may have changed, so any level resolved for us so far in the
+            // current pass may no longer be accurate.
+            character.getSkillLevelCache().invalidate(this);
+        }
         if (notify) {
             startNotify();
             if (savedLevel.isDifferentLevelThan(mLevel)) {
@@ -504,7 +510,17 @@ public class Skill extends ListRow implements HasSourceReference {
      * @return The calculated level.
      */
     public int getLevel(Set<String> excludes) {
-        return calculateLevel(getCharacter(), getName(), getSpecialization(), getCategories(), getDefaults(), getAttribute(), getDifficulty(), getPoints(), excludes, getEncumbrancePenaltyMultiplier()).mLevel;
+        GURPSCharacter character = getCharacter();
+        if (character == null) {
+            return calculateLevel(null, getName(), getSpecialization(), getCategories(), getDefaults(), getAttribute(), getDifficulty(), getPoints(), excludes, getEncumbrancePenaltyMultiplier()).mLevel;
+        }
+        SkillLevelCache cache = character.getSkillLevelCache();
+        Integer         level = cache.get(this, excludes);
+        if (level == null) {
+            level = Integer.valueOf(calculateLevel(character, getName(), getSpecialization(), getCategories(), getDefaults(), getAttribute(), getDifficulty(), getPoints(), excludes, getEncumbrancePenaltyMultiplier()).mLevel);
+            cache.put(this, excludes, level.intValue());
+        }
+        return level.intValue();
     }
 
     /** @return The attribute. */
@@ -575,14 +591,10 @@ public class Skill extends ListRow implements HasSourceReference {
     }
 
     @Override
-    public boolean contains(String text, boolean lowerCaseOnly) {
-        if (getName().toLowerCase().contains(text)) {
-            return true;
-        }
-        if (getSpecialization().toLowerCase().contains(text)) {
-            return true;
-        }
-        return super.contains(text, lowerCaseOnly);
+    protected void fillWithSearchableText(List<String> text) {
+        text.add(getName());
+        text.add(getSpecialization());
+        super.fillWithSearchableText(text);
     }
 
     @Override
@@ -591,7 +603,7 @@ public class Skill extends ListRow implements HasSourceReference {
     }
 
     @Override
-    public String getDataAsText(Column column) {
+    protected String computeDataAsText(Column column) {
         return SkillColumn.values()[column.getID()].getDataAsText(this);
     }
 
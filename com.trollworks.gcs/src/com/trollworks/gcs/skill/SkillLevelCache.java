@@ -0,0 +1,80 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.skill;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers the levels resolved for {@link Skill}s while a recalculation pass is in progress, so
+ * that default chains are only walked once per skill and exclude set. Outside of a pass, nothing
+ * is cached.
+ */
+public class SkillLevelCache {
+    private Map<Skill, Map<Set<String>, Integer>> mLevels = new HashMap<>();
+    private int                                   mPassDepth;
+
+    /**
+     * Starts a recalculation pass. Passes may nest, in which case any levels cached so far are
+     * discarded, since a nested pass means the underlying data has changed.
+     */
+    public void startPass() {
+        mPassDepth++;
+        mLevels.clear();
+    }
+
+    /** Ends a recalculation pass, discarding the cached levels once the outermost pass ends. */
+    public void endPass() {
+        if (--mPassDepth < 1) {
+            mPassDepth = 0;
+            mLevels.clear();
+        }
+    }
+
+    /** Discards all cached levels. */
+    public void clear() {
+        mLevels.clear();
+    }
+
+    /**
+     * @param skill    The {@link Skill} to look for.
+     * @param excludes The exclude set the level was resolved with.
+     * @return The cached level, or {@code null} if there isn't one.
+     */
+    public Integer get(Skill skill, Set<String> excludes) {
+        if (mPassDepth > 0) {
+            Map<Set<String>, Integer> levels = mLevels.get(skill);
+            if (levels != null) {
+                return levels.get(excludes != null ? excludes : Collections.emptySet());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param skill    The {@link Skill} the level was resolved for.
+     * @param excludes The exclude set the level was resolved with.
+     * @param level    The resolved level.
+     */
+    public void put(Skill skill, Set<String> excludes, int level) {
+        if (mPassDepth > 0) {
+            mLevels.computeIfAbsent(skill, k -> new HashMap<>()).put(excludes != null ? Set.copyOf(excludes) : Collections.emptySet(), Integer.valueOf(level));
+        }
+    }
+
+    /** @param skill The {@link Skill} whose cached levels should be discarded. */
+    public void invalidate(Skill skill) {
+        mLevels.remove(skill);
+    }
+}
@@ -703,7 +703,7 @@ public class Spell extends ListRow implements HasSourceReference {
     }
 
     @Override
-    public String getDataAsText(Column column) {
+    protected String computeDataAsText(Column column) {
         return SpellColumn.values()[column.getID()].getDataAsText(this);
     }
 
@@ -742,17 +742,11 @@ public class Spell extends ListRow implements HasSourceReference {
     }
 
     @Override
-    public boolean contains(String text, boolean lowerCaseOnly) {
-        if (getName().toLowerCase().contains(text)) {
-            return true;
-        }
-        if (getCollege().toLowerCase().contains(text)) {
-            return true;
-        }
-        if (getSpellClass().toLowerCase().contains(text)) {
-            return true;
-        }
-        return super.contains(text, lowerCaseOnly);
+    protected void fillWithSearchableText(List<String> text) {
+        text.add(getName());
+        text.add(getCollege());
+        text.add(getSpellClass());
+        super.fillWithSearchableText(text);
     }
 
     @Override
@@ -18,16 +18,25 @@ import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.swing.SwingConstants;
 
 /** General text drawing utilities. */
 public final class TextDrawing {
-    private static Map<Font, Map<Character, Integer>> WIDTH_MAP  = new HashMap<>();
-    private static Map<Font, Integer>                 HEIGHT_MAP = new HashMap<>();
+    private static final int                  MAX_WRAP_CACHE = 512;
+    private static final Map<Font, Widths>    WIDTH_MAP      = new ConcurrentHashMap<>();
+    private static final Map<Font, Integer>   HEIGHT_MAP     = new ConcurrentHashMap<>();
+    private static final Map<WrapKey, String> WRAP_CACHE     = Collections.synchronizedMap(new LinkedHashMap<>(MAX_WRAP_CACHE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<WrapKey, String> eldest) {
+            return size() > MAX_WRAP_CACHE;
+        }
+    });
 
     private TextDrawing() {
     }
@@ -38,16 +47,7 @@ public final class TextDrawing {
      * @return The width, in pixels.
      */
     public static int getWidth(Font font, char ch) {
-        return getCharWidth(font, ch, getWidthMap(font));
-    }
-
-    private static int getCharWidth(Font font, char ch, Map<Character, Integer> map) {
-        Integer width = map.get(Character.valueOf(ch));
-        if (width == null) {
-            width = Integer.valueOf(Math.max(Fonts.getFontMetrics(font).charWidth(ch), 1));
-            map.put(Character.valueOf(ch), width);
-        }
-        return width.intValue();
+        return getWidths(font).get(ch);
     }
 
     /**
@@ -56,26 +56,11 @@ public final class TextDrawing {
      * @return The width, in pixels.
      */
     public static int getSimpleWidth(Font font, String text) {
-        Map<Character, Integer> map   = getWidthMap(font);
-        int                     total = 0;
-        int                     count = text.length();
-        for (int i = 0; i < count; i++) {
-            total += getCharWidth(font, text.charAt(i), map);
-        }
-        return total;
+        return getWidths(font).get(text);
     }
 
-    private static Map<Character, Integer> getWidthMap(Font font) {
-        Map<Character, Integer> map = WIDTH_MAP.get(font);
-        if (map == null) {
-            map = new HashMap<>();
-            WIDTH_MAP.put(font, map);
-            FontMetrics fm = Fonts.getFontMetrics(font);
-            for (char i = 32; i < 127; i++) {
-                map.put(Character.valueOf(i), Integer.valueOf(Math.max(fm.charWidth(i), 1)));
-            }
-        }
-        return map;
+    private static Widths getWidths(Font font) {
+        return WIDTH_MAP.computeIfAbsent(font, Widths::new);
     }
 
     /**
@@ -119,9 +104,11 @@ public final class TextDrawing {
             int          descent = fm.getDescent();
             // Don't use fm.getHeight(), as the PC adds too much dead space
             int             fHeight    = ascent + descent;
-            StringTokenizer tokenizer  = new StringTokenizer(text, " \n", true);
-            StringBuilder   buffer     = new StringBuilder(text.length());
-            int             textHeight = 0;
+            Widths          widths      = getWidths(font);
+            StringTokenizer tokenizer   = new StringTokenizer(text, " \n", true);
+            StringBuilder   buffer      = new StringBuilder(text.length());
+            int             bufferWidth = 0;
+            int             textHeight  = 0;
             int             width;
             while (tokenizer.hasMoreTokens()) {
                 String token = tokenizer.nextToken();
@@ -130,18 +117,21 @@ public final class TextDrawing {
                     textHeight += fHeight;
                     list.add(text);
                     buffer.setLength(0);
+                    bufferWidth = 0;
                 } else {
-                    width = getSimpleWidth(font, buffer + token);
-                    if (width > bounds.width && !buffer.isEmpty()) {
+                    int tokenWidth = widths.get(token);
+                    if (bufferWidth + tokenWidth > bounds.width && !buffer.isEmpty()) {
                         text = buffer.toString();
                         textHeight += fHeight;
                         list.add(text);
                         buffer.setLength(0);
+                        bufferWidth = 0;
                         if (" ".equals(token)) {
                             continue;
                         }
                     }
                     buffer.append(token);
+                    bufferWidth += tokenWidth;
                 }
             }
             if (!buffer.isEmpty()) {
@@ -192,10 +182,10 @@ public final class TextDrawing {
         int height = 0;
         int length = text.length();
         if (length > 0) {
-            Map<Character, Integer> map      = getWidthMap(font);
-            int                     fHeight  = getFontHeight(font);
-            char                    ch       = 0;
-            int                     curWidth = 0;
+            Widths widths   = getWidths(font);
+            int    fHeight  = getFontHeight(font);
+            char   ch       = 0;
+            int    curWidth = 0;
             for (int i = 0; i < length; i++) {
                 ch = text.charAt(i);
                 if (ch == '\n') {
@@ -205,7 +195,7 @@ public final class TextDrawing {
                     }
                     curWidth = 0;
                 } else {
-                    curWidth += getCharWidth(font, ch, map);
+                    curWidth += widths.get(ch);
                 }
             }
             if (ch != '\n') {
@@ -215,7 +205,7 @@ public final class TextDrawing {
                 width = curWidth;
             }
             if (width == 0) {
-                width = getCharWidth(font, ' ', map);
+                width = widths.get(' ');
             }
         }
         return new Dimension(width, height);
@@ -344,13 +334,37 @@ public final class TextDrawing {
      * @return A new, wrapped version of the text.
      */
     public static String wrapToPixelWidth(Font font, String text, int width) {
-        int[]           lineWidth  = {0};
-        StringBuilder   buffer     = new StringBuilder(text.length() * 2);
-        StringBuilder   lineBuffer = new StringBuilder(text.length());
-        StringTokenizer tokenizer  = new StringTokenizer(text + "\n", " \t/\\\n", true);
-        boolean         wrapped    = false;
-        while (tokenizer.hasMoreTokens()) {
-            String token = tokenizer.nextToken();
+        // The same text tends to be wrapped to the same width on every layout pass, so keep the
+        // most recent results around.
+        WrapKey key     = new WrapKey(font, text, width);
+        String  wrapped = WRAP_CACHE.get(key);
+        if (wrapped == null) {
+            wrapped = wrap(getWidths(font), text, width);
+            WRAP_CACHE.put(key, wrapped);
+        }
+        return wrapped;
+    }
+
+    private static String wrap(Widths widths, String text, int width) {
+        int[]         lineWidth  = {0};
+        StringBuilder buffer     = new StringBuilder(text.length() * 2);
+        StringBuilder lineBuffer = new StringBuilder(text.length());
+        boolean       wrapped    = false;
+        int           length     = text.length();
+        int           start      = 0;
+        // Splits the text into runs of non-delimiter characters and single delimiter characters,
+        // with a trailing newline, just as a StringTokenizer returning delimiters would.
+        while (start <= length) {
+            int end = start;
+            if (start == length || isWrapDelimiter(text.charAt(start))) {
+                end++;
+            } else {
+                while (end < length && !isWrapDelimiter(text.charAt(end))) {
+                    end++;
+                }
+            }
+            String token = start == length ? "\n" : text.substring(start, end);
+            start = end;
             if ("\n".equals(token)) {
                 if (lineWidth[0] > 0) {
                     buffer.append(lineBuffer);
@@ -361,7 +375,7 @@ public final class TextDrawing {
                 lineWidth[0] = 0;
             } else {
                 if (!wrapped || lineWidth[0] != 0 || !" ".equals(token)) {
-                    wrapped = processOneTokenForWrapToPixelWidth(token, font, buffer, lineBuffer, width, lineWidth, wrapped);
+                    wrapped = processOneTokenForWrapToPixelWidth(token, widths, buffer, lineBuffer, width, lineWidth, wrapped);
                 }
             }
         }
@@ -372,27 +386,35 @@ public final class TextDrawing {
         return buffer.toString();
     }
 
-    private static boolean processOneTokenForWrapToPixelWidth(String token, Font font, StringBuilder buffer, StringBuilder lineBuffer, int width, int[] lineWidth, boolean hasBeenWrapped) {
-        int tokenWidth = getSimpleWidth(font, token);
+    private static boolean isWrapDelimiter(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '/' || ch == '\\' || ch == '\n';
+    }
+
+    private static boolean processOneTokenForWrapToPixelWidth(String token, Widths widths, StringBuilder buffer, StringBuilder lineBuffer, int width, int[] lineWidth, boolean hasBeenWrapped) {
+        int tokenWidth = widths.get(token);
         if (lineWidth[0] + tokenWidth <= width) {
             lineBuffer.append(token);
             lineWidth[0] += tokenWidth;
         } else if (lineWidth[0] == 0) {
             // Special-case a line that has not had anything put on it yet
-            int count = token.length();
-            lineBuffer.append(token.charAt(0));
+            int  count   = token.length();
+            char ch      = token.charAt(0);
+            int  current = widths.get(ch);
+            lineBuffer.append(ch);
             for (int i = 1; i < count; i++) {
-                lineBuffer.append(token.charAt(i));
-                if (getSimpleWidth(font, lineBuffer.toString()) > width) {
-                    lineBuffer.deleteCharAt(lineBuffer.length() - 1);
+                ch = token.charAt(i);
+                int chWidth = widths.get(ch);
+                if (current + chWidth > width) {
                     buffer.append(lineBuffer);
                     buffer.append("\n");
                     hasBeenWrapped = true;
                     lineBuffer.setLength(0);
-                    lineBuffer.append(token.charAt(i));
+                    current = 0;
                 }
+                lineBuffer.append(ch);
+                current += chWidth;
             }
-            lineWidth[0] = getSimpleWidth(font, lineBuffer.toString());
+            lineWidth[0] = current;
         } else {
             buffer.append(lineBuffer);
             buffer.append("\n");
@@ -400,9 +422,74 @@ public final class TextDrawing {
             lineBuffer.setLength(0);
             lineWidth[0] = 0;
             if (!" ".equals(token)) {
-                return processOneTokenForWrapToPixelWidth(token, font, buffer, lineBuffer, width, lineWidth, true);
+                return processOneTokenForWrapToPixelWidth(token, widths, buffer, lineBuffer, width, lineWidth, true);
             }
         }
         return hasBeenWrapped;
     }
+
+    /**
+     * The widths of the characters in a single font. Latin-1 characters are looked up in a
+     * pre-filled array; anything else is measured on first use and remembered. Safe for use from
+     * multiple threads.
+     */
+    private static final class Widths {
+        private static final int                     TABLE_SIZE = 256;
+        private final        int[]                   mTable     = new int[TABLE_SIZE];
+        private final        Map<Character, Integer> mOther     = new ConcurrentHashMap<>();
+        private final        FontMetrics             mMetrics;
+
+        Widths(Font font) {
+            mMetrics = Fonts.getFontMetrics(font);
+            for (char ch = 0; ch < TABLE_SIZE; ch++) {
+                mTable[ch] = measure(ch);
+            }
+        }
+
+        private int measure(char ch) {
+            return Math.max(mMetrics.charWidth(ch), 1);
+        }
+
+        int get(char ch) {
+            if (ch < TABLE_SIZE) {
+                return mTable[ch];
+            }
+            return mOther.computeIfAbsent(Character.valueOf(ch), c -> Integer.valueOf(measure(c.charValue()))).intValue();
+        }
+
+        int get(String text) {
+            int total = 0;
+            int count = text.length();
+            for (int i = 0; i < count; i++) {
+                total += get(text.charAt(i));
+            }
+            return total;
+        }
+    }
+
+    private static final class WrapKey {
+        private final Font   mFont;
+        private final String mText;
+        private final int    mWidth;
+
+        WrapKey(Font font, String text, int width) {
+            mFont = font;
+            mText = text;
+            mWidth = width;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof WrapKey) {
+                WrapKey other = (WrapKey) obj;
+                return mWidth == other.mWidth && mFont.equals(other.mFont) && mText.equals(other.mText);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return (mFont.hashCode() * 31 + mText.hashCode()) * 31 + mWidth;
+        }
+    }
 }
@@ -32,8 +32,6 @@ import java.awt.print.PrinterJob;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
 import javax.print.DocFlavor;
 import javax.print.PrintService;
 import javax.print.attribute.Attribute;
@@ -303,7 +301,7 @@ public class PrintManager {
 
     public JsonMap toJSONMap(LengthUnits units) {
         try (ByteArrayOutputStream buffer = new ByteArrayOutputStream()) {
-            try (JsonWriter w = new JsonWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8), "\t")) {
+            try (JsonWriter w = new JsonWriter(buffer, "\t")) {
                 toJSON(w, LengthUnits.IN);
             }
             return Json.asMap(Json.parse(new ByteArrayInputStream(buffer.toByteArray())));
@@ -104,6 +104,10 @@ public class DockTab extends JPanel implements ContainerListener, MouseListener,
             }
         }
         buffer.append(mDockable.getTitle());
+        if (mDockable instanceof Saveable && ((Saveable) mDockable).isSaving()) {
+            buffer.append(' ');
+            buffer.append(I18n.Text("(saving…)"));
+        }
         return buffer.toString();
     }
 
@@ -58,6 +58,20 @@ public interface Cell {
      */
     int compare(Column column, Row one, Row two);
 
+    /**
+     * Extracts the value this cell sorts by, so that it can be computed once per row rather than
+     * once per comparison. Keys must order rows the same way {@link #compare(Column, Row, Row)}
+     * does.
+     *
+     * @param column The column to extract the key for.
+     * @param row    The row to extract the key from.
+     * @return The sort key, or {@code null} if {@link #compare(Column, Row, Row)} must be used
+     *         instead.
+     */
+    default SortKey getSortKey(Column column, Row row) {
+        return null;
+    }
+
     /**
      * @param event  The {@link MouseEvent} that caused the tooltip to be shown.
      * @param bounds The bounds of the cell.
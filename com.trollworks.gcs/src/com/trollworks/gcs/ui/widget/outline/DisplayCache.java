@@ -0,0 +1,59 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.ui.widget.outline;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the text a row displays for each of its columns, so that painting, tool tips and
+ * sorting don't need to recompute values derived from the rest of the data file. Each entry is
+ * stamped with the data file's display generation and is discarded once that moves on.
+ */
+public final class DisplayCache {
+    private Map<Column, String> mText;
+    private long                mGeneration;
+
+    /**
+     * @param column     The column.
+     * @param generation The current display generation.
+     * @return The cached text, or {@code null} if there is none for this generation.
+     */
+    public String get(Column column, long generation) {
+        if (mText == null || mGeneration != generation) {
+            return null;
+        }
+        return mText.get(column);
+    }
+
+    /**
+     * @param column     The column.
+     * @param generation The display generation the text was computed for.
+     * @param text       The text to remember.
+     */
+    public void put(Column column, long generation, String text) {
+        if (mText == null) {
+            mText = new IdentityHashMap<>();
+        } else if (mGeneration != generation) {
+            mText.clear();
+        }
+        mGeneration = generation;
+        mText.put(column, text);
+    }
+
+    /** Discards all cached text. */
+    public void clear() {
+        if (mText != null) {
+            mText.clear();
+        }
+    }
+}
@@ -51,6 +51,11 @@ public class IconsCell implements Cell {
         return NumericComparator.caselessCompareStrings(oneText != null ? oneText : "", twoText != null ? twoText : "");
     }
 
+    @Override
+    public SortKey getSortKey(Column column, Row row) {
+        return SortKey.forText(row.getDataAsText(column));
+    }
+
     /**
      * @param row      The row to use.
      * @param column   The column to use.
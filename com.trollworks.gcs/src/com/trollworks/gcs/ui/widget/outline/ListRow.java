@@ -37,12 +37,11 @@ import com.trollworks.gcs.utility.SaveType;
 import com.trollworks.gcs.utility.VersionException;
 import com.trollworks.gcs.utility.json.JsonArray;
 import com.trollworks.gcs.utility.json.JsonMap;
+import com.trollworks.gcs.utility.json.JsonReader;
 import com.trollworks.gcs.utility.json.JsonWriter;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -79,6 +78,8 @@ public abstract class ListRow extends Row implements Updatable {
     private              String             mUnsatisfiedReason;
     private              String             mNotes;
     private              TreeSet<String>    mCategories;
+    private              String             mSearchText;
+    private              DisplayCache       mDisplayCache     = new DisplayCache();
 
     public static void saveList(JsonWriter w, String key, List<?> list, SaveType saveType) throws IOException {
         FilteredList<ListRow> rows = new FilteredList<>(list, ListRow.class, true);
@@ -193,7 +194,7 @@ public abstract class ListRow extends Row implements Updatable {
         try {
             MessageDigest         digest = MessageDigest.getInstance("SHA3-256");
             ByteArrayOutputStream baos   = new ByteArrayOutputStream();
-            try (JsonWriter w = new JsonWriter(new OutputStreamWriter(baos, StandardCharsets.UTF_8), "")) {
+            try (JsonWriter w = new JsonWriter(baos, "")) {
                 rowToClone.save(w, SaveType.HASH);
             }
             mBasedOnHash = Base64.getEncoder().withoutPadding().encodeToString(digest.digest(baos.toByteArray()));
@@ -283,10 +284,20 @@ public abstract class ListRow extends Row implements Updatable {
 
     /** @return The reason {@link #isSatisfied()} is returning {@code false}. */
     public String getReasonForUnsatisfied() {
+        if (mUnsatisfiedReason == null && !mIsSatisfied) {
+            // Building the reason is relatively expensive, so it is only done when asked for.
+            GURPSCharacter character = getCharacter();
+            if (character != null) {
+                mUnsatisfiedReason = character.getReasonForUnsatisfied(this);
+            }
+        }
         return mUnsatisfiedReason;
     }
 
-    /** @param reason The reason {@link #isSatisfied()} is returning {@code false}. */
+    /**
+     * @param reason The reason {@link #isSatisfied()} is returning {@code false}. Pass in {@code
+     *               null} to have it rebuilt the next time it is asked for.
+     */
     public void setReasonForUnsatisfied(String reason) {
         mUnsatisfiedReason = reason;
     }
@@ -298,6 +309,9 @@ public abstract class ListRow extends Row implements Updatable {
      * @param state The {@link LoadState} to use.
      */
     public final void load(JsonMap m, LoadState state) throws IOException {
+        // Taken first, as loading this row's own data may load other rows.
+        List<ListRow> children = state.mChildren;
+        state.mChildren = null;
         if (m.has(KEY_ID)) {
             try {
                 mID = UUID.fromString(m.getString(KEY_ID));
@@ -364,7 +378,11 @@ public abstract class ListRow extends Row implements Updatable {
         }
         if (canHaveChildren()) {
             setOpen(m.getBoolean(ATTRIBUTE_OPEN));
-            if (m.has(KEY_CHILDREN)) {
+            if (children != null) {
+                for (ListRow child : children) {
+                    addChild(child);
+                }
+            } else if (m.has(KEY_CHILDREN)) {
                 JsonArray a     = m.getArray(KEY_CHILDREN);
                 int       count = a.size();
                 for (int i = 0; i < count; i++) {
@@ -379,6 +397,63 @@ public abstract class ListRow extends Row implements Updatable {
 
     protected abstract void loadChild(JsonMap m, LoadState state) throws IOException;
 
+    /** Creates a row from its data. */
+    public interface Factory {
+        /**
+         * @param m     The {@link JsonMap} to load data from.
+         * @param state The {@link LoadState} to use.
+         * @return The new row, or {@code null} if the data doesn't describe one.
+         */
+        ListRow create(JsonMap m, LoadState state) throws IOException;
+    }
+
+    /**
+     * Reads the row whose data the reader is positioned at. The row's own data is collected into a
+     * {@link JsonMap} for the factory, but its children are read and created first, one at a time,
+     * and handed to it through {@link LoadState#mChildren}. This way, no more than the data of the
+     * rows being read at each level is held at once.
+     *
+     * @param in      The {@link JsonReader} to read from.
+     * @param state   The {@link LoadState} to use.
+     * @param factory The {@link Factory} to create this row and its children with.
+     * @return The new row, or {@code null} if the data doesn't describe one.
+     */
+    public static ListRow read(JsonReader in, LoadState state, Factory factory) throws IOException {
+        JsonMap       m        = new JsonMap();
+        List<ListRow> children = null;
+        if (in.peek() != JsonReader.Kind.MAP) {
+            in.skipValue();
+            return factory.create(m, state);
+        }
+        in.beginMap();
+        while (in.hasNext()) {
+            String key = in.nextKey();
+            if (m.has(key) || children != null && KEY_CHILDREN.equals(key)) {
+                throw new IOException("duplicate key \"" + key + "\"");
+            }
+            if (KEY_CHILDREN.equals(key) && in.peek() == JsonReader.Kind.ARRAY) {
+                children = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    ListRow child = read(in, state, factory);
+                    if (child != null) {
+                        children.add(child);
+                    }
+                }
+                in.endArray();
+            } else {
+                m.put(key, in.nextValue());
+            }
+        }
+        in.endMap();
+        state.mChildren = children;
+        try {
+            return factory.create(m, state);
+        } finally {
+            state.mChildren = null;
+        }
+    }
+
     /**
      * Called to prepare the row for loading.
      *
@@ -482,6 +557,9 @@ public abstract class ListRow extends Row implements Updatable {
      * @param data Extra data specific to this notification.
      */
     public void notify(String type, Object data) {
+        invalidateSortKeys();
+        invalidateDisplayCache();
+        mSearchText = null;
         if (mDataFile != null) {
             mDataFile.notify(type, this);
         }
@@ -493,6 +571,9 @@ public abstract class ListRow extends Row implements Updatable {
      * @param type The notification type.
      */
     public final void notifySingle(String type) {
+        invalidateSortKeys();
+        invalidateDisplayCache();
+        mSearchText = null;
         if (mDataFile != null) {
             mDataFile.notifySingle(type, this);
         }
@@ -507,6 +588,41 @@ public abstract class ListRow extends Row implements Updatable {
         }
     }
 
+    @Override
+    public final String getDataAsText(Column column) {
+        long   generation = getDisplayGeneration();
+        String text       = mDisplayCache.get(column, generation);
+        if (text == null) {
+            text = computeDataAsText(column);
+            mDisplayCache.put(column, generation, text);
+        }
+        return text;
+    }
+
+    @Override
+    protected long getDisplayGeneration() {
+        return mDataFile != null ? mDataFile.getDisplayGeneration() : super.getDisplayGeneration();
+    }
+
+    /**
+     * @param column The column.
+     * @return The data for the specified column as text. The result is cached by {@link
+     *         #getDataAsText(Column)} until this row or its data file changes.
+     */
+    protected abstract String computeDataAsText(Column column);
+
+    /**
+     * Discards the text cached for display by this row and its ancestors, whose displayed values
+     * may be derived from this row's.
+     */
+    public void invalidateDisplayCache() {
+        for (Row row = this; row != null; row = row.getParent()) {
+            if (row instanceof ListRow) {
+                ((ListRow) row).mDisplayCache.clear();
+            }
+        }
+    }
+
     /** Called to update any information that relies on children. */
     public void update() {
         // Do nothing by default.
@@ -703,9 +819,27 @@ public abstract class ListRow extends Row implements Updatable {
      * @param lowerCaseOnly The passed in text is all lowercase.
      * @return {@code true} if this row contains the text.
      */
-    @SuppressWarnings("static-method")
     public boolean contains(String text, boolean lowerCaseOnly) {
-        return false;
+        return getSearchText().contains(lowerCaseOnly ? text : text.toLowerCase());
+    }
+
+    /**
+     * @return The lowercased text that {@link #contains(String, boolean)} searches, with each
+     *         piece separated by a newline so that matches can't span them. Cached until the row
+     *         next sends a notification.
+     */
+    public String getSearchText() {
+        if (mSearchText == null) {
+            List<String> text = new ArrayList<>();
+            fillWithSearchableText(text);
+            mSearchText = String.join("\n", text).toLowerCase();
+        }
+        return mSearchText;
+    }
+
+    /** @param text The list to add each piece of searchable text to. */
+    protected void fillWithSearchableText(List<String> text) {
+        // Nothing searchable by default.
     }
 
     /**
@@ -195,6 +195,11 @@ public class MultiCell implements Cell {
         return NumericComparator.caselessCompareStrings(getSortText((ListRow) one), getSortText((ListRow) two));
     }
 
+    @Override
+    public SortKey getSortKey(Column column, Row row) {
+        return SortKey.forText(getSortText((ListRow) row));
+    }
+
     @Override
     public Cursor getCursor(MouseEvent event, Rectangle bounds, Row row, Column column) {
         return Cursor.getDefaultCursor();
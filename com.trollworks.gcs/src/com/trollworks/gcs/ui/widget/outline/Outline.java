@@ -107,6 +107,9 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
     private              boolean           mDragWasAcceptable;
     private              boolean           mDragFocus;
     private              boolean           mDynamicRowHeight;
+    private              boolean           mVirtualized;
+    private              long              mMeasuredHeightTotal;
+    private              int               mMeasuredRowCount;
     private              Set<OutlineProxy> mProxies;
     /** The first row index this outline will display. */
     protected            int               mFirstRow;
@@ -231,6 +234,20 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
         mDynamicRowHeight = dynamic;
     }
 
+    /**
+     * @return Whether row heights are measured lazily. When virtualized, rows that haven't been
+     *         displayed yet are given an estimated height, which is replaced by the actual height
+     *         once they are painted.
+     */
+    public boolean isVirtualized() {
+        return mVirtualized;
+    }
+
+    /** @param virtualized Whether row heights should be measured lazily. */
+    public void setVirtualized(boolean virtualized) {
+        mVirtualized = virtualized;
+    }
+
     /** @return {@code true} if hierarchy indention (and controls) will be shown. */
     public boolean showIndent() {
         return mModel.showIndent();
@@ -288,12 +305,7 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
         for (int i = getFirstRowToDisplay(); i <= getLastRowToDisplay(); i++) {
             Row row = mModel.getRowAtIndex(i);
             if (!mModel.isRowFiltered(row)) {
-                int height = row.getHeight();
-                if (height == -1) {
-                    height = row.getPreferredHeight(this, columns);
-                    row.setHeight(height);
-                }
-                size.height += height + (mDrawRowDividers ? one : 0);
+                size.height += ensureRowHeight(row, columns) + (mDrawRowDividers ? one : 0);
                 needHeightAdjust = true;
             }
         }
@@ -313,6 +325,82 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
         return size;
     }
 
+    /** @return The row's height, giving it one first if it doesn't have one yet. */
+    private int ensureRowHeight(Row row, List<Column> columns) {
+        int height = row.getHeight();
+        if (height == -1) {
+            if (mVirtualized) {
+                row.setEstimatedHeight(getEstimatedRowHeight(columns));
+            } else {
+                measureRowHeight(row, columns);
+            }
+            height = row.getHeight();
+        }
+        return height;
+    }
+
+    /** @return The average height of the rows measured so far. */
+    private int getEstimatedRowHeight(List<Column> columns) {
+        if (mMeasuredRowCount == 0) {
+            // Nothing has been measured yet, so seed the estimate with the first row
+            List<Row> rows = mModel.getRows();
+            if (!rows.isEmpty()) {
+                measureRowHeight(rows.get(0), columns);
+            }
+        }
+        return mMeasuredRowCount != 0 ? (int) (mMeasuredHeightTotal / mMeasuredRowCount) : 0;
+    }
+
+    /** @return {@code true} if the row's height changed. */
+    private boolean measureRowHeight(Row row, List<Column> columns) {
+        int height = row.getPreferredHeight(this, columns);
+        mMeasuredHeightTotal += height;
+        mMeasuredRowCount++;
+        boolean changed = row.getHeight() != height;
+        row.setHeight(height);
+        return changed;
+    }
+
+    /**
+     * Replaces the estimated height of any row within the specified area with its actual height.
+     *
+     * @param area The area to check.
+     * @return {@code true} if any row heights changed.
+     */
+    private boolean reconcileRowHeights(Rectangle area) {
+        boolean changed = false;
+        if (mVirtualized) {
+            int index = overRowIndex(area.y);
+            if (index != -1) {
+                RowGeometry  geometry = getRowGeometry();
+                List<Column> columns  = mModel.getColumns();
+                int          last     = getLastRowToDisplay();
+                int          bottom   = area.y + area.height;
+                int          y        = getRowIndexStart(index);
+                int          divider  = mDrawRowDividers ? Scale.get(this).scale(1) : 0;
+                while (index <= last && y <= bottom) {
+                    Row row = mModel.getRowAtIndex(index);
+                    if (row.isHeightEstimated() || row.getHeight() == -1) {
+                        changed |= measureRowHeight(row, columns);
+                    }
+                    y += row.getHeight() + divider;
+                    index = geometry.getVisibleIndexAtOrAfter(index + 1);
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @param clip The area being painted.
+     * @return The index of the first row that intersects the area, or one past the last row to
+     *         display if none do.
+     */
+    private int getFirstRowIndexToPaint(Rectangle clip) {
+        int index = overRowIndex(clip.y);
+        return index != -1 ? index : getLastRowToDisplay() + 1;
+    }
+
     private void drawDragRowInsertionMarker(Graphics gc, Row parent, int insertAtIndex) {
         Scale     scale  = Scale.get(this);
         int       one    = scale.scale(1);
@@ -387,6 +475,12 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
         int   one   = scale.scale(1);
 
         super.paintComponent(GraphicsUtilities.prepare(gc));
+        if (reconcileRowHeights(gc.getClipBounds())) {
+            // The rows being painted now have their actual heights, which may change the overall
+            // size of the outline.
+            contentSizeMayHaveChanged();
+            revalidateView();
+        }
         drawBackground(gc);
 
         Shape     origClip   = gc.getClip();
@@ -394,11 +488,13 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
         Insets    insets     = getInsets();
         Rectangle bounds     = new Rectangle(insets.left, insets.top, getWidth() - (insets.left + insets.right), getHeight() - (insets.top + insets.bottom));
         boolean   active     = isFocusOwner();
-        int       first      = getFirstRowToDisplay();
+        int       first      = getFirstRowIndexToPaint(clip);
         int       last       = getLastRowToDisplay();
         boolean   isPrinting = PrintUtilities.isPrinting(this);
         boolean   showIndent = showIndent();
 
+        bounds.y = getRowIndexStart(first);
+
         for (int rowIndex = first; rowIndex <= last; rowIndex++) {
             Row row = mModel.getRowAtIndex(rowIndex);
             if (!mModel.isRowFiltered(row)) {
@@ -475,10 +571,12 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
         int       bottom     = getHeight() - (top + insets.bottom);
         Rectangle bounds     = new Rectangle(insets.left, top, getWidth() - (insets.left + insets.right), bottom);
         boolean   active     = isFocusOwner();
-        int       first      = getFirstRowToDisplay();
+        int       first      = getFirstRowIndexToPaint(clip);
         int       last       = getLastRowToDisplay();
         boolean   isPrinting = PrintUtilities.isPrinting(this);
 
+        bounds.y = getRowIndexStart(first);
+
         for (int rowIndex = first; rowIndex <= last; rowIndex++) {
             Row row = mModel.getRowAtIndex(rowIndex);
             if (!mModel.isRowFiltered(row)) {
@@ -619,11 +717,7 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
         for (int i = getFirstRowToDisplay(); i <= last; i++) {
             Row row = mModel.getRowAtIndex(i);
             if (!mModel.isRowFiltered(row)) {
-                int height = row.getHeight();
-                if (height == -1) {
-                    height = row.getPreferredHeight(this, columns);
-                    row.setHeight(height);
-                }
+                int height = ensureRowHeight(row, columns);
                 if (mDrawRowDividers) {
                     height += one;
                 }
@@ -950,6 +1044,11 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
         }
     }
 
+    /** @return The row position index, prepared for this outline's row divider size. */
+    private RowGeometry getRowGeometry() {
+        return mModel.getRowGeometry().prepare(mDrawRowDividers ? Scale.get(this).scale(1) : 0);
+    }
+
     /**
      * Determines if the specified y-coordinate is over a row.
      *
@@ -957,20 +1056,8 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
      * @return The row, or {@code null} if none is found.
      */
     public Row overRow(int y) {
-        int       one  = Scale.get(this).scale(1);
-        List<Row> rows = mModel.getRows();
-        int       pos  = getInsets().top;
-        int       last = getLastRowToDisplay();
-        for (int i = getFirstRowToDisplay(); i <= last; i++) {
-            Row row = rows.get(i);
-            if (!mModel.isRowFiltered(row)) {
-                pos += row.getHeight() + (mDrawRowDividers ? one : 0);
-                if (y < pos) {
-                    return row;
-                }
-            }
-        }
-        return null;
+        int index = overRowIndex(y);
+        return index != -1 ? mModel.getRowAtIndex(index) : null;
     }
 
     /**
@@ -980,20 +1067,11 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
      * @return The row index, or {@code -1} if none is found.
      */
     public int overRowIndex(int y) {
-        int       one  = Scale.get(this).scale(1);
-        List<Row> rows = mModel.getRows();
-        int       pos  = getInsets().top;
-        int       last = getLastRowToDisplay();
-        for (int i = getFirstRowToDisplay(); i <= last; i++) {
-            Row row = rows.get(i);
-            if (!mModel.isRowFiltered(row)) {
-                pos += row.getHeight() + (mDrawRowDividers ? one : 0);
-                if (y < pos) {
-                    return i;
-                }
-            }
-        }
-        return -1;
+        RowGeometry geometry = getRowGeometry();
+        int         first    = getFirstRowToDisplay();
+        int         offset   = y - getInsets().top;
+        int         index    = offset < 0 ? geometry.getVisibleIndexAtOrAfter(first) : geometry.getIndexAtOffset(geometry.getOffset(first) + offset);
+        return index <= getLastRowToDisplay() ? index : -1;
     }
 
     /**
@@ -1001,22 +1079,19 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
      * @return The row index to insert at, from {@code 0} to {@link OutlineModel#getRowCount()} .
      */
     public int getRowInsertionIndex(int y) {
-        int       one  = Scale.get(this).scale(1);
-        List<Row> rows = mModel.getRows();
-        int       pos  = getInsets().top;
-        int       last = getLastRowToDisplay();
-        for (int i = getFirstRowToDisplay(); i <= last; i++) {
-            Row row = rows.get(i);
-            if (!mModel.isRowFiltered(row)) {
-                int height = row.getHeight();
-                int tmp    = pos + height / 2;
-                if (y <= tmp) {
-                    return i;
-                }
-                pos += height + (mDrawRowDividers ? one : 0);
-            }
+        RowGeometry geometry = getRowGeometry();
+        int         first    = getFirstRowToDisplay();
+        int         last     = getLastRowToDisplay();
+        int         base     = geometry.getOffset(first);
+        int         offset   = base + Math.max(y - getInsets().top, 0);
+        // Any row that ends before the offset can't be the insertion point, so start with the
+        // first one that doesn't.
+        int index = geometry.getVisibleIndexAtOrAfter(Math.max(geometry.getIndexAtOffset(offset - 1), first));
+        if (index <= last && offset > geometry.getOffset(index) + mModel.getRowAtIndex(index).getHeight() / 2) {
+            // Past the midpoint of the row, so insert before the next visible one
+            index = geometry.getVisibleIndexAtOrAfter(index + 1);
         }
-        return last;
+        return index <= last ? index : last;
     }
 
     /**
@@ -1024,14 +1099,11 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
      * @return The starting y-coordinate for the specified row index.
      */
     public int getRowIndexStart(int index) {
-        int       one  = Scale.get(this).scale(1);
-        List<Row> rows = mModel.getRows();
-        int       pos  = getInsets().top;
-        for (int i = getFirstRowToDisplay(); i < index; i++) {
-            Row row = rows.get(i);
-            if (!mModel.isRowFiltered(row)) {
-                pos += row.getHeight() + (mDrawRowDividers ? one : 0);
-            }
+        int pos   = getInsets().top;
+        int first = getFirstRowToDisplay();
+        if (index > first) {
+            RowGeometry geometry = getRowGeometry();
+            pos += geometry.getOffset(Math.min(index, mModel.getRowCount())) - geometry.getOffset(first);
         }
         return pos;
     }
@@ -1041,20 +1113,15 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
      * @return The starting y-coordinate for the specified row.
      */
     public int getRowStart(Row row) {
-        int       one  = Scale.get(this).scale(1);
-        List<Row> rows = mModel.getRows();
-        int       pos  = getInsets().top;
-        int       last = getLastRowToDisplay();
-        for (int i = getFirstRowToDisplay(); i <= last; i++) {
-            Row oneRow = rows.get(i);
-            if (row == oneRow) {
-                break;
-            }
-            if (!mModel.isRowFiltered(oneRow)) {
-                pos += oneRow.getHeight() + (mDrawRowDividers ? one : 0);
-            }
+        RowGeometry geometry = getRowGeometry();
+        int         first    = getFirstRowToDisplay();
+        int         last     = getLastRowToDisplay();
+        int         index    = geometry.indexOf(row);
+        if (index < first || index > last) {
+            // Not displayed by this outline, so it is treated as being past the end
+            index = last + 1;
         }
-        return pos;
+        return getInsets().top + (index > first ? geometry.getOffset(index) - geometry.getOffset(first) : 0);
     }
 
     /**
@@ -2580,6 +2647,27 @@ public class Outline extends ActionPanel implements OutlineModelListener, Compon
      * @param rows The rows to update.
      */
     public void updateRowHeights(Collection<? extends Row> rows) {
+        if (mVirtualized) {
+            // Keep the current heights as estimates and only measure the rows that are showing.
+            // The rest will be measured as they come into view.
+            for (Row row : rows) {
+                if (row.getHeight() != -1) {
+                    row.setEstimatedHeight(row.getHeight());
+                }
+            }
+            if (rows == mModel.getRows()) {
+                // Everything is being re-measured, so start the estimate over, too
+                mMeasuredHeightTotal = 0;
+                mMeasuredRowCount = 0;
+            }
+            if (reconcileRowHeights(getVisibleRect())) {
+                contentSizeMayHaveChanged();
+                revalidateView();
+            } else {
+                repaint();
+            }
+            return;
+        }
         List<Column> columns        = mModel.getColumns();
         boolean      needRevalidate = false;
         for (Row row : rows) {
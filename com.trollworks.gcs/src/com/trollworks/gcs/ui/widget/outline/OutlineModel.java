@@ -50,6 +50,7 @@ public class OutlineModel implements SelectionOwner, StateEditable {
     private              int                             mHierarchyColumnID   = -1;
     private              RowFilter                       mRowFilter;
     private              Map<String, Object>             mProperties          = new HashMap<>();
+    private              RowGeometry                     mRowGeometry;
 
     /** Creates a new model. */
     public OutlineModel() {
@@ -58,6 +59,17 @@ public class OutlineModel implements SelectionOwner, StateEditable {
         mRows = new ArrayList<>();
         mSelection = new Selection(this);
         mNotifyOfSelections = true;
+        mRowGeometry = new RowGeometry(this);
+    }
+
+    /** @return The index of row positions. */
+    RowGeometry getRowGeometry() {
+        return mRowGeometry;
+    }
+
+    /** @param row A row whose height has changed. */
+    void rowHeightChanged(Row row) {
+        mRowGeometry.rowHeightChanged(row);
     }
 
     public Object getProperty(String key) {
@@ -139,6 +151,13 @@ public class OutlineModel implements SelectionOwner, StateEditable {
      * @param column The {@link Column} that was modified.
      */
     public void notifyOfRowModification(Row row, Column column) {
+        if (row != null) {
+            row.invalidateSortKeys();
+        }
+        // The modification may have changed whether the row passes the filter
+        if (mRowFilter != null) {
+            mRowGeometry.invalidate();
+        }
         for (OutlineModelListener listener : getCurrentListeners()) {
             listener.rowWasModified(this, row, column);
         }
@@ -296,6 +315,7 @@ public class OutlineModel implements SelectionOwner, StateEditable {
         }
         preserveSelection();
         mRows.addAll(index, list);
+        mRowGeometry.invalidate();
         mSelection.setSize(mRows.size());
         restoreSelection();
         notifyOfRowAdditions(list.toArray(new Row[0]));
@@ -306,6 +326,7 @@ public class OutlineModel implements SelectionOwner, StateEditable {
         List<Row> list = collectRowsAndSetOwner(new ArrayList<>(), row, true);
         preserveSelection();
         mRows.addAll(getIndexOfRow(row) + 1, list);
+        mRowGeometry.invalidate();
         mSelection.setSize(mRows.size());
         restoreSelection();
         notifyOfRowAdditions(list.toArray(new Row[0]));
@@ -433,6 +454,7 @@ public class OutlineModel implements SelectionOwner, StateEditable {
             mRows.remove(indexes[i]);
             rows[i].setOwner(null);
         }
+        mRowGeometry.invalidate();
         mSelection.setSize(mRows.size());
         restoreSelection();
         notifyOfRowsWereRemoved(rows);
@@ -446,6 +468,7 @@ public class OutlineModel implements SelectionOwner, StateEditable {
         mSelection.setSize(0);
         notifyOfRowsWillBeRemoved(rows);
         mRows.clear();
+        mRowGeometry.invalidate();
         for (Row element : rows) {
             element.setOwner(null);
         }
@@ -557,6 +580,7 @@ public class OutlineModel implements SelectionOwner, StateEditable {
     private void sortInternal() {
         preserveSelection();
         RowSorter.sort(mColumns, mRows, true);
+        mRowGeometry.invalidate();
         restoreSelection();
         notifyOfSort();
     }
@@ -1048,6 +1072,7 @@ public class OutlineModel implements SelectionOwner, StateEditable {
         if (rows != null) {
             mRows = new ArrayList<>(rows);
         }
+        mRowGeometry.invalidate();
         for (Row row : mRows) {
             row.resetOwner(this);
         }
@@ -1089,6 +1114,7 @@ public class OutlineModel implements SelectionOwner, StateEditable {
     /** @param filter The {@link RowFilter} to use. */
     public void setRowFilter(RowFilter filter) {
         mRowFilter = filter;
+        mRowGeometry.invalidate();
     }
 
     /**
@@ -1105,6 +1131,7 @@ public class OutlineModel implements SelectionOwner, StateEditable {
     /** Causes the {@link RowFilter} to be re-applied to the selection. */
     public void reapplyRowFilter() {
         if (mRowFilter != null) {
+            mRowGeometry.invalidate();
             List<Row> list  = new ArrayList<>(mSelection.getCount());
             int       index = mSelection.firstSelectedIndex();
             while (index != -1) {
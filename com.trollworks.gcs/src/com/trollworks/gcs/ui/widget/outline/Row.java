@@ -11,20 +11,26 @@
 
 package com.trollworks.gcs.ui.widget.outline;
 
+import com.trollworks.gcs.preferences.Preferences;
 import com.trollworks.gcs.ui.RetinaIcon;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /** Represents a single row of data within an {@link OutlineModel}. */
 public abstract class Row {
-    private   OutlineModel   mOwner;
-    private   int            mHeight;
-    private   boolean        mOpen;
-    private   Row            mParent;
+    private   OutlineModel         mOwner;
+    private   int                  mHeight;
+    private   boolean              mHeightEstimated;
+    private   boolean              mOpen;
+    private   Row                  mParent;
+    private   Map<Column, SortKey> mSortKeys;
+    private   long                 mSortKeyGeneration;
     /** The children of this row. */
-    protected ArrayList<Row> mChildren;
+    protected ArrayList<Row>       mChildren;
 
     /** Create a new outline row. */
     public Row() {
@@ -49,6 +55,7 @@ public abstract class Row {
         mOwner = owner;
         mParent = snapshot.getParent();
         mOpen = snapshot.isOpen();
+        mSortKeys = null;
         if (canHaveChildren()) {
             mChildren.clear();
             for (Row child : snapshot.getChildren()) {
@@ -104,7 +111,72 @@ public abstract class Row {
      * @param height The height to set.
      */
     public void setHeight(int height) {
-        mHeight = height;
+        mHeightEstimated = false;
+        if (mHeight != height) {
+            mHeight = height;
+            if (mOwner != null) {
+                mOwner.rowHeightChanged(this);
+            }
+        }
+    }
+
+    /**
+     * Sets a placeholder height for this row, to be used until its actual height is measured.
+     *
+     * @param height The estimated height.
+     */
+    public void setEstimatedHeight(int height) {
+        setHeight(height);
+        mHeightEstimated = true;
+    }
+
+    /** @return Whether the current height is only an estimate. */
+    public boolean isHeightEstimated() {
+        return mHeightEstimated;
+    }
+
+    /**
+     * @param column The column to get the sort key for.
+     * @return The sort key for the column, reusing the one computed by a previous sort if neither
+     *         this row nor its display generation has changed since, or {@code null} if the
+     *         column's cell doesn't provide keys.
+     */
+    SortKey getSortKey(Column column) {
+        long generation = getDisplayGeneration();
+        if (mSortKeys != null && mSortKeyGeneration != generation) {
+            mSortKeys = null;
+        }
+        SortKey key = mSortKeys != null ? mSortKeys.get(column) : null;
+        if (key == null) {
+            key = column.getRowCell(null).getSortKey(column, this);
+            if (key != null) {
+                if (mSortKeys == null) {
+                    mSortKeys = new IdentityHashMap<>();
+                    mSortKeyGeneration = generation;
+                }
+                mSortKeys.put(column, key);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * @return The display generation, which changes whenever the values this row displays may
+     *         have changed without the row itself being notified, such as through a change to the
+     *         preferences.
+     */
+    protected long getDisplayGeneration() {
+        return Preferences.getInstance().getDisplayGeneration();
+    }
+
+    /**
+     * Discards any sort keys cached for this row and its ancestors, whose displayed values may be
+     * derived from this row's. Should be called whenever the row's data changes.
+     */
+    public void invalidateSortKeys() {
+        for (Row row = this; row != null; row = row.mParent) {
+            row.mSortKeys = null;
+        }
     }
 
     /**
@@ -234,6 +306,7 @@ public abstract class Row {
             }
             mChildren.add(index, row);
             row.mParent = this;
+            invalidateSortKeys();
             return true;
         }
         return false;
@@ -250,6 +323,7 @@ public abstract class Row {
             row.removeFromParent();
             mChildren.add(row);
             row.mParent = this;
+            invalidateSortKeys();
             return true;
         }
         return false;
@@ -265,6 +339,7 @@ public abstract class Row {
         if (row.isChildOf(this)) {
             mChildren.remove(row);
             row.mParent = null;
+            invalidateSortKeys();
             return true;
         }
         return false;
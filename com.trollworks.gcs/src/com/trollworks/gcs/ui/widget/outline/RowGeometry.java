@@ -0,0 +1,169 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.ui.widget.outline;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefix sums over the vertical extent of the rows in an {@link OutlineModel}, kept in a pair of
+ * Fenwick trees so that both y-coordinate to row and row to y-coordinate lookups take O(log n).
+ * Filtered rows occupy no space. The index is rebuilt lazily after structural changes (rows added,
+ * removed or reordered, or the filter re-applied) and updated in place when a single row's height
+ * changes.
+ */
+class RowGeometry {
+    private OutlineModel      mModel;
+    private Map<Row, Integer> mIndexes;
+    private int[]             mExtents;
+    private boolean[]         mVisible;
+    private int[]             mExtentTree;
+    private int[]             mCountTree;
+    private int               mDividerSize;
+    private boolean           mValid;
+
+    /** @param model The model to index. */
+    RowGeometry(OutlineModel model) {
+        mModel = model;
+    }
+
+    /** Discards the index, forcing it to be rebuilt on next use. */
+    void invalidate() {
+        mValid = false;
+        mIndexes = null;
+        mExtents = null;
+        mVisible = null;
+        mExtentTree = null;
+        mCountTree = null;
+    }
+
+    /** @param row A row whose height has changed. */
+    void rowHeightChanged(Row row) {
+        if (mValid) {
+            Integer index = mIndexes.get(row);
+            if (index == null) {
+                invalidate();
+            } else if (mVisible[index]) {
+                int extent = extent(row.getHeight());
+                add(mExtentTree, index, extent - mExtents[index]);
+                mExtents[index] = extent;
+            }
+        }
+    }
+
+    /**
+     * Makes the index ready for queries.
+     *
+     * @param dividerSize The space to place after each visible row.
+     * @return This index.
+     */
+    RowGeometry prepare(int dividerSize) {
+        if (!mValid || mDividerSize != dividerSize) {
+            List<Row> rows  = mModel.getRows();
+            int       count = rows.size();
+            mDividerSize = dividerSize;
+            mIndexes = new IdentityHashMap<>(count);
+            mExtents = new int[count];
+            mVisible = new boolean[count];
+            mExtentTree = new int[count + 1];
+            mCountTree = new int[count + 1];
+            for (int i = 0; i < count; i++) {
+                Row row = rows.get(i);
+                mIndexes.put(row, Integer.valueOf(i));
+                if (!mModel.isRowFiltered(row)) {
+                    mVisible[i] = true;
+                    mExtents[i] = extent(row.getHeight());
+                    mExtentTree[i + 1] = mExtents[i];
+                    mCountTree[i + 1] = 1;
+                }
+            }
+            // Convert the leaf values into Fenwick trees in linear time
+            for (int i = 1; i <= count; i++) {
+                int parent = i + (i & -i);
+                if (parent <= count) {
+                    mExtentTree[parent] += mExtentTree[i];
+                    mCountTree[parent] += mCountTree[i];
+                }
+            }
+            mValid = true;
+        }
+        return this;
+    }
+
+    private int extent(int height) {
+        return Math.max(height, 0) + mDividerSize;
+    }
+
+    /**
+     * @param row The row to look for.
+     * @return The index of the row, or {@code -1} if it isn't present.
+     */
+    int indexOf(Row row) {
+        Integer index = mIndexes.get(row);
+        return index != null ? index.intValue() : -1;
+    }
+
+    /**
+     * @param index The index of a row. May be equal to the number of rows.
+     * @return The total extent of the visible rows prior to the specified index.
+     */
+    int getOffset(int index) {
+        return sum(mExtentTree, Math.min(index, mExtents.length));
+    }
+
+    /**
+     * @param offset An offset, as returned by {@link #getOffset(int)}.
+     * @return The index of the first visible row whose extent covers the offset, or the number of
+     *         rows if the offset is beyond the last visible row.
+     */
+    int getIndexAtOffset(int offset) {
+        return search(mExtentTree, offset);
+    }
+
+    /**
+     * @param index The index of a row.
+     * @return The index of the first visible row at or after the specified index, or the number of
+     *         rows if there is none.
+     */
+    int getVisibleIndexAtOrAfter(int index) {
+        return search(mCountTree, sum(mCountTree, Math.min(index, mExtents.length)));
+    }
+
+    private static int sum(int[] tree, int index) {
+        int total = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            total += tree[i];
+        }
+        return total;
+    }
+
+    private static void add(int[] tree, int index, int delta) {
+        for (int i = index + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /** @return The largest index whose prefix sum is at most the specified value. */
+    private static int search(int[] tree, int value) {
+        int index = 0;
+        int bit   = Integer.highestOneBit(Math.max(tree.length - 1, 1));
+        for (; bit != 0; bit >>= 1) {
+            int next = index + bit;
+            if (next < tree.length && tree[next] <= value) {
+                index = next;
+                value -= tree[next];
+            }
+        }
+        return index;
+    }
+}
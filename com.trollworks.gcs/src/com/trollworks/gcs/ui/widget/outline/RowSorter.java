@@ -11,14 +11,18 @@
 
 package com.trollworks.gcs.ui.widget.outline;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /** Sorts rows by the sort sequence specified in the associated columns. */
 public class RowSorter implements Comparator<Row> {
-    private Column[] mSortingOrder;
+    private Column[]            mSortingOrder;
+    private Map<Row, SortKey[]> mSortKeys = new IdentityHashMap<>();
 
     private RowSorter(List<Column> columns) {
         int      count = columns.size();
@@ -79,11 +83,11 @@ public class RowSorter implements Comparator<Row> {
             if (column.getSortSequence() != -1) {
                 RowSorter rowSorter = new RowSorter(columns);
 
-                rows.sort(rowSorter);
+                rowSorter.sortList(rows);
                 if (internal) {
                     for (Row row : collectContainerRows(rows, new HashSet<>())) {
                         if (row.hasChildren()) {
-                            row.getChildList().sort(rowSorter);
+                            rowSorter.sortList(row.getChildList());
                         }
                     }
                 }
@@ -92,6 +96,35 @@ public class RowSorter implements Comparator<Row> {
         }
     }
 
+    /**
+     * Sorts a list by first pairing each row with its sort keys, so that they are only looked up
+     * once per row rather than once per comparison.
+     */
+    private void sortList(List<Row> rows) {
+        int         count     = rows.size();
+        Decorated[] decorated = new Decorated[count];
+        for (int i = 0; i < count; i++) {
+            Row row = rows.get(i);
+            decorated[i] = new Decorated(row, getSortKeys(row));
+        }
+        Arrays.sort(decorated, this::compare);
+        for (int i = 0; i < count; i++) {
+            rows.set(i, decorated[i].mRow);
+        }
+    }
+
+    private SortKey[] getSortKeys(Row row) {
+        SortKey[] keys = mSortKeys.get(row);
+        if (keys == null) {
+            keys = new SortKey[mSortingOrder.length];
+            for (int i = 0; i < keys.length && mSortingOrder[i] != null; i++) {
+                keys[i] = row.getSortKey(mSortingOrder[i]);
+            }
+            mSortKeys.put(row, keys);
+        }
+        return keys;
+    }
+
     /**
      * Collects all container rows from the passed in rows and their children.
      *
@@ -113,14 +146,27 @@ public class RowSorter implements Comparator<Row> {
 
     @Override
     public int compare(Row rowOne, Row rowTwo) {
+        return compare(new Decorated(rowOne, getSortKeys(rowOne)), new Decorated(rowTwo, getSortKeys(rowTwo)));
+    }
+
+    private int compare(Decorated one, Decorated two) {
+        Row rowOne = one.mRow;
+        Row rowTwo = two.mRow;
         if (rowOne.getParent() == rowTwo.getParent()) {
-            for (Column column : mSortingOrder) {
-                int result;
+            for (int i = 0; i < mSortingOrder.length; i++) {
+                Column column = mSortingOrder[i];
+                int    result;
 
                 if (column == null) {
                     return 0;
                 }
-                result = column.getRowCell(null).compare(column, rowOne, rowTwo);
+                SortKey oneKey = one.mKeys[i];
+                SortKey twoKey = two.mKeys[i];
+                if (oneKey != null && twoKey != null) {
+                    result = oneKey.compareTo(twoKey);
+                } else {
+                    result = column.getRowCell(null).compare(column, rowOne, rowTwo);
+                }
                 if (result != 0) {
                     return column.isSortAscending() ? result : -result;
                 }
@@ -149,4 +195,15 @@ public class RowSorter implements Comparator<Row> {
         }
         return 0;
     }
+
+    /** A row paired with its sort keys. */
+    private static class Decorated {
+        Row       mRow;
+        SortKey[] mKeys;
+
+        Decorated(Row row, SortKey[] keys) {
+            mRow = row;
+            mKeys = keys;
+        }
+    }
 }
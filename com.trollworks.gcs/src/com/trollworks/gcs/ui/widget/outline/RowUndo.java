@@ -22,8 +22,6 @@ import com.trollworks.gcs.utility.json.JsonWriter;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -74,7 +72,7 @@ public class RowUndo extends AbstractUndoableEdit {
         try {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
             try (GZIPOutputStream gos = new GZIPOutputStream(baos)) {
-                try (JsonWriter w = new JsonWriter(new OutputStreamWriter(gos, StandardCharsets.UTF_8), "")) {
+                try (JsonWriter w = new JsonWriter(gos, "")) {
                     row.save(w, SaveType.UNDO);
                 }
             }
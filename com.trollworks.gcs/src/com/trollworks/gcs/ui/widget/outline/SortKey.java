@@ -0,0 +1,68 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.ui.widget.outline;
+
+import com.trollworks.gcs.utility.text.NumericComparator;
+
+/**
+ * The value a {@link Cell} sorts by, extracted once per row so that sorting doesn't need to ask the
+ * row for its data on every comparison. Keys holding comparable data of the same class are ordered
+ * by that data; otherwise, keys are ordered by their text, one segment at a time.
+ */
+public final class SortKey implements Comparable<SortKey> {
+    private Object   mData;
+    private String[] mText;
+
+    /**
+     * @param text The text segments to compare, in order. {@code null} segments are treated as
+     *             empty.
+     * @return A new key.
+     */
+    public static SortKey forText(String... text) {
+        return new SortKey(null, text);
+    }
+
+    /**
+     * @param data The data to compare. Only used if it is a non-{@link String} {@link Comparable}.
+     * @param text The text to compare when the data can't be.
+     * @return A new key.
+     */
+    public static SortKey forData(Object data, String text) {
+        return new SortKey(!(data instanceof String) && data instanceof Comparable<?> ? data : null, text);
+    }
+
+    private SortKey(Object data, String... text) {
+        mData = data;
+        mText = text;
+        for (int i = 0; i < text.length; i++) {
+            if (text[i] == null) {
+                text[i] = "";
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public int compareTo(SortKey other) {
+        if (mData != null && other.mData != null && mData.getClass() == other.mData.getClass()) {
+            return ((Comparable<Object>) mData).compareTo(other.mData);
+        }
+        int count = Math.min(mText.length, other.mText.length);
+        for (int i = 0; i < count; i++) {
+            int result = NumericComparator.caselessCompareStrings(mText[i], other.mText[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(mText.length, other.mText.length);
+    }
+}
@@ -71,6 +71,11 @@ public class TextCell implements Cell {
         return NumericComparator.caselessCompareStrings(one.getDataAsText(column), two.getDataAsText(column));
     }
 
+    @Override
+    public SortKey getSortKey(Column column, Row row) {
+        return SortKey.forData(row.getData(column), row.getDataAsText(column));
+    }
+
     /**
      * @param selected Whether or not the selected version of the color is needed.
      * @param active   Whether or not the active version of the color is needed.
@@ -64,6 +64,11 @@ public class WrappedCell implements Cell {
         return NumericComparator.caselessCompareStrings(one.getDataAsText(column), two.getDataAsText(column));
     }
 
+    @Override
+    public SortKey getSortKey(Column column, Row row) {
+        return SortKey.forText(row.getDataAsText(column));
+    }
+
     @Override
     public Cursor getCursor(MouseEvent event, Rectangle bounds, Row row, Column column) {
         return Cursor.getDefaultCursor();
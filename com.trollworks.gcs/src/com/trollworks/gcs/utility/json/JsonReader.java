@@ -0,0 +1,569 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.utility.json;
+
+import com.trollworks.gcs.utility.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * A buffered, token-level reader of JSON data. Values are pulled off the stream as they are
+ * needed, so data can be read in a single pass without first building {@link JsonMap}s and {@link
+ * JsonArray}s. {@link #nextValue()} will still build them for a value when that is wanted.
+ * <p>
+ * Separators are optional and a trailing separator is permitted before the end of a map or array.
+ * As with earlier versions of the parser, single-quoted and unquoted strings are accepted and an
+ * empty array element, such as the second in {@code [1,,2]}, is read as null.
+ * <p>
+ * List files are loaded with this reader one row at a time, and the library search index reads
+ * files without building anything. Sheets and templates are still loaded from the tree that {@link
+ * Json#parse(Reader)} builds with it.
+ */
+public class JsonReader implements Closeable {
+    private static final int       BUFFER_SIZE = 8192;
+    private static final String    TERMINATORS = ",:]}/\\\"[{;=#";
+    private              Reader    mReader;
+    private              char[]    mBuffer     = new char[BUFFER_SIZE];
+    private              int       mPos;
+    private              int       mLimit;
+    private              long      mOffset;
+    private              int       mLine       = 1;
+    private              long      mLineStart;
+    private              String    mLiteral;
+    private              boolean[] mInArray    = new boolean[16];
+    private              int       mDepth;
+    private              boolean   mAfterValue;
+    private              Recorder  mRecorder;
+
+    /** The kinds of values that may be found in JSON data. */
+    public enum Kind {
+        MAP, ARRAY, STRING, NUMBER, BOOLEAN, NULL
+    }
+
+    /** Receives each token as it is consumed from a {@link JsonReader}. */
+    public interface Recorder {
+        /** Called when the start of a map is consumed. */
+        void beginMap() throws IOException;
+
+        /** Called when the end of a map is consumed. */
+        void endMap() throws IOException;
+
+        /** Called when the start of an array is consumed. */
+        void beginArray() throws IOException;
+
+        /** Called when the end of an array is consumed. */
+        void endArray() throws IOException;
+
+        /** @param key The key that was consumed. */
+        void key(String key) throws IOException;
+
+        /**
+         * @param value The value that was consumed, which will be a {@link String}, {@link Number},
+         *              {@link Boolean} or {@link JsonNull}.
+         */
+        void value(Object value) throws IOException;
+    }
+
+    /** @param reader The {@link Reader} to load JSON data from. */
+    public JsonReader(Reader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * @param recorder The {@link Recorder} to pass every token to as it is consumed, including
+     *                 those of skipped values, or {@code null}.
+     */
+    public void setRecorder(Recorder recorder) {
+        mRecorder = recorder;
+    }
+
+    /** @return The kind of the next value, without consuming it. */
+    public Kind peek() throws IOException {
+        if (mLiteral == null) {
+            switch (skipSeparators()) {
+            case '{':
+                return Kind.MAP;
+            case '[':
+            case '(':
+                return Kind.ARRAY;
+            case '"':
+            case '\'':
+                return Kind.STRING;
+            case ',':
+                if (isInArray() && !mAfterValue) {
+                    // As with earlier versions of the parser, an empty array element is null.
+                    mLiteral = "null";
+                    break;
+                }
+                throw syntaxError("missing value");
+            default:
+                mLiteral = readLiteral();
+                if (mLiteral.isEmpty()) {
+                    mLiteral = null;
+                    throw syntaxError("missing value");
+                }
+                break;
+            }
+        }
+        if ("true".equalsIgnoreCase(mLiteral) || "false".equalsIgnoreCase(mLiteral)) {
+            return Kind.BOOLEAN;
+        }
+        if ("null".equalsIgnoreCase(mLiteral)) {
+            return Kind.NULL;
+        }
+        char ch = mLiteral.charAt(0);
+        return ch >= '0' && ch <= '9' || ch == '.' || ch == '-' || ch == '+' ? Kind.NUMBER : Kind.STRING;
+    }
+
+    /**
+     * @return {@code true} if the map or array currently being read has another entry. Any
+     *         separator before it is consumed.
+     */
+    public boolean hasNext() throws IOException {
+        if (mLiteral != null) {
+            return true;
+        }
+        int ch = skipSeparators();
+        return ch != -1 && ch != '}' && ch != ']' && ch != ')';
+    }
+
+    /** Consumes the start of a map. */
+    public void beginMap() throws IOException {
+        if (mLiteral != null || skipSeparators() != '{') {
+            throw syntaxError("JSON object text must begin with '{'");
+        }
+        mPos++;
+        push(false);
+        if (mRecorder != null) {
+            mRecorder.beginMap();
+        }
+    }
+
+    /** Consumes the end of a map. */
+    public void endMap() throws IOException {
+        if (mLiteral != null || skipSeparators() != '}') {
+            throw syntaxError("expected a ',' or '}'");
+        }
+        mPos++;
+        pop();
+        if (mRecorder != null) {
+            mRecorder.endMap();
+        }
+    }
+
+    /** Consumes the start of an array. */
+    public void beginArray() throws IOException {
+        int ch = mLiteral == null ? skipSeparators() : -1;
+        if (ch != '[' && ch != '(') {
+            throw syntaxError("a JSONArray text must start with '['");
+        }
+        mPos++;
+        push(true);
+        if (mRecorder != null) {
+            mRecorder.beginArray();
+        }
+    }
+
+    /** Consumes the end of an array. */
+    public void endArray() throws IOException {
+        int ch = mLiteral == null ? skipSeparators() : -1;
+        if (ch != ']' && ch != ')') {
+            throw syntaxError("expected a ',' or ']'");
+        }
+        mPos++;
+        pop();
+        if (mRecorder != null) {
+            mRecorder.endArray();
+        }
+    }
+
+    /** @return The next key within the map currently being read. */
+    public String nextKey() throws IOException {
+        if (mLiteral != null) {
+            throw syntaxError("expected a key");
+        }
+        String key;
+        int    ch = skipSeparators();
+        if (ch == '"' || ch == '\'') {
+            mPos++;
+            key = readQuoted((char) ch);
+        } else {
+            key = readLiteral();
+            if (key.isEmpty()) {
+                throw syntaxError("missing value");
+            }
+        }
+        ch = skipWhitespace();
+        if (ch == '=') {
+            mPos++;
+            if (peekChar() == '>') {
+                mPos++;
+            }
+        } else if (ch == ':') {
+            mPos++;
+        } else {
+            throw syntaxError("expected a ':' after a key");
+        }
+        if (mRecorder != null) {
+            mRecorder.key(key);
+        }
+        return key;
+    }
+
+    /**
+     * @return The next value as a string. Numbers and booleans are returned as they appear in the
+     *         data and {@code null} is returned as an empty string.
+     */
+    public String nextString() throws IOException {
+        Kind kind = peek();
+        mAfterValue = true;
+        if (mLiteral != null) {
+            String literal = mLiteral;
+            mLiteral = null;
+            if (mRecorder != null) {
+                mRecorder.value(toValue(kind, literal));
+            }
+            return kind == Kind.NULL ? "" : literal;
+        }
+        if (kind != Kind.STRING) {
+            throw syntaxError("expected a string");
+        }
+        String str = readQuoted(mBuffer[mPos++]);
+        if (mRecorder != null) {
+            mRecorder.value(str);
+        }
+        return str;
+    }
+
+    /** @return The next value as an int, or {@code 0} if it can't be converted to one. */
+    public int nextInt() throws IOException {
+        return Json.asInt(nextScalar());
+    }
+
+    /** @return The next value as a long, or {@code 0} if it can't be converted to one. */
+    public long nextLong() throws IOException {
+        return Json.asLong(nextScalar());
+    }
+
+    /** @return The next value as a double, or {@code 0} if it can't be converted to one. */
+    public double nextDouble() throws IOException {
+        return Json.asDouble(nextScalar());
+    }
+
+    /** @return The next value as a boolean, or {@code false} if it can't be converted to one. */
+    public boolean nextBoolean() throws IOException {
+        return Json.asBoolean(nextScalar());
+    }
+
+    /** Consumes the next value, including any nested values, without building anything. */
+    public void skipValue() throws IOException {
+        switch (peek()) {
+        case MAP -> {
+            beginMap();
+            while (hasNext()) {
+                nextKey();
+                skipValue();
+            }
+            endMap();
+        }
+        case ARRAY -> {
+            beginArray();
+            while (hasNext()) {
+                skipValue();
+            }
+            endArray();
+        }
+        default -> {
+            if (mRecorder != null) {
+                nextScalar();
+            } else {
+                mAfterValue = true;
+                if (mLiteral != null) {
+                    mLiteral = null;
+                } else {
+                    skipQuoted(mBuffer[mPos++]);
+                }
+            }
+        }
+        }
+    }
+
+    /**
+     * @return The next value, with maps and arrays returned as a {@link JsonMap} or {@link
+     *         JsonArray}.
+     */
+    public Object nextValue() throws IOException {
+        switch (peek()) {
+        case MAP -> {
+            JsonMap map = new JsonMap();
+            beginMap();
+            while (hasNext()) {
+                String key = nextKey();
+                if (map.has(key)) {
+                    throw new IOException("duplicate key \"" + key + "\"");
+                }
+                map.put(key, nextValue());
+            }
+            endMap();
+            return map;
+        }
+        case ARRAY -> {
+            JsonArray array = new JsonArray();
+            beginArray();
+            while (hasNext()) {
+                array.put(nextValue());
+            }
+            endArray();
+            return array;
+        }
+        default -> {
+            return nextScalar();
+        }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+
+    private Object nextScalar() throws IOException {
+        Kind   kind = peek();
+        Object value;
+        mAfterValue = true;
+        if (mLiteral != null) {
+            value = toValue(kind, mLiteral);
+            mLiteral = null;
+        } else if (kind == Kind.STRING) {
+            value = readQuoted(mBuffer[mPos++]);
+        } else {
+            throw syntaxError("expected a value");
+        }
+        if (mRecorder != null) {
+            mRecorder.value(value);
+        }
+        return value;
+    }
+
+    private static Object toValue(Kind kind, String literal) {
+        return switch (kind) {
+            case BOOLEAN -> Boolean.valueOf("true".equalsIgnoreCase(literal));
+            case NULL -> JsonNull.INSTANCE;
+            case NUMBER -> toNumber(literal);
+            default -> literal;
+        };
+    }
+
+    private static Object toNumber(String text) {
+        if (text.charAt(0) == '0' && text.length() > 2 && (text.charAt(1) == 'x' || text.charAt(1) == 'X')) {
+            try {
+                return Integer.valueOf(Integer.parseInt(text.substring(2), 16));
+            } catch (Exception ignore) {
+                Log.error(ignore);
+            }
+        }
+        try {
+            if (text.indexOf('.') > -1 || text.indexOf('e') > -1 || text.indexOf('E') > -1) {
+                return Double.valueOf(text);
+            }
+            long value = Long.parseLong(text);
+            if (value == (int) value) {
+                return Integer.valueOf((int) value);
+            }
+            return Long.valueOf(value);
+        } catch (Exception ignore) {
+            Log.error(ignore);
+        }
+        return text;
+    }
+
+    private boolean fill() throws IOException {
+        mOffset += mLimit;
+        mPos = 0;
+        mLimit = 0;
+        int count = mReader.read(mBuffer, 0, mBuffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        mLimit = count;
+        return true;
+    }
+
+    private int peekChar() throws IOException {
+        if (mPos == mLimit && !fill()) {
+            return -1;
+        }
+        return mBuffer[mPos];
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            if (mPos == mLimit && !fill()) {
+                return -1;
+            }
+            char ch = mBuffer[mPos];
+            if (ch > ' ') {
+                return ch;
+            }
+            mPos++;
+            if (ch == '\n') {
+                mLine++;
+                mLineStart = mOffset + mPos;
+            }
+        }
+    }
+
+    private int skipSeparators() throws IOException {
+        int ch = skipWhitespace();
+        if (isInArray()) {
+            // Within an array, only a single separator may follow a value. Any further one marks
+            // an empty element, which peek() reports as null.
+            if (mAfterValue && (ch == ',' || ch == ';')) {
+                mPos++;
+                mAfterValue = false;
+                ch = skipWhitespace();
+            }
+            return ch;
+        }
+        while (ch == ',' || ch == ';') {
+            mPos++;
+            ch = skipWhitespace();
+        }
+        return ch;
+    }
+
+    private boolean isInArray() {
+        return mDepth > 0 && mInArray[mDepth - 1];
+    }
+
+    private void push(boolean array) {
+        if (mDepth == mInArray.length) {
+            mInArray = Arrays.copyOf(mInArray, mDepth * 2);
+        }
+        mInArray[mDepth++] = array;
+        mAfterValue = false;
+    }
+
+    private void pop() {
+        if (mDepth > 0) {
+            mDepth--;
+        }
+        mAfterValue = true;
+    }
+
+    private String readLiteral() throws IOException {
+        int start = mPos;
+        while (mPos < mLimit) {
+            char ch = mBuffer[mPos];
+            if (ch < ' ' || TERMINATORS.indexOf(ch) >= 0) {
+                return new String(mBuffer, start, mPos - start).trim();
+            }
+            mPos++;
+        }
+        // The literal runs past the end of the buffer.
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(mBuffer, start, mPos - start);
+        while (true) {
+            int ch = peekChar();
+            if (ch < ' ' || TERMINATORS.indexOf(ch) >= 0) {
+                return buffer.toString().trim();
+            }
+            buffer.append((char) ch);
+            mPos++;
+        }
+    }
+
+    private String readQuoted(char quote) throws IOException {
+        for (int i = mPos; i < mLimit; i++) {
+            char ch = mBuffer[i];
+            if (ch == quote) {
+                String str = new String(mBuffer, mPos, i - mPos);
+                mPos = i + 1;
+                return str;
+            }
+            if (ch == '\\' || ch == '\n' || ch == '\r') {
+                break;
+            }
+        }
+        // The string contains escapes or runs past the end of the buffer.
+        StringBuilder buffer = new StringBuilder();
+        while (true) {
+            int ch = readChar();
+            switch (ch) {
+            case -1, '\n', '\r' -> throw syntaxError("unterminated string");
+            case '\\' -> {
+                ch = readChar();
+                switch (ch) {
+                case 'b' -> buffer.append('\b');
+                case 't' -> buffer.append('\t');
+                case 'n' -> buffer.append('\n');
+                case 'f' -> buffer.append('\f');
+                case 'r' -> buffer.append('\r');
+                case 'u' -> buffer.append(readUnicodeEscape());
+                case '"', '\'', '\\', '/' -> buffer.append((char) ch);
+                default -> throw syntaxError("illegal escape");
+                }
+            }
+            default -> {
+                if (ch == quote) {
+                    return buffer.toString();
+                }
+                buffer.append((char) ch);
+            }
+            }
+        }
+    }
+
+    private void skipQuoted(char quote) throws IOException {
+        while (true) {
+            int ch = readChar();
+            if (ch == -1 || ch == '\n' || ch == '\r') {
+                throw syntaxError("unterminated string");
+            }
+            if (ch == '\\') {
+                if (readChar() == -1) {
+                    throw syntaxError("unterminated string");
+                }
+            } else if (ch == quote) {
+                return;
+            }
+        }
+    }
+
+    private char readUnicodeEscape() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(readChar(), 16);
+            if (digit < 0) {
+                throw syntaxError("illegal escape");
+            }
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    private int readChar() throws IOException {
+        int ch = peekChar();
+        if (ch != -1) {
+            mPos++;
+        }
+        return ch;
+    }
+
+    private IOException syntaxError(String message) {
+        long index = mOffset + mPos;
+        return new IOException(message + " at " + index + " [character " + (index - mLineStart + 1) + " line " + mLine + "]");
+    }
+}
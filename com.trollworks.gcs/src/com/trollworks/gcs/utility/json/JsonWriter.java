@@ -13,15 +13,22 @@ package com.trollworks.gcs.utility.json;
 
 import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.util.Objects;
 
 public class JsonWriter extends FilterWriter {
-    private String  mIndent;
-    private int     mDepth;
-    private boolean mCompact;
-    private boolean mNeedComma;
-    private boolean mNeedIndent;
+    private static final int          BUFFER_SIZE = 16384;
+    private static final char[]       HEX_DIGITS  = "0123456789abcdef".toCharArray();
+    private              String       mIndent;
+    private              int          mDepth;
+    private              boolean      mCompact;
+    private              boolean      mNeedComma;
+    private              boolean      mNeedIndent;
+    private              OutputStream mStream;
+    private              byte[]       mBytes;
+    private              int          mCount;
+    private              char[]       mDigits     = new char[20];
 
     public JsonWriter(Writer writer, String indent) {
         super(writer);
@@ -29,6 +36,20 @@ public class JsonWriter extends FilterWriter {
         mCompact = indent.isEmpty();
     }
 
+    /**
+     * Creates a writer that encodes UTF-8 directly into an internal byte buffer, which is written
+     * to the stream as it fills, rather than going through a {@link Writer}. The stream does not
+     * need to be buffered.
+     *
+     * @param stream The stream to write to.
+     * @param indent The text to indent each level with, or an empty string for compact output.
+     */
+    public JsonWriter(OutputStream stream, String indent) {
+        this(Writer.nullWriter(), indent);
+        mStream = stream;
+        mBytes = new byte[BUFFER_SIZE];
+    }
+
     private void indent() throws IOException {
         for (int i = 0; i < mDepth; i++) {
             write(mIndent);
@@ -105,7 +126,7 @@ public class JsonWriter extends FilterWriter {
         } else if (!mCompact) {
             indent();
         }
-        write(Json.quote(key));
+        writeQuoted(key);
         write(':');
         if (!mCompact) {
             write(' ');
@@ -114,26 +135,26 @@ public class JsonWriter extends FilterWriter {
 
     public void value(String value) throws IOException {
         commaIfNeeded();
-        write(Json.quote(value));
+        writeQuoted(value);
     }
 
     public void keyValue(String key, String value) throws IOException {
         key(key);
-        write(Json.quote(value));
+        writeQuoted(value);
         mNeedComma = true;
     }
 
     public void keyValueNot(String key, String value, String not) throws IOException {
         if (!Objects.equals(value, not)) {
             key(key);
-            write(Json.quote(value));
+            writeQuoted(value);
             mNeedComma = true;
         }
     }
 
     public void keyValue(String key, Number value) throws IOException {
         key(key);
-        write(Json.toString(value));
+        writeNumber(value);
         mNeedComma = true;
     }
 
@@ -153,31 +174,33 @@ public class JsonWriter extends FilterWriter {
 
     public void keyValue(String key, int value) throws IOException {
         key(key);
-        write(Integer.toString(value));
+        writeLong(value);
         mNeedComma = true;
     }
 
     public void keyValueNot(String key, int value, int not) throws IOException {
         if (value != not) {
             key(key);
-            write(Integer.toString(value));
+            writeLong(value);
             mNeedComma = true;
         }
     }
 
     public void keyValue(String key, long value) throws IOException {
         key(key);
-        write(Long.toString(value));
+        writeLong(value);
         mNeedComma = true;
     }
 
     public void keyValue(String key, double value) throws IOException {
-        keyValue(key, Double.valueOf(value));
+        key(key);
+        writeDouble(value);
+        mNeedComma = true;
     }
 
     public void keyValueNot(String key, double value, double not) throws IOException {
         if (value != not) {
-            keyValue(key, Double.valueOf(value));
+            keyValue(key, value);
         }
     }
 
@@ -196,11 +219,203 @@ public class JsonWriter extends FilterWriter {
         }
     }
 
+    private void writeNumber(Number value) throws IOException {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writeLong(value.longValue());
+        } else if (value instanceof Double) {
+            writeDouble(value.doubleValue());
+        } else {
+            write(Json.toString(value));
+        }
+    }
+
+    private void writeDouble(double value) throws IOException {
+        // Whole numbers this small are printed by Double.toString() with a trailing ".0", which
+        // Json.toString() would just trim off again.
+        if (value == (long) value && Math.abs(value) < 1.0e7 && (value != 0 || Double.doubleToRawLongBits(value) == 0)) {
+            writeLong((long) value);
+        } else {
+            write(Json.toString(Double.valueOf(value)));
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        // Digits are accumulated as negative values so that Long.MIN_VALUE needs no special case.
+        int     pos      = mDigits.length;
+        boolean negative = value < 0;
+        if (!negative) {
+            value = -value;
+        }
+        do {
+            mDigits[--pos] = (char) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+        if (negative) {
+            write('-');
+        }
+        write(mDigits, pos, mDigits.length - pos);
+    }
+
+    /** Writes the string quoted, escaping it as it goes rather than building an escaped copy. */
+    private void writeQuoted(String str) throws IOException {
+        write('"');
+        if (str != null) {
+            int  len   = str.length();
+            int  start = 0;
+            char ch    = 0;
+            for (int i = 0; i < len; i++) {
+                char last = ch;
+                ch = str.charAt(i);
+                if (ch >= ' ' && ch != '"' && ch != '\\' && (ch != '/' || last != '<')) {
+                    continue;
+                }
+                if (start < i) {
+                    write(str, start, i - start);
+                }
+                start = i + 1;
+                switch (ch) {
+                case '"', '\\', '/' -> {
+                    write('\\');
+                    write(ch);
+                }
+                case '\b' -> write("\\b");
+                case '\t' -> write("\\t");
+                case '\n' -> write("\\n");
+                case '\f' -> write("\\f");
+                case '\r' -> write("\\r");
+                default -> {
+                    write("\\u00");
+                    write(HEX_DIGITS[ch >> 4]);
+                    write(HEX_DIGITS[ch & 15]);
+                }
+                }
+            }
+            if (start < len) {
+                write(str, start, len - start);
+            }
+        }
+        write('"');
+    }
+
+    @Override
+    public void write(int ch) throws IOException {
+        if (mStream == null) {
+            super.write(ch);
+        } else if (ch < 0x80) {
+            if (mCount == mBytes.length) {
+                flushBuffer();
+            }
+            mBytes[mCount++] = (byte) ch;
+        } else {
+            encode((char) ch, '\0');
+        }
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        if (mStream == null) {
+            super.write(buffer, offset, length);
+            return;
+        }
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            char ch = buffer[i];
+            if (ch < 0x80) {
+                if (mCount == mBytes.length) {
+                    flushBuffer();
+                }
+                mBytes[mCount++] = (byte) ch;
+            } else if (Character.isHighSurrogate(ch) && i + 1 < end && Character.isLowSurrogate(buffer[i + 1])) {
+                encode(ch, buffer[++i]);
+            } else {
+                encode(ch, '\0');
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int offset, int length) throws IOException {
+        if (mStream == null) {
+            super.write(str, offset, length);
+            return;
+        }
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            char ch = str.charAt(i);
+            if (ch < 0x80) {
+                if (mCount == mBytes.length) {
+                    flushBuffer();
+                }
+                mBytes[mCount++] = (byte) ch;
+            } else if (Character.isHighSurrogate(ch) && i + 1 < end && Character.isLowSurrogate(str.charAt(i + 1))) {
+                encode(ch, str.charAt(++i));
+            } else {
+                encode(ch, '\0');
+            }
+        }
+    }
+
+    /**
+     * Encodes a non-ASCII char as UTF-8.
+     *
+     * @param ch   The char to encode.
+     * @param next The low surrogate following a high surrogate, or {@code '\0'}.
+     */
+    private void encode(char ch, char next) throws IOException {
+        if (mBytes.length - mCount < 4) {
+            flushBuffer();
+        }
+        if (ch < 0x800) {
+            mBytes[mCount++] = (byte) (0xC0 | ch >> 6);
+            mBytes[mCount++] = (byte) (0x80 | ch & 0x3F);
+        } else if (Character.isSurrogate(ch)) {
+            if (Character.isHighSurrogate(ch) && Character.isLowSurrogate(next)) {
+                int cp = Character.toCodePoint(ch, next);
+                mBytes[mCount++] = (byte) (0xF0 | cp >> 18);
+                mBytes[mCount++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                mBytes[mCount++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                mBytes[mCount++] = (byte) (0x80 | cp & 0x3F);
+            } else {
+                // Unpaired surrogates are replaced, as the JDK's UTF-8 encoder does.
+                mBytes[mCount++] = '?';
+            }
+        } else {
+            mBytes[mCount++] = (byte) (0xE0 | ch >> 12);
+            mBytes[mCount++] = (byte) (0x80 | ch >> 6 & 0x3F);
+            mBytes[mCount++] = (byte) (0x80 | ch & 0x3F);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (mCount > 0) {
+            mStream.write(mBytes, 0, mCount);
+            mCount = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (mStream == null) {
+            super.flush();
+        } else {
+            flushBuffer();
+            mStream.flush();
+        }
+    }
+
     @Override
     public void close() throws IOException {
         if (!mCompact) {
             write('\n');
         }
-        super.close();
+        if (mStream == null) {
+            super.close();
+        } else {
+            try {
+                flushBuffer();
+            } finally {
+                mStream.close();
+            }
+        }
     }
 }
@@ -25,4 +25,13 @@ public interface BatchNotifierTarget extends NotifierTarget {
 
     /** Called after a series of notifications was broadcast. */
     void leaveBatchMode();
+
+    /**
+     * @return {@code true} if notifications sent during a batch should be held until the batch
+     *         ends, then delivered just before {@link #leaveBatchMode()} is called, once for each
+     *         distinct producer and name, with the last data that was sent for them.
+     */
+    default boolean isCoalescingNotifications() {
+        return false;
+    }
 }
@@ -13,10 +13,13 @@ package com.trollworks.gcs.utility.notification;
 
 import com.trollworks.gcs.utility.Log;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -25,13 +28,17 @@ import java.util.StringTokenizer;
 /** Tracks targets of notifications and provides methods for notifying them. */
 public class Notifier implements Comparator<NotifierTarget> {
     /** The separator used between parts of a type. */
-    public static final String                           SEPARATOR      = ".";
-    private             Set<BatchNotifierTarget>         mBatchTargets  = new HashSet<>();
-    private             Map<String, Set<NotifierTarget>> mProductionMap = new HashMap<>();
-    private             Map<NotifierTarget, Set<String>> mNameMap       = new HashMap<>();
-    private             BatchNotifierTarget[]            mCurrentBatch;
-    private             int                              mBatchLevel;
-    private             boolean                          mEnabled       = true;
+    public static final  String                                       SEPARATOR      = ".";
+    private static final NotifierTarget[]                             NO_TARGETS     = new NotifierTarget[0];
+    private static final int                                          MAX_DISPATCH   = 1024;
+    private              Set<BatchNotifierTarget>                     mBatchTargets  = new HashSet<>();
+    private              Map<String, Set<NotifierTarget>>             mProductionMap = new HashMap<>();
+    private              Map<NotifierTarget, Set<String>>             mNameMap       = new HashMap<>();
+    private              Map<String, NotifierTarget[]>                mDispatchMap   = new HashMap<>();
+    private              Map<NotifierTarget, Map<PendingKey, Object>> mPending       = new HashMap<>();
+    private              BatchNotifierTarget[]                        mCurrentBatch;
+    private              int                                          mBatchLevel;
+    private              boolean                                      mEnabled       = true;
 
     /**
      * Adds all registrations from the specified {@link Notifier} into this one.
@@ -56,6 +63,7 @@ public class Notifier implements Comparator<NotifierTarget> {
      *               "foo.bart.a".
      */
     public synchronized void add(NotifierTarget target, String... names) {
+        mDispatchMap.clear();
         Set<String> normalizedNames = mNameMap.computeIfAbsent(target, k -> new HashSet<>());
         if (target instanceof BatchNotifierTarget) {
             mBatchTargets.add((BatchNotifierTarget) target);
@@ -93,6 +101,8 @@ public class Notifier implements Comparator<NotifierTarget> {
      */
     public synchronized void remove(NotifierTarget target) {
         if (mNameMap.containsKey(target)) {
+            mDispatchMap.clear();
+            mPending.remove(target);
             if (target instanceof BatchNotifierTarget) {
                 mBatchTargets.remove(target);
             }
@@ -146,36 +156,58 @@ public class Notifier implements Comparator<NotifierTarget> {
      */
     public void notify(Object producer, String name, Object data) {
         if (isEnabled()) {
-            StringTokenizer tokenizer = new StringTokenizer(name, SEPARATOR);
-            StringBuilder   builder   = new StringBuilder();
-            while (tokenizer.hasMoreTokens()) {
-                builder.append(tokenizer.nextToken());
-                String value = builder.toString();
-                builder.append(SEPARATOR);
-                NotifierTarget[] targets = getTargets(value);
-                if (targets != null) {
-                    Arrays.sort(targets, this);
-                    for (NotifierTarget target : targets) {
-                        try {
-                            target.handleNotification(producer, name, data);
-                        } catch (Throwable throwable) {
-                            Log.error(throwable);
-                        }
+            for (NotifierTarget target : getTargets(name)) {
+                if (!deferIfCoalescing(target, producer, name, data)) {
+                    try {
+                        target.handleNotification(producer, name, data);
+                    } catch (Throwable throwable) {
+                        Log.error(throwable);
                     }
                 }
             }
         }
     }
 
-    private synchronized NotifierTarget[] getTargets(String value) {
-        Set<NotifierTarget> set = mProductionMap.get(value);
-        if (set != null) {
-            int size = set.size();
-            if (size > 0) {
-                return set.toArray(new NotifierTarget[size]);
+    private synchronized boolean deferIfCoalescing(NotifierTarget target, Object producer, String name, Object data) {
+        if (mBatchLevel > 0 && target instanceof BatchNotifierTarget && ((BatchNotifierTarget) target).isCoalescingNotifications()) {
+            // Re-putting an existing key keeps its original position, so events are still
+            // delivered in the order they were first seen, but with the latest data.
+            mPending.computeIfAbsent(target, k -> new LinkedHashMap<>()).put(new PendingKey(producer, name), data);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param name The notification name.
+     * @return The targets to notify for the name, in the order they should be notified: those
+     *         registered for the shortest prefix of the name first, and within each prefix, by
+     *         priority. Cached until the registrations change.
+     */
+    private synchronized NotifierTarget[] getTargets(String name) {
+        NotifierTarget[] targets = mDispatchMap.get(name);
+        if (targets == null) {
+            List<NotifierTarget> list      = new ArrayList<>();
+            StringTokenizer      tokenizer = new StringTokenizer(name, SEPARATOR);
+            StringBuilder        builder   = new StringBuilder();
+            while (tokenizer.hasMoreTokens()) {
+                builder.append(tokenizer.nextToken());
+                Set<NotifierTarget> set = mProductionMap.get(builder.toString());
+                builder.append(SEPARATOR);
+                if (set != null && !set.isEmpty()) {
+                    NotifierTarget[] prefixTargets = set.toArray(new NotifierTarget[0]);
+                    Arrays.sort(prefixTargets, this);
+                    list.addAll(Arrays.asList(prefixTargets));
+                }
             }
+            targets = list.isEmpty() ? NO_TARGETS : list.toArray(new NotifierTarget[0]);
+            if (mDispatchMap.size() >= MAX_DISPATCH) {
+                // Guard against unbounded growth should names ever be generated dynamically
+                mDispatchMap.clear();
+            }
+            mDispatchMap.put(name, targets);
         }
-        return null;
+        return targets;
     }
 
     /**
@@ -213,6 +245,7 @@ public class Notifier implements Comparator<NotifierTarget> {
     public synchronized void endBatch() {
         if (isEnabled()) {
             if (--mBatchLevel < 1) {
+                deliverPending();
                 if (mCurrentBatch != null) {
                     for (BatchNotifierTarget target : mCurrentBatch) {
                         try {
@@ -227,6 +260,27 @@ public class Notifier implements Comparator<NotifierTarget> {
         }
     }
 
+    private void deliverPending() {
+        if (!mPending.isEmpty()) {
+            // Detach the pending events first, as targets may start and end batches of their own
+            // while handling them.
+            Map<NotifierTarget, Map<PendingKey, Object>> pending = mPending;
+            mPending = new HashMap<>();
+            NotifierTarget[] targets = pending.keySet().toArray(new NotifierTarget[0]);
+            Arrays.sort(targets, this);
+            for (NotifierTarget target : targets) {
+                for (Entry<PendingKey, Object> entry : pending.get(target).entrySet()) {
+                    PendingKey key = entry.getKey();
+                    try {
+                        target.handleNotification(key.mProducer, key.mName, entry.getValue());
+                    } catch (Throwable throwable) {
+                        Log.error(throwable);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Removes all targets except the specified ones.
      *
@@ -247,6 +301,8 @@ public class Notifier implements Comparator<NotifierTarget> {
         mBatchTargets.clear();
         mProductionMap.clear();
         mNameMap.clear();
+        mDispatchMap.clear();
+        mPending.clear();
         for (Entry<NotifierTarget, Set<String>> entry : set.entrySet()) {
             Set<String> names = entry.getValue();
             add(entry.getKey(), names.toArray(new String[0]));
@@ -257,4 +313,28 @@ public class Notifier implements Comparator<NotifierTarget> {
     public int compare(NotifierTarget t1, NotifierTarget t2) {
         return Integer.compare(t1.getNotificationPriority(), t2.getNotificationPriority());
     }
+
+    private static class PendingKey {
+        Object mProducer;
+        String mName;
+
+        PendingKey(Object producer, String name) {
+            mProducer = producer;
+            mName = name;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof PendingKey) {
+                PendingKey other = (PendingKey) obj;
+                return mProducer == other.mProducer && mName.equals(other.mName);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(mProducer) + mName.hashCode();
+        }
+    }
 }
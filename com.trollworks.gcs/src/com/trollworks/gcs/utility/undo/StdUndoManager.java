@@ -15,6 +15,10 @@ import com.trollworks.gcs.menu.edit.Undoable;
 import com.trollworks.gcs.ui.UIUtilities;
 
 import java.awt.Component;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.event.UndoableEditEvent;
+import javax.swing.event.UndoableEditListener;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 import javax.swing.undo.UndoManager;
@@ -22,20 +26,56 @@ import javax.swing.undo.UndoableEdit;
 
 /** The standard {@link UndoManager} for use with our app's windows. */
 public class StdUndoManager extends UndoManager {
-    private boolean mInTransaction;
+    private boolean                    mInTransaction;
+    private List<UndoableEditListener> mListeners = new ArrayList<>();
+
+    @Override
+    public synchronized boolean addEdit(UndoableEdit anEdit) {
+        boolean added = super.addEdit(anEdit);
+        notifyListeners(anEdit);
+        return added;
+    }
 
     @Override
     public synchronized void undo() throws CannotUndoException {
+        UndoableEdit edit = editToBeUndone();
         mInTransaction = true;
         super.undo();
         mInTransaction = false;
+        notifyListeners(edit);
     }
 
     @Override
     public synchronized void redo() throws CannotRedoException {
+        UndoableEdit edit = editToBeRedone();
         mInTransaction = true;
         super.redo();
         mInTransaction = false;
+        notifyListeners(edit);
+    }
+
+    /**
+     * @param listener A listener to call whenever an edit is added, undone or redone. Unlike those
+     *                 of an {@link javax.swing.undo.UndoableEditSupport}, these are also called
+     *                 for undo and redo, since each changes the data just as a new edit does.
+     */
+    public void addUndoableEditListener(UndoableEditListener listener) {
+        mListeners.remove(listener);
+        mListeners.add(listener);
+    }
+
+    /** @param listener The listener to remove. */
+    public void removeUndoableEditListener(UndoableEditListener listener) {
+        mListeners.remove(listener);
+    }
+
+    private void notifyListeners(UndoableEdit edit) {
+        if (!mListeners.isEmpty()) {
+            UndoableEditEvent event = new UndoableEditEvent(this, edit);
+            for (UndoableEditListener listener : mListeners.toArray(new UndoableEditListener[0])) {
+                listener.undoableEditHappened(event);
+            }
+        }
     }
 
     /** @return Whether this {@link UndoManager} is currently processing an undo or redo. */
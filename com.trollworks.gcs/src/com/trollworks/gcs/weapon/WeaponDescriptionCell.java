@@ -19,6 +19,7 @@ import com.trollworks.gcs.ui.widget.outline.Cell;
 import com.trollworks.gcs.ui.widget.outline.Column;
 import com.trollworks.gcs.ui.widget.outline.Outline;
 import com.trollworks.gcs.ui.widget.outline.Row;
+import com.trollworks.gcs.ui.widget.outline.SortKey;
 import com.trollworks.gcs.utility.text.NumericComparator;
 
 import java.awt.Cursor;
@@ -121,6 +122,12 @@ public class WeaponDescriptionCell implements Cell {
         return result;
     }
 
+    @Override
+    public SortKey getSortKey(Column column, Row row) {
+        WeaponDisplayRow weaponRow = (WeaponDisplayRow) row;
+        return SortKey.forText(getPrimaryText(weaponRow), getSecondaryText(weaponRow));
+    }
+
     @Override
     public Cursor getCursor(MouseEvent event, Rectangle bounds, Row row, Column column) {
         return Cursor.getDefaultCursor();
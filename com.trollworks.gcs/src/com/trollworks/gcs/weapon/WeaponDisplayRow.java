@@ -11,12 +11,15 @@
 
 package com.trollworks.gcs.weapon;
 
+import com.trollworks.gcs.datafile.DataFile;
 import com.trollworks.gcs.ui.widget.outline.Column;
+import com.trollworks.gcs.ui.widget.outline.DisplayCache;
 import com.trollworks.gcs.ui.widget.outline.Row;
 
 /** A non-editable row for displaying weapon information. */
 public class WeaponDisplayRow extends Row {
-    private WeaponStats mWeapon;
+    private WeaponStats  mWeapon;
+    private DisplayCache mDisplayCache = new DisplayCache();
 
     /**
      * Creates a new weapon display row.
@@ -39,7 +42,25 @@ public class WeaponDisplayRow extends Row {
 
     @Override
     public String getDataAsText(Column column) {
-        return WeaponColumn.values()[column.getID()].getDataAsText(mWeapon);
+        DataFile df = mWeapon.getOwner() != null ? mWeapon.getOwner().getDataFile() : null;
+        if (df == null) {
+            return WeaponColumn.values()[column.getID()].getDataAsText(mWeapon);
+        }
+        // Resolving values such as damage requires scanning the character's features, so the text
+        // is reused until the character changes.
+        long   generation = df.getDisplayGeneration();
+        String text       = mDisplayCache.get(column, generation);
+        if (text == null) {
+            text = WeaponColumn.values()[column.getID()].getDataAsText(mWeapon);
+            mDisplayCache.put(column, generation, text);
+        }
+        return text;
+    }
+
+    @Override
+    protected long getDisplayGeneration() {
+        DataFile df = mWeapon.getOwner() != null ? mWeapon.getOwner().getDataFile() : null;
+        return df != null ? df.getDisplayGeneration() : super.getDisplayGeneration();
     }
 
     @Override
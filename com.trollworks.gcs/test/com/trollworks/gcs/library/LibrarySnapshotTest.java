@@ -0,0 +1,127 @@
+/*
+ * Copyright ©1998-2020 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.library;
+
+import com.trollworks.gcs.datafile.LoadState;
+import com.trollworks.gcs.notes.Note;
+import com.trollworks.gcs.notes.NoteList;
+import com.trollworks.gcs.utility.I18n;
+import com.trollworks.gcs.utility.SaveType;
+import com.trollworks.gcs.utility.json.Json;
+import com.trollworks.gcs.utility.json.JsonMap;
+import com.trollworks.gcs.utility.json.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Checks that a list loaded from its {@link LibrarySnapshot} matches the same list loaded from its
+ * JSON. Needs no test framework; it is run in place of the application's main class, with this
+ * directory patched into the com.trollworks.gcs module, by {@code ./bundle.sh --test}. It prints
+ * nothing when it passes and exits with a non-zero status on failure.
+ */
+public final class LibrarySnapshotTest {
+    private LibrarySnapshotTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path home = Files.createTempDirectory("gcs-snapshot-test");
+        System.setProperty("user.home", home.toString());
+        I18n.initialize();
+        try {
+            Path     path     = home.resolve("test.not");
+            NoteList original = new NoteList();
+            for (int i = 0; i < 25; i++) {
+                Note note = new Note(original, false);
+                note.setDescription("Note " + i + (i % 3 == 0 ? " with \"quotes\", tabs\t and ünïcödé 😀" : ""));
+                note.setReference(i % 2 == 0 ? "B" + i : "");
+                original.getModel().addRow(note);
+            }
+            Note container = new Note(original, true);
+            container.setDescription("Container");
+            for (int i = 0; i < 3; i++) {
+                Note child = new Note(original, i == 2);
+                child.setDescription("Child " + i);
+                if (i == 2) {
+                    Note grandchild = new Note(original, false);
+                    grandchild.setDescription("Grandchild");
+                    child.addChild(grandchild);
+                }
+                container.addChild(child);
+            }
+            original.getModel().addRow(container);
+            original.save(path);
+
+            Path snapshotDir = LibraryIndex.getCacheDir().resolve("snapshots");
+            check(!Files.isDirectory(snapshotDir) || isEmpty(snapshotDir), "no snapshot before the first load");
+            NoteList fromJSON = new NoteList();
+            fromJSON.load(path);
+            check(!isEmpty(snapshotDir), "a snapshot is written by the first load");
+            check(serialize(fromJSON).equals(serialize(original)), "rows streamed from JSON match the saved rows");
+            NoteList fromSnapshot = new NoteList();
+            fromSnapshot.load(path);
+            check(fromSnapshot.getTopLevelRows().size() == 26, "all rows are loaded from the snapshot");
+            check(serialize(fromJSON).equals(serialize(fromSnapshot)), "rows loaded from the snapshot match those loaded from JSON");
+
+            JsonMap parsed;
+            try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                parsed = Json.asMap(Json.parse(in));
+            }
+            NoteList fromMap = new NoteList();
+            fromMap.load(parsed, new LoadState());
+            check(serialize(fromJSON).equals(serialize(fromMap)), "rows streamed from JSON match those loaded from a parsed map");
+            JsonMap snapshot = new LibrarySnapshot(path, fromJSON.getJSONVersion()).read();
+            check(snapshot != null && Json.toString(snapshot).equals(Json.toString(parsed)), "the snapshot holds the parsed JSON");
+            check(new LibrarySnapshot(path, fromJSON.getJSONVersion() + 1).read() == null, "a snapshot for another JSON version is ignored");
+
+            Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() + 2000));
+            check(new LibrarySnapshot(path, fromJSON.getJSONVersion()).read() == null, "a snapshot of a modified file is ignored");
+
+            Files.delete(path);
+            LibrarySnapshot.evictOrphans();
+            check(isEmpty(snapshotDir), "the snapshot of a deleted file is evicted");
+        } finally {
+            try (Stream<Path> stream = Files.walk(home)) {
+                stream.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+        System.exit(0);
+    }
+
+    private static String serialize(NoteList list) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter w = new JsonWriter(out, "")) {
+            list.save(w, SaveType.NORMAL, false);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isEmpty(Path dir) throws IOException {
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.findAny().isEmpty();
+        }
+    }
+
+    private static void check(boolean condition, String description) {
+        if (!condition) {
+            System.err.println("LibrarySnapshotTest: failed: " + description);
+            System.exit(1);
+        }
+    }
+}